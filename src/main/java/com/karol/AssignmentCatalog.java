@@ -0,0 +1,426 @@
+package com.karol;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A lightweight index of the assignments in a directory.
+ *
+ * Each entry holds just enough to list an assignment (name, file, world size) plus the
+ * file's modification time, size and content hash. The index is stored in the
+ * assignments directory and reused on the next start: only files whose modification
+ * time or size changed are read again, and even then only the header fields are parsed.
+ * Full assignments are loaded on demand with AssignmentLoader.loadAssignment().
+ * All methods are safe to call from several threads.
+ */
+public class AssignmentCatalog {
+    public static final String INDEX_FILE = "catalog.index";
+    private static final int INDEX_VERSION = 1;
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final boolean persistent;
+    private final AssignmentImporter importer;
+    // Keyed by file path relative to the directory, sorted so the list order is stable
+    private final Map<String, Entry> entriesByFile = new TreeMap<>();
+    private final Map<String, Entry> entriesByName = new HashMap<>();
+    private boolean dirty;
+
+    /**
+     * One assignment file in the catalog.
+     */
+    public static class Entry {
+        @JsonProperty("name")
+        private String name;
+
+        @JsonProperty("file")
+        private String file;
+
+        @JsonProperty("worldWidth")
+        private int worldWidth;
+
+        @JsonProperty("worldHeight")
+        private int worldHeight;
+
+        @JsonProperty("lastModified")
+        private long lastModified;
+
+        @JsonProperty("size")
+        private long size;
+
+        @JsonProperty("contentHash")
+        private String contentHash;
+
+        public Entry() {
+            // Default constructor for Jackson
+        }
+
+        Entry(String name, String file, int worldWidth, int worldHeight, long lastModified, long size, String contentHash) {
+            this.name = name;
+            this.file = file;
+            this.worldWidth = worldWidth;
+            this.worldHeight = worldHeight;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.contentHash = contentHash;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the file path relative to the catalog directory, using '/' as separator
+         */
+        public String getFile() {
+            return file;
+        }
+
+        public int getWorldWidth() {
+            return worldWidth;
+        }
+
+        public int getWorldHeight() {
+            return worldHeight;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the SHA-256 of the file contents as lowercase hex
+         */
+        public String getContentHash() {
+            return contentHash;
+        }
+    }
+
+    /**
+     * On-disk layout of the index file.
+     */
+    private static class IndexFile {
+        @JsonProperty("version")
+        private int version;
+
+        @JsonProperty("entries")
+        private List<Entry> entries = new ArrayList<>();
+    }
+
+    private AssignmentCatalog(Path directory, ObjectMapper objectMapper, boolean persistent,
+                              AssignmentImporter importer) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.persistent = persistent;
+        this.importer = importer;
+    }
+
+    /**
+     * Opens the catalog for a directory, bringing the stored index up to date.
+     * @param directory The assignments directory; created if missing
+     * @return the up-to-date catalog
+     * @throws IOException if the directory cannot be read
+     */
+    public static AssignmentCatalog open(Path directory) throws IOException {
+        return open(directory, new ObjectMapper(), true, new AssignmentImporter());
+    }
+
+    /**
+     * @param persistent False for read-only locations such as a jar; the index is then kept in memory only
+     * @param importer Reads changed files in parallel
+     */
+    static AssignmentCatalog open(Path directory, ObjectMapper objectMapper, boolean persistent,
+                                  AssignmentImporter importer) throws IOException {
+        if (persistent && !Files.exists(directory)) {
+            Files.createDirectories(directory);
+        }
+        AssignmentCatalog catalog = new AssignmentCatalog(directory.toAbsolutePath(), objectMapper, persistent, importer);
+        if (persistent) {
+            catalog.readIndex();
+        }
+        catalog.refresh();
+        return catalog;
+    }
+
+    /**
+     * @return the absolute path of the assignments directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return all entries, ordered by file path
+     */
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(entriesByFile.values()));
+    }
+
+    /**
+     * Finds an entry by assignment name.
+     * @param name The assignment name
+     * @return the entry, or null if no assignment has that name
+     */
+    public synchronized Entry findByName(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * Finds an entry by its file.
+     * @param path The assignment file, absolute or relative to the working directory
+     * @return the entry, or null if the file is not in the catalog
+     */
+    public synchronized Entry findByFile(Path path) {
+        return entriesByFile.get(relativeName(path.toAbsolutePath()));
+    }
+
+    /**
+     * @return the absolute path of an entry's file
+     */
+    public Path resolve(Entry entry) {
+        return directory.resolve(entry.getFile());
+    }
+
+    /**
+     * Rescans the directory, re-reading only files whose modification time or size
+     * changed, and saves the index if anything changed. Changed files are read in parallel.
+     * @throws IOException if the directory cannot be walked or the index cannot be written
+     */
+    public synchronized void refresh() throws IOException {
+        Map<String, Entry> previous = new HashMap<>(entriesByFile);
+        Map<String, Entry> current = new TreeMap<>();
+        Map<Path, BasicFileAttributes> changed = new LinkedHashMap<>();
+
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                if (!attributes.isRegularFile() || !isAssignmentFile(path)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String file = relativeName(path);
+                Entry entry = previous.get(file);
+                if (entry == null || entry.lastModified != attributes.lastModifiedTime().toMillis()
+                        || entry.size != attributes.size()) {
+                    changed.put(path, attributes);
+                } else {
+                    current.put(file, entry);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException e) throws IOException {
+                // Deleted while walking, e.g. another process's temporary index file
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+
+        List<AssignmentImporter.Result<Entry>> results = importer.importFiles(new ArrayList<>(changed.keySet()), path -> {
+            BasicFileAttributes attributes = changed.get(path);
+            return readEntry(path, relativeName(path), attributes.lastModifiedTime().toMillis(), attributes.size());
+        });
+        for (AssignmentImporter.Result<Entry> result : results) {
+            // Files that can't be parsed are skipped
+            if (result.isSuccess()) {
+                current.put(result.getValue().getFile(), result.getValue());
+                dirty = true;
+            }
+        }
+
+        if (!current.keySet().equals(previous.keySet())) {
+            dirty = true;
+        }
+        entriesByFile.clear();
+        entriesByFile.putAll(current);
+        rebuildNameIndex();
+        save();
+    }
+
+    /**
+     * Re-reads a single file, for example after it was written by the editor.
+     * Files whose modification time and size are unchanged are not read again.
+     * @param path The assignment file
+     * @return the current entry, or null if the file no longer exists
+     * @throws IOException if the file cannot be parsed
+     */
+    public synchronized Entry update(Path path) throws IOException {
+        path = path.toAbsolutePath();
+        String file = relativeName(path);
+        Entry entry = null;
+        if (Files.isRegularFile(path)) {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            Entry existing = entriesByFile.get(file);
+            if (existing != null && existing.lastModified == lastModified && existing.size == attributes.size()) {
+                return existing;
+            }
+            entry = readEntry(path, file, lastModified, attributes.size());
+            entriesByFile.put(file, entry);
+        } else {
+            entriesByFile.remove(file);
+        }
+        dirty = true;
+        rebuildNameIndex();
+        save();
+        return entry;
+    }
+
+    /**
+     * Removes an entry from the catalog. The file itself is not touched.
+     * @param entry The entry to remove
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void remove(Entry entry) throws IOException {
+        if (entriesByFile.remove(entry.getFile()) != null) {
+            dirty = true;
+            rebuildNameIndex();
+            save();
+        }
+    }
+
+    /**
+     * Writes the index file if it changed since it was last read or written.
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty || !persistent) {
+            return;
+        }
+        IndexFile index = new IndexFile();
+        index.version = INDEX_VERSION;
+        index.entries.addAll(entriesByFile.values());
+        Path indexPath = directory.resolve(INDEX_FILE);
+        // Worker processes may share the directory, so each save writes its own temp file
+        Path tempPath = Files.createTempFile(directory, INDEX_FILE, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempPath)) {
+                objectMapper.writeValue(out, index);
+            }
+            try {
+                Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        dirty = false;
+    }
+
+    private void readIndex() {
+        Path indexPath = directory.resolve(INDEX_FILE);
+        if (!Files.isRegularFile(indexPath)) {
+            return;
+        }
+        try (InputStream in = Files.newInputStream(indexPath)) {
+            IndexFile index = objectMapper.readValue(in, IndexFile.class);
+            if (index.version == INDEX_VERSION) {
+                for (Entry entry : index.entries) {
+                    entriesByFile.put(entry.getFile(), entry);
+                }
+            }
+        } catch (IOException e) {
+            // A damaged index is rebuilt from the files
+            entriesByFile.clear();
+        }
+    }
+
+    private void rebuildNameIndex() {
+        entriesByName.clear();
+        for (Entry entry : entriesByFile.values()) {
+            entriesByName.putIfAbsent(entry.getName(), entry);
+        }
+    }
+
+    private String relativeName(Path path) {
+        return directory.relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * Reads the header fields of an assignment file, skipping walls and beepers.
+     */
+    private Entry readEntry(Path path, String file, long lastModified, long size) throws IOException {
+        byte[] content = Files.readAllBytes(path);
+        String name = null;
+        int worldWidth = 0;
+        int worldHeight = 0;
+
+        if (BinaryWorldFormat.isBinaryWorld(path)) {
+            Assignment header = BinaryWorldFormat.readHeader(Channels.newChannel(new ByteArrayInputStream(content)));
+            return newEntry(path, file, header.getName(), header.getWorldWidth(), header.getWorldHeight(),
+                lastModified, size, content);
+        }
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not an assignment: " + path);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name" -> name = parser.getValueAsString();
+                    case "worldWidth" -> worldWidth = parser.getIntValue();
+                    case "worldHeight" -> worldHeight = parser.getIntValue();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        return newEntry(path, file, name, worldWidth, worldHeight, lastModified, size, content);
+    }
+
+    private static Entry newEntry(Path path, String file, String name, int worldWidth, int worldHeight,
+                                  long lastModified, long size, byte[] content) {
+        if (name == null) {
+            // Worlds saved straight from the editor may have no name; fall back to the file name
+            String fileName = path.getFileName().toString();
+            name = fileName.substring(0, fileName.lastIndexOf('.'));
+        }
+        return new Entry(name, file, worldWidth, worldHeight, lastModified, size, sha256(content));
+    }
+
+    static boolean isAssignmentFile(Path path) {
+        return path.toString().endsWith(".json") || BinaryWorldFormat.isBinaryWorld(path);
+    }
+
+    static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.karol;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reads many assignment files concurrently.
+ *
+ * Each file is parsed on its own virtual thread, so a slow network volume is read with
+ * many requests in flight instead of one at a time. A semaphore caps how many files are
+ * open at once. A file that fails to parse only fails its own result, and results come
+ * back in the order the files were given.
+ */
+public class AssignmentImporter {
+    public static final int DEFAULT_CONCURRENCY = 32;
+
+    private final int concurrency;
+
+    /**
+     * Parses one file.
+     */
+    @FunctionalInterface
+    public interface Parser<T> {
+        T parse(Path file) throws IOException;
+    }
+
+    /**
+     * The outcome for one file: either a value or the error that prevented reading it.
+     */
+    public static class Result<T> {
+        private final Path file;
+        private final T value;
+        private final Exception error;
+
+        Result(Path file, T value, Exception error) {
+            this.file = file;
+            this.value = value;
+            this.error = error;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * @return the parsed value, or null if the file failed
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return why the file failed, or null if it was parsed
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    public AssignmentImporter() {
+        this(DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * @param concurrency The maximum number of files read at the same time
+     */
+    public AssignmentImporter(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Parses all files and waits until every one has finished.
+     * @param files The files to read
+     * @param parser Turns one file into a value; must be safe to call from several threads
+     * @return one result per file, in the same order as files
+     * @throws IOException if the calling thread is interrupted while waiting
+     */
+    public <T> List<Result<T>> importFiles(List<Path> files, Parser<T> parser) throws IOException {
+        List<Future<Result<T>>> futures = new ArrayList<>(files.size());
+        Semaphore permits = new Semaphore(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path file : files) {
+                // Acquire before submitting so at most `concurrency` threads exist at once
+                permits.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        return new Result<>(file, parser.parse(file), null);
+                    } catch (IOException | RuntimeException e) {
+                        return new Result<>(file, null, e);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<Result<T>> results = new ArrayList<>(futures.size());
+            for (Future<Result<T>> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Assignment import was interrupted");
+        } catch (ExecutionException e) {
+            // Parser exceptions are caught in the task, so only errors end up here
+            throw new IllegalStateException("Assignment import failed", e.getCause());
+        }
+    }
+}
@@ -1,45 +1,160 @@
 package com.karol;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class AssignmentLoader {
-    private static final String ASSIGNMENTS_DIR = "src/main/resources/assignments";
+    private final AssignmentRepository repository;
     private final ObjectMapper objectMapper;
+    // ObjectReaders are immutable and thread-safe, so one is shared by all import threads
+    private final ObjectReader assignmentReader;
+    private final AssignmentImporter importer;
 
+    /**
+     * Creates a loader for the configured assignment location.
+     * @throws UncheckedIOException if the location cannot be opened
+     * @see AssignmentRepository#fromConfiguration()
+     */
     public AssignmentLoader() {
+        this(openConfiguredRepository());
+    }
+
+    public AssignmentLoader(AssignmentRepository repository) {
+        this(repository, new AssignmentImporter());
+    }
+
+    public AssignmentLoader(AssignmentRepository repository, AssignmentImporter importer) {
+        this.repository = repository;
         this.objectMapper = new ObjectMapper();
+        this.assignmentReader = objectMapper.readerFor(Assignment.class);
+        this.importer = importer;
+    }
+
+    private static AssignmentRepository openConfiguredRepository() {
+        try {
+            return AssignmentRepository.fromConfiguration();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public AssignmentRepository getRepository() {
+        return repository;
     }
 
+    /**
+     * Loads every JSON assignment, reading files in parallel. Files that cannot be
+     * parsed are left out; use importAllAssignments() to find out which and why.
+     * @return the assignments, ordered by file path
+     * @throws IOException if the directory cannot be walked
+     */
     public List<Assignment> loadAllAssignments() throws IOException {
         List<Assignment> assignments = new ArrayList<>();
-        Path assignmentsPath = Paths.get(ASSIGNMENTS_DIR);
-        
-        if (!Files.exists(assignmentsPath)) {
-            Files.createDirectories(assignmentsPath);
+        for (AssignmentImporter.Result<Assignment> result : importAllAssignments()) {
+            if (result.isSuccess()) {
+                assignments.add(result.getValue());
+            }
         }
+        return assignments;
+    }
 
-        List<File> assignmentFiles = Files.walk(assignmentsPath)
-            .filter(Files::isRegularFile)
-            .filter(path -> path.toString().endsWith(".json"))
-            .map(Path::toFile)
-            .collect(Collectors.toList());
-
-        for (File file : assignmentFiles) {
-            assignments.add(loadAssignment(file));
+    /**
+     * Parses every JSON assignment concurrently, keeping failures per file.
+     * @return one result per file, ordered by file path
+     * @throws IOException if the directory cannot be walked
+     */
+    public List<AssignmentImporter.Result<Assignment>> importAllAssignments() throws IOException {
+        List<Path> assignmentFiles;
+        try (Stream<Path> paths = Files.walk(repository.getRoot())) {
+            assignmentFiles = paths
+                .filter(Files::isRegularFile)
+                .filter(path -> path.toString().endsWith(".json"))
+                .sorted()
+                .collect(Collectors.toList());
         }
+        return importer.importFiles(assignmentFiles, this::loadAssignment);
+    }
 
-        return assignments;
+    /**
+     * Opens the catalog of the assignments directory without loading full assignments.
+     * @return the up-to-date catalog
+     * @throws IOException if the directory cannot be read
+     */
+    public AssignmentCatalog loadCatalog() throws IOException {
+        return AssignmentCatalog.open(repository.getRoot(), objectMapper, repository.isWritable(), importer);
     }
 
     public Assignment loadAssignment(File file) throws IOException {
-        return objectMapper.readValue(file, Assignment.class);
+        return loadAssignment(file.toPath());
+    }
+
+    public Assignment loadAssignment(Path file) throws IOException {
+        long start = Metrics.start();
+        KarolEvents.AssignmentLoad event = new KarolEvents.AssignmentLoad();
+        event.begin();
+        Assignment assignment = null;
+        try (InputStream in = Files.newInputStream(file)) {
+            assignment = assignmentReader.readValue(in);
+            return assignment;
+        } finally {
+            Metrics.stop(Metrics.ASSIGNMENT_LOAD_TIME, start);
+            event.file = file.toString();
+            event.commit(assignment == null ? null : assignment.getName(), null);
+        }
+    }
+
+    /**
+     * Loads a JSON or binary assignment straight into a World without creating Wall and Beeper objects.
+     * Use this instead of loadAssignment() when the world is all that is needed.
+     * @param file The assignment file
+     * @return the assignment header and its world
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public StreamingWorldLoader.LoadedWorld loadWorld(File file) throws IOException {
+        return loadWorld(file.toPath());
+    }
+
+    /**
+     * Loads a world through the repository cache. The returned world is shared:
+     * copy it before changing it.
+     * @param file The assignment file
+     * @return the assignment header and its world
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public StreamingWorldLoader.LoadedWorld loadWorld(Path file) throws IOException {
+        long start = Metrics.start();
+        KarolEvents.AssignmentLoad event = new KarolEvents.AssignmentLoad();
+        event.begin();
+        StreamingWorldLoader.LoadedWorld loaded = null;
+        try {
+            loaded = repository.load(file);
+            return loaded;
+        } finally {
+            Metrics.stop(Metrics.ASSIGNMENT_LOAD_TIME, start);
+            event.file = file.toString();
+            event.commit(loaded == null ? null : loaded.getAssignment().getName(), null);
+        }
+    }
+
+    /**
+     * Saves an assignment as JSON or, for files ending in BinaryWorldFormat.EXTENSION, as a binary world.
+     * @param file The file to write
+     * @param header Name, description and robots
+     * @param world Size, walls and beepers
+     * @throws IOException if writing fails
+     */
+    public void saveWorld(File file, Assignment header, World world) throws IOException {
+        WorldFormatConverter.write(file.toPath(), header, world);
+        repository.invalidate(file.toPath().toAbsolutePath());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,169 @@
+package com.karol;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Where assignments come from: a directory on disk, or a resource directory on the
+ * classpath, which may be inside a jar.
+ *
+ * The location is chosen by fromConfiguration(): the karol.assignments.dir system
+ * property if set, otherwise src/main/resources/assignments when running from a source
+ * checkout, otherwise the "assignments" resource directory. Parsed worlds are cached
+ * and re-read when the file's modification time or size changes.
+ */
+public class AssignmentRepository {
+    public static final String DIRECTORY_PROPERTY = "karol.assignments.dir";
+    public static final String SOURCE_DIRECTORY = "src/main/resources/assignments";
+    public static final String RESOURCE_DIRECTORY = "assignments";
+    private static final int DEFAULT_CACHE_SIZE = 64;
+
+    private final Path root;
+    private final boolean writable;
+    private final Map<Path, CachedWorld> cache;
+
+    /**
+     * A parsed world together with the file state it was parsed from.
+     */
+    private record CachedWorld(long lastModified, long size, StreamingWorldLoader.LoadedWorld world) {
+    }
+
+    private AssignmentRepository(Path root, boolean writable, int cacheSize) {
+        this.root = root;
+        this.writable = writable;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CachedWorld> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Picks the assignment location from system properties and the working directory.
+     * @return the configured repository
+     * @throws IOException if the configured location cannot be opened
+     */
+    public static AssignmentRepository fromConfiguration() throws IOException {
+        String configured = System.getProperty(DIRECTORY_PROPERTY);
+        if (configured != null && !configured.isBlank()) {
+            return forDirectory(Paths.get(configured));
+        }
+        if (Files.isDirectory(Paths.get(SOURCE_DIRECTORY))) {
+            return forDirectory(Paths.get(SOURCE_DIRECTORY));
+        }
+        return forClasspath(RESOURCE_DIRECTORY);
+    }
+
+    /**
+     * Uses a directory on disk, creating it if needed.
+     */
+    public static AssignmentRepository forDirectory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new AssignmentRepository(directory.toAbsolutePath(), true, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Uses a resource directory on the classpath. Inside a jar the repository is read-only.
+     * @param resourceDirectory The resource path, for example "assignments"
+     * @throws IOException if the resource directory does not exist or the jar cannot be opened
+     */
+    public static AssignmentRepository forClasspath(String resourceDirectory) throws IOException {
+        return forClasspath(AssignmentRepository.class.getClassLoader(), resourceDirectory);
+    }
+
+    static AssignmentRepository forClasspath(ClassLoader classLoader, String resourceDirectory) throws IOException {
+        URL url = classLoader.getResource(resourceDirectory);
+        if (url == null) {
+            throw new IOException("No " + resourceDirectory + " directory on the classpath");
+        }
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                return new AssignmentRepository(openJar(uri).provider().getPath(uri), false, DEFAULT_CACHE_SIZE);
+            }
+            Path directory = Paths.get(uri);
+            return new AssignmentRepository(directory, Files.isWritable(directory), DEFAULT_CACHE_SIZE);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid resource location " + url, e);
+        }
+    }
+
+    private static FileSystem openJar(URI uri) throws IOException {
+        try {
+            return FileSystems.newFileSystem(uri, Map.of("accessMode", "readOnly"));
+        } catch (FileSystemAlreadyExistsException e) {
+            return FileSystems.getFileSystem(uri);
+        }
+    }
+
+    /**
+     * @return the assignments directory; may belong to a jar file system
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return true if assignments can be created, changed and deleted
+     */
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * @return true if the root is on the default file system and can be watched for changes
+     */
+    public boolean isWatchable() {
+        return writable && root.getFileSystem() == FileSystems.getDefault();
+    }
+
+    /**
+     * Loads an assignment, reusing the cached world if the file has not changed.
+     * The returned world is shared with the cache: copy it before changing it.
+     * @param file The assignment file inside the repository
+     * @return the header and its world
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public StreamingWorldLoader.LoadedWorld load(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        synchronized (cache) {
+            CachedWorld cached = cache.get(file);
+            if (cached != null && cached.lastModified() == lastModified && cached.size() == attributes.size()) {
+                return cached.world();
+            }
+        }
+        StreamingWorldLoader.LoadedWorld world = WorldFormatConverter.read(file);
+        synchronized (cache) {
+            cache.put(file, new CachedWorld(lastModified, attributes.size(), world));
+        }
+        return world;
+    }
+
+    /**
+     * Drops a file from the cache, for example after it was changed or deleted.
+     */
+    public void invalidate(Path file) {
+        synchronized (cache) {
+            cache.remove(file);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.karol;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an AssignmentCatalog in sync with its directory while the app runs.
+ *
+ * File system events are collected per file and only applied once a file has been
+ * quiet for the debounce delay, so an editor or generator writing a file in several
+ * steps causes a single update. Each update re-reads just the changed file. If the
+ * operating system drops events, the whole catalog is refreshed instead.
+ */
+public class AssignmentWatcher implements AutoCloseable {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 250;
+
+    private final AssignmentCatalog catalog;
+    private final Listener listener;
+    private final long debounceMillis;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    // File -> time of the last event seen for it
+    private final Map<Path, Long> pending = new HashMap<>();
+    private final Thread thread;
+    private volatile boolean running;
+
+    /**
+     * Receives catalog changes. Called on the watcher thread.
+     */
+    public interface Listener {
+        /**
+         * Called when an assignment file was added, changed or removed.
+         * @param oldEntry The entry before the change, or null for a new file
+         * @param newEntry The entry after the change, or null for a removed file
+         */
+        void assignmentChanged(AssignmentCatalog.Entry oldEntry, AssignmentCatalog.Entry newEntry);
+
+        /**
+         * Called after the whole catalog was rescanned because events were lost.
+         */
+        void catalogReloaded();
+
+        /**
+         * Called when the catalog could not be rescanned. The catalog keeps its old
+         * entries, and watching goes on.
+         * @param error Why the directory could not be read
+         */
+        default void reloadFailed(IOException error) {
+        }
+    }
+
+    public AssignmentWatcher(AssignmentCatalog catalog, Listener listener) throws IOException {
+        this(catalog, listener, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Creates a watcher; call start() to begin watching.
+     * @param catalog The catalog to keep up to date
+     * @param listener Receives every applied change
+     * @param debounceMillis How long a file must be quiet before it is re-read
+     * @throws IOException if the directory cannot be watched
+     */
+    public AssignmentWatcher(AssignmentCatalog catalog, Listener listener, long debounceMillis) throws IOException {
+        this.catalog = catalog;
+        this.listener = listener;
+        this.debounceMillis = debounceMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerTree(catalog.getDirectory());
+        this.thread = new Thread(this::run, "assignment-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        watchService.close();
+        thread.interrupt();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                WatchKey key = pending.isEmpty()
+                    ? watchService.take()
+                    : watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    collect(key);
+                }
+                applyQuietFiles();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher was closed
+        }
+    }
+
+    private void collect(WatchKey key) {
+        Path directory = directories.get(key);
+        long now = System.currentTimeMillis();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                reloadAll();
+                continue;
+            }
+            if (directory == null) {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerTree(path);
+                } catch (IOException e) {
+                    // The directory disappeared again; nothing to watch
+                }
+                reloadAll();
+            } else if (AssignmentCatalog.isAssignmentFile(path)) {
+                pending.put(path, now);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private void applyQuietFiles() {
+        long quietSince = System.currentTimeMillis() - debounceMillis;
+        Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Long> change = it.next();
+            if (change.getValue() > quietSince) {
+                continue;
+            }
+            it.remove();
+            Path path = change.getKey();
+            AssignmentCatalog.Entry oldEntry = catalog.findByFile(path);
+            try {
+                AssignmentCatalog.Entry newEntry = catalog.update(path);
+                if (oldEntry != newEntry) {
+                    listener.assignmentChanged(oldEntry, newEntry);
+                }
+            } catch (IOException e) {
+                // Not a valid assignment (yet); the next write will trigger another attempt
+            }
+        }
+    }
+
+    private void reloadAll() {
+        pending.clear();
+        try {
+            catalog.refresh();
+            listener.catalogReloaded();
+        } catch (IOException e) {
+            listener.reloadFailed(e);
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+                WatchKey key = directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,325 @@
+package com.karol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Compact binary storage for assignments, as an alternative to JSON.
+ *
+ * Layout (all integers are unsigned LEB128 varints unless noted):
+ * <pre>
+ *   magic        'K' 'R' 'L' 'W'
+ *   version      1 byte, currently 1
+ *   width height
+ *   name         length + 1 (0 for none), then UTF-8 bytes
+ *   description  same as name
+ *   robots       count, then per robot: x, y (zigzag varints) and the direction ordinal as 1 byte
+ *   vertical walls, horizontal walls
+ *                run count, then (clear run, set run) pairs covering the wall bitset
+ *   beepers      cell count, then per cell: distance from the previous cell index, beeper count
+ * </pre>
+ * A wall costs nothing unless it starts or ends a run, and a beeper usually costs two bytes.
+ * Files are read and written through NIO channels with a fixed-size buffer.
+ */
+public class BinaryWorldFormat {
+    public static final String EXTENSION = ".kworld";
+    private static final byte[] MAGIC = {'K', 'R', 'L', 'W'};
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Far above what the editor creates, but keeps a corrupt header from allocating gigabytes
+    private static final long MAX_WALL_POSITIONS = 1L << 24;
+    private static final Robot.Direction[] DIRECTIONS = Robot.Direction.values();
+
+    private BinaryWorldFormat() {
+    }
+
+    /**
+     * @return true if the path has the binary world extension
+     */
+    public static boolean isBinaryWorld(Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    public static void write(Path file, Assignment header, World world) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(channel, header, world);
+        }
+    }
+
+    /**
+     * Writes an assignment. Walls and beepers are taken from the world;
+     * name, description and robots from the header.
+     * @param channel The channel to write to; not closed
+     * @param header The assignment header
+     * @param world The world to store
+     * @throws IOException if writing fails
+     */
+    public static void write(WritableByteChannel channel, Assignment header, World world) throws IOException {
+        Output out = new Output(channel);
+        out.ensure(MAGIC.length + 1);
+        out.buffer.put(MAGIC);
+        out.buffer.put((byte) VERSION);
+        out.writeVarint(world.getWidth());
+        out.writeVarint(world.getHeight());
+        out.writeString(header.getName());
+        out.writeString(header.getDescription());
+
+        out.writeVarint(header.getInitialRobots().size());
+        for (Robot robot : header.getInitialRobots()) {
+            out.writeSignedVarint(robot.getX());
+            out.writeSignedVarint(robot.getY());
+            out.ensure(1);
+            out.buffer.put((byte) robot.getDirection().ordinal());
+        }
+
+        writeRuns(out, world.getVerticalWallBits(), (world.getWidth() + 1) * world.getHeight());
+        writeRuns(out, world.getHorizontalWallBits(), world.getWidth() * (world.getHeight() + 1));
+
+        int[] counts = world.getBeeperCounts();
+        int cells = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                cells++;
+            }
+        }
+        out.writeVarint(cells);
+        int previous = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                out.writeVarint(i - previous);
+                out.writeVarint(counts[i]);
+                previous = i;
+            }
+        }
+        out.flush();
+    }
+
+    public static StreamingWorldLoader.LoadedWorld read(Path file) throws IOException {
+        try (ReadableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Reads a complete assignment.
+     * @param channel The channel to read from; not closed
+     * @return the header and the populated world
+     * @throws IOException if the data is not a valid binary world
+     */
+    public static StreamingWorldLoader.LoadedWorld read(ReadableByteChannel channel) throws IOException {
+        Input in = new Input(channel);
+        Assignment header = readHeader(in);
+        World world = new World(header.getWorldWidth(), header.getWorldHeight());
+
+        readRuns(in, world.getVerticalWallBits(), (world.getWidth() + 1) * world.getHeight());
+        readRuns(in, world.getHorizontalWallBits(), world.getWidth() * (world.getHeight() + 1));
+
+        int[] counts = world.getBeeperCounts();
+        int cells = in.readVarint();
+        int index = 0;
+        for (int i = 0; i < cells; i++) {
+            index += in.readVarint();
+            int count = in.readVarint();
+            if (index < 0 || index >= counts.length) {
+                throw new IOException("Beeper cell " + index + " is outside the world");
+            }
+            counts[index] = count;
+        }
+        return new StreamingWorldLoader.LoadedWorld(header, world);
+    }
+
+    /**
+     * Reads only the header: name, description, size and robots.
+     * @param channel The channel to read from; not closed
+     * @return an assignment without walls or beepers
+     * @throws IOException if the data is not a valid binary world
+     */
+    public static Assignment readHeader(ReadableByteChannel channel) throws IOException {
+        return readHeader(new Input(channel));
+    }
+
+    private static Assignment readHeader(Input in) throws IOException {
+        in.ensure(MAGIC.length + 1);
+        for (byte b : MAGIC) {
+            if (in.buffer.get() != b) {
+                throw new IOException("Not a binary Karol world");
+            }
+        }
+        int version = in.buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary world version " + version);
+        }
+        int width = in.readVarint();
+        int height = in.readVarint();
+        // Checked before anything is sized from them, including the wall bitsets' edges
+        if (width < 0 || height < 0 || (width + 1L) * (height + 1L) > MAX_WALL_POSITIONS) {
+            throw new IOException("Invalid world size " + width + "x" + height);
+        }
+        Assignment header = new Assignment(in.readString(), in.readString(), width, height);
+
+        int robots = in.readVarint();
+        for (int i = 0; i < robots; i++) {
+            int x = in.readSignedVarint();
+            int y = in.readSignedVarint();
+            in.ensure(1);
+            int direction = in.buffer.get();
+            if (direction < 0 || direction >= DIRECTIONS.length) {
+                throw new IOException("Invalid robot direction " + direction);
+            }
+            header.addRobot(new Robot(x, y, DIRECTIONS[direction]));
+        }
+        return header;
+    }
+
+    private static void writeRuns(Output out, BitSet bits, int size) throws IOException {
+        int runs = 0;
+        for (int i = bits.nextSetBit(0); i >= 0 && i < size; i = bits.nextSetBit(bits.nextClearBit(i))) {
+            runs++;
+        }
+        out.writeVarint(runs);
+        int position = 0;
+        for (int i = 0; i < runs; i++) {
+            int start = bits.nextSetBit(position);
+            int end = Math.min(bits.nextClearBit(start), size);
+            out.writeVarint(start - position);
+            out.writeVarint(end - start);
+            position = end;
+        }
+    }
+
+    private static void readRuns(Input in, BitSet bits, int size) throws IOException {
+        int runs = in.readVarint();
+        int position = 0;
+        for (int i = 0; i < runs; i++) {
+            int start = position + in.readVarint();
+            int end = start + in.readVarint();
+            if (start < position || end < start || end > size) {
+                throw new IOException("Wall run outside the world");
+            }
+            bits.set(start, end);
+            position = end;
+        }
+    }
+
+    private static class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void writeVarint(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void writeSignedVarint(int value) throws IOException {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+    }
+
+    private static class Input {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        Input(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        /**
+         * Makes sure at least the given number of bytes is buffered.
+         */
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Binary world ended unexpectedly");
+                }
+            }
+            buffer.flip();
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                ensure(1);
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readSignedVarint() throws IOException {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() throws IOException {
+            int length = readVarint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), length - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.karol;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TextFormatter;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Program editor with a line number gutter.
+ *
+ * The gutter only creates labels for the lines that fit on screen and reuses them
+ * while scrolling. The line count is updated from each edit (only the inserted and
+ * replaced text is scanned), so typing costs the same no matter how long the program is.
+ * Lines are not wrapped, so every text line lines up with its number.
+ */
+public final class CodeEditor extends HBox {
+    private final TextArea textArea;
+    private final LineNumberGutter gutter;
+
+    public CodeEditor() {
+        setStyle("-fx-font-family: monospace; -fx-background-color: white; -fx-border-color: lightgray;");
+
+        textArea = new TextArea();
+        textArea.setWrapText(false);
+        textArea.setPrefRowCount(15);
+        textArea.setStyle("-fx-font-family: monospace;");
+
+        // Handle tab key
+        textArea.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+            if (event.getCode() == KeyCode.TAB) {
+                event.consume(); // Prevent default tab behavior
+                int caretPosition = textArea.getCaretPosition();
+                textArea.insertText(caretPosition, "    "); // Insert 4 spaces
+            }
+        });
+
+        gutter = new LineNumberGutter(textArea);
+
+        getChildren().addAll(gutter, textArea);
+        HBox.setHgrow(textArea, Priority.ALWAYS);
+    }
+
+    public TextArea getTextArea() {
+        return textArea;
+    }
+
+    public String getText() {
+        return textArea.getText();
+    }
+
+    public void setText(String text) {
+        textArea.setText(text);
+    }
+
+    /**
+     * @return the number of lines in the program
+     */
+    public int getLineCount() {
+        return gutter.lineCount;
+    }
+
+    /**
+     * Counts line breaks in part of a string without copying it.
+     */
+    static int countLineBreaks(String text, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Line number column that keeps one label per visible row.
+     */
+    private static class LineNumberGutter extends Region {
+        private final TextArea textArea;
+        private final List<Label> labels = new ArrayList<>();
+        private int lineCount = 1;
+        private double lineHeight = 1;
+        private double topInset;
+
+        LineNumberGutter(TextArea textArea) {
+            this.textArea = textArea;
+            setPadding(new Insets(0, 5, 0, 5));
+            setStyle("-fx-background-color: #f0f0f0; -fx-border-color: lightgray; -fx-border-width: 0 1 0 0;");
+            setPrefWidth(40);
+            setMinWidth(40);
+
+            Rectangle clip = new Rectangle();
+            clip.widthProperty().bind(widthProperty());
+            clip.heightProperty().bind(heightProperty());
+            setClip(clip);
+
+            // Keep the line count up to date from each change instead of rescanning the text
+            textArea.setTextFormatter(new TextFormatter<>(change -> {
+                String replaced = change.getControlText();
+                int removed = countLineBreaks(replaced, change.getRangeStart(), change.getRangeEnd());
+                String inserted = change.getText();
+                int added = countLineBreaks(inserted, 0, inserted.length());
+                if (removed != 0 || added != 0) {
+                    lineCount += added - removed;
+                    requestLayout();
+                }
+                return change;
+            }));
+
+            textArea.fontProperty().addListener((_, _, font) -> updateMetrics(font));
+            textArea.scrollTopProperty().addListener((_, _, _) -> requestLayout());
+            updateMetrics(textArea.getFont());
+        }
+
+        private void updateMetrics(Font font) {
+            Text probe = new Text("0");
+            probe.setFont(font);
+            lineHeight = Math.max(1, probe.getLayoutBounds().getHeight());
+            // TextArea pads its content by a third of an em, plus the border
+            topInset = font.getSize() / 3 + 1;
+            for (Label label : labels) {
+                label.setFont(font);
+            }
+            requestLayout();
+        }
+
+        @Override
+        protected void layoutChildren() {
+            int visibleRows = (int) Math.ceil(getHeight() / lineHeight) + 1;
+            while (labels.size() < visibleRows) {
+                Label label = new Label();
+                label.setStyle("-fx-font-family: monospace; -fx-text-fill: #666666;");
+                label.setFont(textArea.getFont());
+                label.setAlignment(Pos.CENTER_RIGHT);
+                labels.add(label);
+                getChildren().add(label);
+            }
+
+            double scrollTop = textArea.getScrollTop();
+            int firstLine = Math.max(0, (int) Math.floor((scrollTop - topInset) / lineHeight));
+            double labelWidth = getWidth() - snappedLeftInset() - snappedRightInset();
+
+            for (int i = 0; i < labels.size(); i++) {
+                Label label = labels.get(i);
+                int line = firstLine + i;
+                if (i >= visibleRows || line >= lineCount) {
+                    label.setVisible(false);
+                    continue;
+                }
+                String number = String.valueOf(line + 1);
+                if (!number.equals(label.getText())) {
+                    label.setText(number);
+                }
+                label.setVisible(true);
+                label.resizeRelocate(snappedLeftInset(), topInset + line * lineHeight - scrollTop, labelWidth, lineHeight);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.karol;
+
+import java.util.function.LongConsumer;
+
+/**
+ * An undo/redo history of editor commands, packed into a fixed-size ring of longs.
+ *
+ * Every command is a single long: an operation code, the cell it applies to and a
+ * 34-bit argument holding whatever is needed to reverse it (a beeper count, the robot's
+ * previous position). Recording, undoing and redoing a command touch one array slot.
+ * Commands recorded between beginGroup() and endGroup() are marked as joined to the
+ * previous one and are undone and redone together, so a bulk edit is one step.
+ *
+ * When the ring is full the oldest step is dropped. A single group larger than the
+ * whole ring cannot be undone as a whole, so endGroup() then clears the history
+ * rather than leave a partial step behind.
+ */
+public class EditLog {
+    public static final int DEFAULT_CAPACITY = 4096;
+    /** Largest x or y a command can hold. */
+    public static final int MAX_COORDINATE = (1 << 13) - 1;
+
+    // Layout: op (3 bits) | joined (1) | x (13) | y (13) | argument (34)
+    private static final int OP_SHIFT = 61;
+    private static final long JOINED = 1L << 60;
+    private static final int X_SHIFT = 47;
+    private static final int Y_SHIFT = 34;
+    private static final long ARGUMENT_MASK = (1L << 34) - 1;
+
+    private final long[] entries;
+    private int head;
+    private int size;
+    private int position;
+    private boolean grouping;
+    private boolean groupStarted;
+    private boolean groupOverflowed;
+
+    public EditLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Maximum number of commands kept
+     */
+    public EditLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.entries = new long[capacity];
+    }
+
+    /**
+     * Packs a command into a long.
+     * @param op Operation code, 0 to 7
+     * @param x Cell x, 0 to MAX_COORDINATE
+     * @param y Cell y, 0 to MAX_COORDINATE
+     * @param argument Operation-specific data, 0 to 2^34 - 1
+     */
+    public static long encode(int op, int x, int y, long argument) {
+        if (op < 0 || op > 7) {
+            throw new IllegalArgumentException("Invalid operation " + op);
+        }
+        if (x < 0 || x > MAX_COORDINATE || y < 0 || y > MAX_COORDINATE) {
+            throw new IllegalArgumentException("Cell (" + x + ", " + y + ") cannot be recorded");
+        }
+        if ((argument & ~ARGUMENT_MASK) != 0) {
+            throw new IllegalArgumentException("Argument " + argument + " does not fit");
+        }
+        return ((long) op << OP_SHIFT) | ((long) x << X_SHIFT) | ((long) y << Y_SHIFT) | argument;
+    }
+
+    public static int op(long command) {
+        return (int) (command >>> OP_SHIFT);
+    }
+
+    public static int x(long command) {
+        return (int) (command >>> X_SHIFT) & MAX_COORDINATE;
+    }
+
+    public static int y(long command) {
+        return (int) (command >>> Y_SHIFT) & MAX_COORDINATE;
+    }
+
+    public static long argument(long command) {
+        return command & ARGUMENT_MASK;
+    }
+
+    /**
+     * Starts a group: commands recorded until endGroup() form one undo step.
+     */
+    public void beginGroup() {
+        grouping = true;
+        groupStarted = false;
+        groupOverflowed = false;
+    }
+
+    /**
+     * Ends the current group.
+     * @return false if the group did not fit in the log, in which case the history was cleared
+     */
+    public boolean endGroup() {
+        grouping = false;
+        if (groupOverflowed) {
+            groupOverflowed = false;
+            clear();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a command that has just been applied. Anything that could be redone is discarded.
+     * @param command A command from encode()
+     */
+    public void record(long command) {
+        size = position;
+        command &= ~JOINED;
+        if (grouping && groupStarted) {
+            command |= JOINED;
+        }
+        groupStarted = grouping;
+        if (size == entries.length) {
+            dropOldestStep();
+            if (size == 0) {
+                // The group outgrew the log; what is left of it starts a new step
+                command &= ~JOINED;
+                groupOverflowed = grouping;
+            }
+        }
+        entries[index(size)] = command;
+        size++;
+        position++;
+    }
+
+    private void dropOldestStep() {
+        do {
+            head = index(1);
+            size--;
+            position--;
+        } while (size > 0 && (entries[head] & JOINED) != 0);
+    }
+
+    public boolean canUndo() {
+        return position > 0;
+    }
+
+    public boolean canRedo() {
+        return position < size;
+    }
+
+    /**
+     * Steps back one command or group.
+     * @param reverse Called for each command to reverse, newest first
+     * @return false if there was nothing to undo
+     */
+    public boolean undo(LongConsumer reverse) {
+        if (position == 0) {
+            return false;
+        }
+        long command;
+        do {
+            position--;
+            command = entries[index(position)];
+            reverse.accept(command & ~JOINED);
+        } while ((command & JOINED) != 0 && position > 0);
+        return true;
+    }
+
+    /**
+     * Re-applies the command or group undone last.
+     * @param apply Called for each command to apply again, oldest first
+     * @return false if there was nothing to redo
+     */
+    public boolean redo(LongConsumer apply) {
+        if (position == size) {
+            return false;
+        }
+        do {
+            apply.accept(entries[index(position)] & ~JOINED);
+            position++;
+        } while (position < size && (entries[index(position)] & JOINED) != 0);
+        return true;
+    }
+
+    /**
+     * @return the number of commands that can currently be undone
+     */
+    public int getUndoCount() {
+        return position;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        position = 0;
+    }
+
+    private int index(int offset) {
+        return (head + offset) % entries.length;
+    }
+}
@@ -0,0 +1,240 @@
+package com.karol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded queue for one stage of GradingScheduler.
+ *
+ * Items wait in one lane per priority. Within a lane every student has their own
+ * FIFO queue and students take turns, so a student who submits fifty regrades does
+ * not push everybody else back fifty places. Interactive items go first, but after
+ * batchShare interactive items in a row one batch item is taken, so batch jobs keep
+ * moving under a steady stream of interactive ones.
+ *
+ * When the queue is full, offer() makes room for an interactive item by shedding a
+ * batch item from the student with the most queued batch work, and otherwise
+ * rejects. put() waits for room instead, which is how one stage pushes back on the
+ * stage before it.
+ */
+class FairQueue<T> {
+    /**
+     * One priority lane: a FIFO queue per student and the order students take turns in.
+     */
+    private static class Lane<T> {
+        private final Map<String, ArrayDeque<T>> queues = new HashMap<>();
+        private final ArrayDeque<String> turns = new ArrayDeque<>();
+        private int size;
+
+        void add(String student, T item) {
+            ArrayDeque<T> queue = queues.get(student);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(student, queue);
+                turns.addLast(student);
+            }
+            queue.addLast(item);
+            size++;
+        }
+
+        T poll() {
+            String student = turns.pollFirst();
+            ArrayDeque<T> queue = queues.get(student);
+            T item = queue.pollFirst();
+            if (queue.isEmpty()) {
+                queues.remove(student);
+            } else {
+                turns.addLast(student);
+            }
+            size--;
+            return item;
+        }
+
+        /**
+         * Removes the newest item of the student with the most items queued.
+         */
+        T removeFromLargest() {
+            String largest = null;
+            for (Map.Entry<String, ArrayDeque<T>> entry : queues.entrySet()) {
+                if (largest == null || entry.getValue().size() > queues.get(largest).size()) {
+                    largest = entry.getKey();
+                }
+            }
+            ArrayDeque<T> queue = queues.get(largest);
+            T item = queue.pollLast();
+            if (queue.isEmpty()) {
+                queues.remove(largest);
+                turns.remove(largest);
+            }
+            size--;
+            return item;
+        }
+
+        int count(String student) {
+            ArrayDeque<T> queue = queues.get(student);
+            return queue == null ? 0 : queue.size();
+        }
+
+        void drainTo(List<T> items) {
+            for (ArrayDeque<T> queue : queues.values()) {
+                items.addAll(queue);
+            }
+            queues.clear();
+            turns.clear();
+            size = 0;
+        }
+    }
+
+    private final int capacity;
+    private final int perStudentLimit;
+    private final int batchShare;
+    private final Map<GradingScheduler.Priority, Lane<T>> lanes = new EnumMap<>(GradingScheduler.Priority.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int size;
+    private int interactiveStreak;
+    private boolean closed;
+
+    /**
+     * @param capacity Maximum number of items waiting
+     * @param perStudentLimit Maximum number of items one student may have waiting in offer()
+     * @param batchShare Take one batch item after this many interactive items in a row
+     */
+    FairQueue(int capacity, int perStudentLimit, int batchShare) {
+        if (capacity < 1 || perStudentLimit < 1 || batchShare < 1) {
+            throw new IllegalArgumentException("Queue limits must be at least 1");
+        }
+        this.capacity = capacity;
+        this.perStudentLimit = perStudentLimit;
+        this.batchShare = batchShare;
+        for (GradingScheduler.Priority priority : GradingScheduler.Priority.values()) {
+            lanes.put(priority, new Lane<>());
+        }
+    }
+
+    /**
+     * Adds an item without waiting.
+     * @return the batch item that was shed to make room, or null if none was
+     * @throws RejectedExecutionException if the queue is closed or full, or the student already has too many items waiting
+     */
+    T offer(String student, GradingScheduler.Priority priority, T item) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("Queue is shut down");
+            }
+            int waiting = 0;
+            for (Lane<T> lane : lanes.values()) {
+                waiting += lane.count(student);
+            }
+            if (waiting >= perStudentLimit) {
+                throw new RejectedExecutionException(student + " already has " + waiting + " submissions waiting");
+            }
+            T shed = null;
+            if (size >= capacity) {
+                Lane<T> batch = lanes.get(GradingScheduler.Priority.BATCH);
+                if (priority != GradingScheduler.Priority.INTERACTIVE || batch.size == 0) {
+                    throw new RejectedExecutionException("Queue is full");
+                }
+                shed = batch.removeFromLargest();
+                size--;
+            }
+            lanes.get(priority).add(student, item);
+            size++;
+            notEmpty.signal();
+            return shed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an item, waiting while the queue is full. The per-student limit does not apply.
+     * @throws RejectedExecutionException if the queue is closed
+     */
+    void put(String student, GradingScheduler.Priority priority, T item) throws InterruptedException {
+        lock.lock();
+        try {
+            while (size >= capacity && !closed) {
+                notFull.await();
+            }
+            if (closed) {
+                throw new RejectedExecutionException("Queue is shut down");
+            }
+            lanes.get(priority).add(student, item);
+            size++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the next item in priority and turn order.
+     * @return the item, or null once the queue has been closed
+     */
+    T take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (size == 0 && !closed) {
+                notEmpty.await();
+            }
+            if (closed) {
+                return null;
+            }
+            Lane<T> interactive = lanes.get(GradingScheduler.Priority.INTERACTIVE);
+            Lane<T> batch = lanes.get(GradingScheduler.Priority.BATCH);
+            T item;
+            if (interactive.size > 0 && (batch.size == 0 || interactiveStreak < batchShare)) {
+                item = interactive.poll();
+                interactiveStreak++;
+            } else {
+                item = batch.poll();
+                interactiveStreak = 0;
+            }
+            size--;
+            notFull.signal();
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the queue and wakes every waiting thread.
+     * @return the items that were still waiting
+     */
+    List<T> close() {
+        lock.lock();
+        try {
+            closed = true;
+            List<T> remaining = new ArrayList<>(size);
+            for (Lane<T> lane : lanes.values()) {
+                lane.drainTo(remaining);
+            }
+            size = 0;
+            notEmpty.signalAll();
+            notFull.signalAll();
+            return remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.karol;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * The outcome of grading one submission: compiler errors if it did not compile,
+ * otherwise how the run ended, where Karol ended up, and which expectations held.
+ * Serialized to JSON as-is by GradingServer, and read back by WorkerPool.
+ */
+@JsonIgnoreProperties(value = "passed", allowGetters = true)
+public class GradingResult {
+    public enum Outcome {
+        /** The program ran to the end. */
+        COMPLETED,
+        COMPILE_ERROR,
+        /** The program threw, for example by moving into a wall. */
+        RUNTIME_ERROR,
+        /** The program used more steps than allowed, usually an endless loop. */
+        STEP_LIMIT_EXCEEDED,
+        /** The program ran longer than allowed without finishing. */
+        TIMED_OUT
+    }
+
+    /**
+     * Karol and the world after the run.
+     */
+    public static class FinalState {
+        private final int x;
+        private final int y;
+        private final Robot.Direction direction;
+        private final int beepersInBag;
+        private final int beepersInWorld;
+
+        @JsonCreator
+        FinalState(@JsonProperty("x") int x, @JsonProperty("y") int y, @JsonProperty("direction") Robot.Direction direction,
+                   @JsonProperty("beepersInBag") int beepersInBag, @JsonProperty("beepersInWorld") int beepersInWorld) {
+            this.x = x;
+            this.y = y;
+            this.direction = direction;
+            this.beepersInBag = beepersInBag;
+            this.beepersInWorld = beepersInWorld;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public Robot.Direction getDirection() {
+            return direction;
+        }
+
+        public int getBeepersInBag() {
+            return beepersInBag;
+        }
+
+        public int getBeepersInWorld() {
+            return beepersInWorld;
+        }
+    }
+
+    /**
+     * One expectation compared with the final state.
+     */
+    @JsonIgnoreProperties(value = "passed", allowGetters = true)
+    public static class Check {
+        private final String name;
+        private final String expected;
+        private final String actual;
+
+        @JsonCreator
+        Check(@JsonProperty("name") String name, @JsonProperty("expected") Object expected,
+              @JsonProperty("actual") Object actual) {
+            this.name = name;
+            this.expected = String.valueOf(expected);
+            this.actual = String.valueOf(actual);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getExpected() {
+            return expected;
+        }
+
+        public String getActual() {
+            return actual;
+        }
+
+        public boolean isPassed() {
+            return expected.equals(actual);
+        }
+    }
+
+    private final String assignment;
+    private final Outcome outcome;
+    private final String message;
+    private final List<ProgramExecutor.CompileError> diagnostics;
+    private final long steps;
+    private final long actions;
+    private final long sensorReads;
+    private final FinalState finalState;
+    private final List<Check> checks;
+    private final long compileMillis;
+    private final long runMillis;
+    private final boolean cached;
+
+    GradingResult(String assignment, Outcome outcome, String message, List<ProgramExecutor.CompileError> diagnostics,
+                  long steps, FinalState finalState, List<Check> checks, long compileMillis, long runMillis) {
+        this(assignment, outcome, message, diagnostics, steps, 0, 0, finalState, checks, compileMillis, runMillis, false);
+    }
+
+    @JsonCreator
+    GradingResult(@JsonProperty("assignment") String assignment, @JsonProperty("outcome") Outcome outcome,
+                  @JsonProperty("message") String message,
+                  @JsonProperty("diagnostics") List<ProgramExecutor.CompileError> diagnostics,
+                  @JsonProperty("steps") long steps, @JsonProperty("actions") long actions,
+                  @JsonProperty("sensorReads") long sensorReads, @JsonProperty("finalState") FinalState finalState,
+                  @JsonProperty("checks") List<Check> checks, @JsonProperty("compileMillis") long compileMillis,
+                  @JsonProperty("runMillis") long runMillis, @JsonProperty("cached") boolean cached) {
+        this.assignment = assignment;
+        this.outcome = outcome;
+        this.message = message;
+        this.diagnostics = List.copyOf(diagnostics);
+        this.steps = steps;
+        this.actions = actions;
+        this.sensorReads = sensorReads;
+        this.finalState = finalState;
+        this.checks = List.copyOf(checks);
+        this.compileMillis = compileMillis;
+        this.runMillis = runMillis;
+        this.cached = cached;
+    }
+
+    /**
+     * @return a copy of this result with other checks
+     */
+    GradingResult withChecks(List<Check> checks, boolean cached) {
+        return new GradingResult(assignment, outcome, message, diagnostics, steps, actions, sensorReads, finalState, checks,
+            compileMillis, runMillis, cached);
+    }
+
+    public String getAssignment() {
+        return assignment;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return what went wrong, or null if the program completed
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the compiler errors; empty unless the outcome is COMPILE_ERROR
+     */
+    public List<ProgramExecutor.CompileError> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * @return the actions and sensor reads the program performed
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the moves, turns, picks and puts the program performed
+     */
+    public long getActions() {
+        return actions;
+    }
+
+    /**
+     * @return how often the program asked frontIsClear(), beeperPresent() or hasBeeper()
+     */
+    public long getSensorReads() {
+        return sensorReads;
+    }
+
+    /**
+     * @return Karol's final state, or null if the program did not compile or timed out
+     */
+    public FinalState getFinalState() {
+        return finalState;
+    }
+
+    public List<Check> getChecks() {
+        return checks;
+    }
+
+    public long getCompileMillis() {
+        return compileMillis;
+    }
+
+    public long getRunMillis() {
+        return runMillis;
+    }
+
+    /**
+     * @return true if the result was found in the ResultCache; the times are then those of the original run
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @return true if the program completed and every expectation held
+     */
+    public boolean isPassed() {
+        return outcome == Outcome.COMPLETED && checks.stream().allMatch(Check::isPassed);
+    }
+}
@@ -0,0 +1,272 @@
+package com.karol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues submissions in front of GradingService so a deadline rush degrades into
+ * waiting and explicit rejections instead of hundreds of compilers fighting for CPU
+ * and heap.
+ *
+ * A submission passes through two stages, compile and run. Each stage has a bounded
+ * FairQueue and a fixed number of worker threads, so the number of compiles and runs
+ * in progress never exceeds its limit. Within a stage interactive runs go before
+ * batch regrades and students take turns. New submissions are never waited for: if
+ * the compile queue is full they are rejected at once, or a queued batch regrade is
+ * shed to make room for an interactive run. Between the stages a compile worker
+ * waits for room in the run queue, so a slow run stage slows compiling down instead
+ * of piling up compiled programs.
+ *
+ * Rejected and shed submissions complete exceptionally with a RejectedExecutionException.
+ * Submissions the service has a cached result for skip the queue entirely.
+ *
+ * With a WorkerPool there is a single stage: each worker JVM compiles and runs the
+ * program, and there is one stage thread per worker.
+ */
+public class GradingScheduler implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_PER_STUDENT_LIMIT = 20;
+    public static final int DEFAULT_BATCH_SHARE = 8;
+
+    public enum Priority {
+        /** A student pressed Run and is waiting for the answer. */
+        INTERACTIVE,
+        /** A regrade nobody is watching. */
+        BATCH
+    }
+
+    private static class Job {
+        private final String student;
+        private final Priority priority;
+        private final String assignment;
+        private final String source;
+        private final GradingService.Expectations expectations;
+        private final CompletableFuture<GradingResult> result = new CompletableFuture<>();
+        private GradingService.Compiled compiled;
+
+        Job(String student, Priority priority, String assignment, String source, GradingService.Expectations expectations) {
+            this.student = student;
+            this.priority = priority;
+            this.assignment = assignment;
+            this.source = source;
+            this.expectations = expectations;
+        }
+    }
+
+    private final GradingService service;
+    private final WorkerPool pool;
+    private final FairQueue<Job> compileQueue;
+    private final FairQueue<Job> runQueue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+
+    /**
+     * Creates a scheduler with one compile and one run worker per processor and default queue limits.
+     */
+    public GradingScheduler(GradingService service) {
+        this(service, Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
+            DEFAULT_QUEUE_CAPACITY, DEFAULT_PER_STUDENT_LIMIT);
+    }
+
+    /**
+     * @param service The service that compiles and runs programs
+     * @param compileWorkers Maximum number of programs compiled at once
+     * @param runWorkers Maximum number of programs run at once
+     * @param queueCapacity Maximum number of submissions waiting in each stage
+     * @param perStudentLimit Maximum number of submissions one student may have waiting to compile
+     */
+    public GradingScheduler(GradingService service, int compileWorkers, int runWorkers, int queueCapacity, int perStudentLimit) {
+        this(service, null, compileWorkers, runWorkers, queueCapacity, perStudentLimit);
+    }
+
+    /**
+     * Creates a scheduler that grades in worker JVMs, one submission per worker at a time.
+     * @param service The service that knows which assignments exist
+     * @param pool The worker JVMs that compile and run programs; not closed by close()
+     * @param queueCapacity Maximum number of submissions waiting
+     * @param perStudentLimit Maximum number of submissions one student may have waiting
+     */
+    public GradingScheduler(GradingService service, WorkerPool pool, int queueCapacity, int perStudentLimit) {
+        this(service, pool, pool.getSize(), 0, queueCapacity, perStudentLimit);
+    }
+
+    private GradingScheduler(GradingService service, WorkerPool pool, int compileWorkers, int runWorkers,
+                             int queueCapacity, int perStudentLimit) {
+        if (compileWorkers < 1 || (pool == null && runWorkers < 1)) {
+            throw new IllegalArgumentException("Each stage needs at least one worker");
+        }
+        this.service = service;
+        this.pool = pool;
+        this.compileQueue = new FairQueue<>(queueCapacity, perStudentLimit, DEFAULT_BATCH_SHARE);
+        this.runQueue = new FairQueue<>(queueCapacity, queueCapacity, DEFAULT_BATCH_SHARE);
+        for (int i = 0; i < compileWorkers; i++) {
+            workers.add(Thread.ofVirtual().name("grading-compile-" + i).start(pool == null ? this::compileLoop : this::isolatedLoop));
+        }
+        for (int i = 0; i < runWorkers; i++) {
+            workers.add(Thread.ofVirtual().name("grading-run-" + i).start(this::runLoop));
+        }
+    }
+
+    /**
+     * Queues a submission for grading.
+     * @param student Who submitted it; students take turns within a priority
+     * @param priority INTERACTIVE for a waiting student, BATCH for regrades
+     * @param assignment The assignment to run the program in
+     * @param source The program's source code
+     * @param expectations What the final state should be, or null
+     * @return the result once graded; completes with a RejectedExecutionException if the submission is shed
+     * @throws IllegalArgumentException if there is no such assignment
+     * @throws RejectedExecutionException if the queue is full or the student has too many submissions waiting
+     */
+    public CompletableFuture<GradingResult> submit(String student, Priority priority, String assignment, String source,
+                                                   GradingService.Expectations expectations) {
+        if (!service.hasAssignment(assignment)) {
+            throw new IllegalArgumentException("Unknown assignment: " + assignment);
+        }
+        GradingResult cached = service.findCached(assignment, source, expectations);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        Job job = new Job(student, priority, assignment, source, expectations);
+        Job dropped;
+        try {
+            dropped = compileQueue.offer(student, priority, job);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+        if (dropped != null) {
+            shed.incrementAndGet();
+            dropped.result.completeExceptionally(
+                new RejectedExecutionException("Regrade was dropped to make room for interactive runs"));
+        }
+        return job.result;
+    }
+
+    private void compileLoop() {
+        try {
+            Job job;
+            while ((job = compileQueue.take()) != null) {
+                if (job.result.isDone()) {
+                    continue;
+                }
+                try {
+                    job.compiled = service.compile(job.assignment, job.source);
+                } catch (RuntimeException e) {
+                    job.result.completeExceptionally(e);
+                    continue;
+                }
+                if (!job.compiled.isSuccess()) {
+                    job.result.complete(job.compiled.getFailure());
+                    continue;
+                }
+                try {
+                    runQueue.put(job.student, job.priority, job);
+                } catch (RejectedExecutionException e) {
+                    job.result.completeExceptionally(e);
+                } catch (InterruptedException e) {
+                    job.result.completeExceptionally(new RejectedExecutionException("Grading is shutting down"));
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        try {
+            Job job;
+            while ((job = runQueue.take()) != null) {
+                if (job.result.isDone()) {
+                    continue;
+                }
+                try {
+                    job.result.complete(service.run(job.compiled, job.expectations));
+                } catch (RuntimeException e) {
+                    job.result.completeExceptionally(e);
+                } catch (InterruptedException e) {
+                    job.result.completeExceptionally(new RejectedExecutionException("Grading is shutting down"));
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Grades whole submissions in the worker pool.
+     */
+    private void isolatedLoop() {
+        try {
+            Job job;
+            while ((job = compileQueue.take()) != null) {
+                if (job.result.isDone()) {
+                    continue;
+                }
+                try {
+                    WorkerPool.Graded graded = pool.gradeInWorker(job.assignment, job.source, job.expectations);
+                    if (graded.reproducible()) {
+                        service.cacheResult(job.assignment, job.source, graded.result());
+                    }
+                    job.result.complete(graded.result());
+                } catch (RuntimeException e) {
+                    job.result.completeExceptionally(e);
+                } catch (InterruptedException e) {
+                    job.result.completeExceptionally(new RejectedExecutionException("Grading is shutting down"));
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return submissions waiting to be compiled
+     */
+    public int getQueuedCompiles() {
+        return compileQueue.size();
+    }
+
+    /**
+     * @return compiled submissions waiting to be run
+     */
+    public int getQueuedRuns() {
+        return runQueue.size();
+    }
+
+    /**
+     * @return submissions turned away because the queue was full or the student had too many waiting
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return batch submissions dropped from the queue to make room for interactive ones
+     */
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    /**
+     * Stops the workers. Submissions that are still waiting complete with a RejectedExecutionException.
+     */
+    @Override
+    public void close() {
+        List<Job> remaining = new ArrayList<>(compileQueue.close());
+        remaining.addAll(runQueue.close());
+        for (Job job : remaining) {
+            job.result.completeExceptionally(new RejectedExecutionException("Grading is shutting down"));
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+}
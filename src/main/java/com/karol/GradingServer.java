@@ -0,0 +1,286 @@
+package com.karol;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A small HTTP front end for GradingService, so a learning management system can
+ * submit programs without anyone opening the UI. Every request gets its own virtual
+ * thread, so requests waiting in the GradingScheduler queue cost almost nothing.
+ *
+ * Endpoints:
+ *   POST /grade        {"assignment": "...", "source": "...", "expected": {"x": 4, "beepersInWorld": 0},
+ *                       "student": "...", "priority": "INTERACTIVE" or "BATCH"}
+ *                      returns a GradingResult as JSON, or 503 with Retry-After when the queue is full
+ *   GET  /assignments  the names of the assignments that can be graded
+ *   GET  /health       "ok" once the assignments are loaded
+ *   GET  /leaderboard  assignments with results; ?assignment=... the most efficient passing submissions
+ *   GET  /metrics      Prometheus text, when started with -Dkarol.metrics.enabled=true
+ *
+ * Usage: java com.karol.GradingServer [port]
+ * The server listens on the loopback interface only; put a proxy in front of it to
+ * expose it. Assignments come from the same place as in the app (karol.assignments.dir).
+ * With -Dkarol.grading.workers=N programs are compiled and run in N separate worker
+ * JVMs (see WorkerPool) instead of inside the server.
+ */
+public class GradingServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8089;
+    /** Largest request body accepted, which is far more than any sensible program. */
+    public static final int MAX_REQUEST_BYTES = 1 << 20;
+    /** Number of worker JVMs to grade in; 0, the default, grades inside the server. */
+    public static final String WORKERS_PROPERTY = "karol.grading.workers";
+    private static final int BACKLOG = 1024;
+    private static final int RETRY_AFTER_SECONDS = 5;
+    private static final String ANONYMOUS_STUDENT = "anonymous";
+
+    private final GradingService service;
+    private final GradingScheduler scheduler;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Leaderboard leaderboard = new Leaderboard();
+
+    /**
+     * Creates a server; call start() to accept requests.
+     * @param service The service that grades submissions
+     * @param address Where to listen; use port 0 to pick a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public GradingServer(GradingService service, InetSocketAddress address) throws IOException {
+        this(service, new GradingScheduler(service), address);
+    }
+
+    /**
+     * Creates a server that queues submissions in the given scheduler.
+     * @param service The service that grades submissions
+     * @param scheduler The queue in front of the service; closed together with the server
+     * @param address Where to listen; use port 0 to pick a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public GradingServer(GradingService service, GradingScheduler scheduler, InetSocketAddress address) throws IOException {
+        this.service = service;
+        this.scheduler = scheduler;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/grade", this::handleGrade);
+        server.createContext("/assignments", this::handleAssignments);
+        server.createContext("/health", exchange -> respond(exchange, 200, "ok"));
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/leaderboard", this::handleLeaderboard);
+        Metrics.REGISTRY.gauge("karol_grading_queued", "Submissions waiting in a grading stage",
+            scheduler::getQueuedCompiles, "stage", "compile");
+        Metrics.REGISTRY.gauge("karol_grading_queued", "Submissions waiting in a grading stage",
+            scheduler::getQueuedRuns, "stage", "run");
+        Metrics.REGISTRY.gauge("karol_grading_rejected", "Submissions turned away because the queue was full",
+            scheduler::getRejectedCount);
+        Metrics.REGISTRY.gauge("karol_grading_shed", "Batch submissions dropped to make room for interactive ones",
+            scheduler::getShedCount);
+        ResultCache cache = service.getResultCache();
+        if (cache != null) {
+            Metrics.REGISTRY.gauge("karol_grading_cache_lookups", "Result cache lookups", cache::getHitCount,
+                "result", "hit");
+            Metrics.REGISTRY.gauge("karol_grading_cache_lookups", "Result cache lookups", cache::getMissCount,
+                "result", "miss");
+            Metrics.REGISTRY.gauge("karol_grading_cache_write_failures", "Results that could not be written to disk",
+                cache::getWriteFailureCount);
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleGrade(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respondError(exchange, 405, "Use POST");
+            return;
+        }
+        JsonNode request;
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_REQUEST_BYTES + 1);
+            if (body.length > MAX_REQUEST_BYTES) {
+                respondError(exchange, 413, "Request is larger than " + MAX_REQUEST_BYTES + " bytes");
+                return;
+            }
+            request = mapper.readTree(body);
+        } catch (IOException e) {
+            respondError(exchange, 400, "Request is not valid JSON: " + e.getMessage());
+            return;
+        }
+        if (request == null || !request.path("assignment").isTextual() || !request.path("source").isTextual()) {
+            respondError(exchange, 400, "Request needs \"assignment\" and \"source\" strings");
+            return;
+        }
+
+        GradingService.Expectations expectations;
+        GradingScheduler.Priority priority;
+        try {
+            expectations = request.hasNonNull("expected")
+                ? mapper.treeToValue(request.get("expected"), GradingService.Expectations.class)
+                : null;
+            priority = GradingScheduler.Priority.valueOf(request.path("priority").asText("INTERACTIVE").toUpperCase());
+        } catch (IOException | IllegalArgumentException e) {
+            respondError(exchange, 400, "Invalid expectations or priority: " + e.getMessage());
+            return;
+        }
+        String student = request.path("student").asText(ANONYMOUS_STUDENT);
+
+        try {
+            GradingResult result = scheduler.submit(student, priority, request.get("assignment").asText(),
+                request.get("source").asText(), expectations).get();
+            if (!result.isCached()) {
+                // A cached result is a regrade of a submission that was already counted
+                leaderboard.record(student, result);
+            }
+            respond(exchange, 200, mapper.writeValueAsString(result));
+        } catch (IllegalArgumentException e) {
+            respondError(exchange, 404, e.getMessage());
+        } catch (RejectedExecutionException e) {
+            rejectBusy(exchange, e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                rejectBusy(exchange, e.getCause().getMessage());
+            } else {
+                respondError(exchange, 500, e.getCause().getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respondError(exchange, 503, "Server is shutting down");
+        }
+    }
+
+    /**
+     * Tells the client the server is too busy and when to try again.
+     */
+    private void rejectBusy(HttpExchange exchange, String message) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+        respondError(exchange, 503, message);
+    }
+
+    private void handleAssignments(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respondError(exchange, 405, "Use GET");
+            return;
+        }
+        respond(exchange, 200, mapper.writeValueAsString(service.getAssignmentNames()));
+    }
+
+    private void handleLeaderboard(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respondError(exchange, 405, "Use GET");
+            return;
+        }
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null || !query.startsWith("assignment=")) {
+            respond(exchange, 200, mapper.writeValueAsString(leaderboard.getAssignments()));
+            return;
+        }
+        String assignment = query.substring("assignment=".length());
+        Leaderboard.Summary summary = leaderboard.getSummary(assignment);
+        if (summary == null) {
+            respondError(exchange, 404, "No results for " + assignment);
+        } else {
+            respond(exchange, 200, mapper.writeValueAsString(summary));
+        }
+    }
+
+    /**
+     * @return the rankings built from the submissions graded by this server
+     */
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        if (!Metrics.ENABLED) {
+            respondError(exchange, 404, "Metrics are disabled; start with -Dkarol.metrics.enabled=true");
+            return;
+        }
+        respond(exchange, 200, Metrics.REGISTRY.toPrometheus());
+    }
+
+    private void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        respond(exchange, status, mapper.writeValueAsString(Map.of("error", String.valueOf(message))));
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String type = body.startsWith("{") || body.startsWith("[") ? "application/json" : "text/plain";
+        exchange.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Stops accepting requests, waits briefly for running ones, and shuts the service down.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        scheduler.close();
+        executor.close();
+        service.close();
+        Metrics.unpublish();
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int workerCount = Integer.getInteger(WORKERS_PROPERTY, 0);
+        try {
+            GradingService service = new GradingService(new AssignmentLoader(), Runtime.getRuntime().availableProcessors(),
+                GradingService.DEFAULT_STEP_LIMIT, GradingService.DEFAULT_TIME_LIMIT, ResultCache.fromConfiguration());
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+            GradingServer server;
+            if (workerCount > 0) {
+                WorkerPool pool = new WorkerPool(workerCount);
+                Metrics.REGISTRY.gauge("karol_grading_workers_recycled",
+                    "Worker JVMs replaced after use, a timeout or a crash", pool::getRecycledCount);
+                Metrics.REGISTRY.gauge("karol_grading_worker_restart_failures",
+                    "Replacement worker JVMs that failed to start", pool::getRestartFailureCount);
+                GradingScheduler scheduler = new GradingScheduler(service, pool,
+                    GradingScheduler.DEFAULT_QUEUE_CAPACITY, GradingScheduler.DEFAULT_PER_STUDENT_LIMIT);
+                server = new GradingServer(service, scheduler, address);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    server.close();
+                    pool.close();
+                }));
+            } else {
+                server = new GradingServer(service, address);
+                Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            }
+            for (String skipped : service.getSkippedAssignments()) {
+                System.err.println("Skipping " + skipped);
+            }
+            server.start();
+            Metrics.publish();
+            System.out.println("Grading " + service.getAssignmentNames().size() + " assignments on http://localhost:"
+                + server.getPort() + "/grade");
+        } catch (IOException e) {
+            System.err.println("Could not start the grading server: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,587 @@
+package com.karol;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Grades submissions without the UI: compiles a program with ProgramExecutor, runs it
+ * against a fresh copy of an assignment's world and compares the final state with
+ * the expectations sent along with it.
+ *
+ * All assignments are loaded once, up front, and kept in memory; each submission
+ * only copies the world it runs in. Compilation is CPU- and memory-heavy, so only a
+ * few compiles run at once and further callers wait their turn; with virtual threads
+ * waiting is cheap, which lets hundreds of submissions be in flight together. Runs
+ * are stopped after a step limit, and abandoned after a time limit for programs that
+ * loop without calling Karol at all.
+ *
+ * Student code runs on platform threads, never on virtual threads: a program spinning
+ * without calling Karol cannot be stopped, and on a virtual thread it would hold a
+ * carrier thread for good, stalling every other virtual thread in the JVM. At most
+ * compileConcurrency programs run at once, and an abandoned program keeps its slot
+ * until it ends. Use a WorkerPool to get such programs killed instead.
+ *
+ * With a ResultCache, a submission identical to an earlier one for an unchanged
+ * assignment is answered from the cache; only its checks are worked out again.
+ *
+ * Thread-safe.
+ */
+public class GradingService implements AutoCloseable {
+    public static final int DEFAULT_STEP_LIMIT = 1_000_000;
+    public static final Duration DEFAULT_TIME_LIMIT = Duration.ofSeconds(10);
+    /**
+     * Bump whenever a change to compiling, running or Karol itself could change a
+     * result, so results cached by the older code are no longer used.
+     */
+    public static final int EXECUTOR_VERSION = 2;
+
+    /**
+     * What the final state should look like. Fields left null are not checked.
+     */
+    public static class Expectations {
+        @JsonProperty("x")
+        private Integer x;
+
+        @JsonProperty("y")
+        private Integer y;
+
+        @JsonProperty("direction")
+        private Robot.Direction direction;
+
+        @JsonProperty("beepersInBag")
+        private Integer beepersInBag;
+
+        @JsonProperty("beepersInWorld")
+        private Integer beepersInWorld;
+
+        public Expectations() {
+        }
+
+        public Expectations(Integer x, Integer y, Robot.Direction direction, Integer beepersInBag, Integer beepersInWorld) {
+            this.x = x;
+            this.y = y;
+            this.direction = direction;
+            this.beepersInBag = beepersInBag;
+            this.beepersInWorld = beepersInWorld;
+        }
+
+        public Integer getX() {
+            return x;
+        }
+
+        public Integer getY() {
+            return y;
+        }
+
+        public Robot.Direction getDirection() {
+            return direction;
+        }
+
+        public Integer getBeepersInBag() {
+            return beepersInBag;
+        }
+
+        public Integer getBeepersInWorld() {
+            return beepersInWorld;
+        }
+    }
+
+    /**
+     * Thrown into a program from inside a Karol call to stop it. An Error rather than an
+     * exception so a student's catch (Exception e) cannot swallow it.
+     */
+    private static class RunStopped extends Error {
+        private static final long serialVersionUID = 1L;
+
+        RunStopped(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Counts actions and sensor reads, and stops the program once it has used up its
+     * steps or was given up on.
+     */
+    private static class StepBudget implements KarolListener {
+        private final long limit;
+        private long steps;
+        private long actions;
+        private long sensorReads;
+        // Set when the run timed out; guarded by this together with finished
+        private volatile boolean abandoned;
+        private boolean finished;
+
+        StepBudget(long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void onAction(Karol karol, Karol.Action action) {
+            step();
+            actions++;
+        }
+
+        @Override
+        public void onSensor(Karol karol, Karol.Sensor sensor, boolean result) {
+            step();
+            sensorReads++;
+        }
+
+        private void step() {
+            if (abandoned) {
+                throw new RunStopped("Program was stopped");
+            }
+            if (++steps > limit) {
+                throw new RunStopped("Program exceeded the limit of " + limit + " steps");
+            }
+        }
+
+        boolean isExceeded() {
+            return steps > limit;
+        }
+    }
+
+    private final AssignmentLoader loader;
+    private final Map<String, StreamingWorldLoader.LoadedWorld> assignments = new ConcurrentHashMap<>();
+    private final Semaphore compilePermits;
+    private final int runnerCount;
+    private final Semaphore runPermits;
+    // Runs that timed out but are still spinning on their runner
+    private final AtomicInteger runaways = new AtomicInteger();
+    private final ExecutorService runners = Executors.newThreadPerTaskExecutor(
+        Thread.ofPlatform().name("grading-run-", 0).daemon().factory());
+    private final long stepLimit;
+    private final Duration timeLimit;
+    private final ResultCache cache;
+    private final String executorVersion;
+    // Assignment name -> ResultCache.assignmentHash()
+    private final Map<String, String> assignmentHashes = new ConcurrentHashMap<>();
+    private volatile List<String> skipped = List.of();
+
+    /**
+     * Creates a service with default limits and one concurrent compile per processor.
+     * @throws IOException if the assignments cannot be read
+     */
+    public GradingService(AssignmentLoader loader) throws IOException {
+        this(loader, Runtime.getRuntime().availableProcessors(), DEFAULT_STEP_LIMIT, DEFAULT_TIME_LIMIT);
+    }
+
+    /**
+     * @param loader Where assignments come from
+     * @param compileConcurrency Maximum number of programs compiled, and of programs run, at the same time
+     * @param stepLimit Maximum number of actions and sensor reads per run
+     * @param timeLimit Maximum wall-clock time per run
+     * @throws IOException if the assignments cannot be read
+     */
+    public GradingService(AssignmentLoader loader, int compileConcurrency, long stepLimit, Duration timeLimit) throws IOException {
+        this(loader, compileConcurrency, stepLimit, timeLimit, null);
+    }
+
+    /**
+     * @param loader Where assignments come from
+     * @param compileConcurrency Maximum number of programs compiled, and of programs run, at the same time
+     * @param stepLimit Maximum number of actions and sensor reads per run
+     * @param timeLimit Maximum wall-clock time per run
+     * @param cache Where to remember results so unchanged submissions are not graded again, or null
+     * @throws IOException if the assignments cannot be read
+     */
+    public GradingService(AssignmentLoader loader, int compileConcurrency, long stepLimit, Duration timeLimit,
+                          ResultCache cache) throws IOException {
+        if (compileConcurrency < 1) {
+            throw new IllegalArgumentException("Compile concurrency must be at least 1");
+        }
+        this.loader = loader;
+        this.compilePermits = new Semaphore(compileConcurrency, true);
+        this.runnerCount = compileConcurrency;
+        this.runPermits = new Semaphore(compileConcurrency, true);
+        this.stepLimit = stepLimit;
+        this.timeLimit = timeLimit;
+        this.cache = cache;
+        this.executorVersion = EXECUTOR_VERSION + "/java" + Runtime.version().feature()
+            + "/steps" + stepLimit + "/ms" + timeLimit.toMillis();
+        reload();
+    }
+
+    /**
+     * Reads every assignment into memory again, for example after files were changed.
+     * Assignments that fail to load are left out; getSkippedAssignments() says why.
+     * @throws IOException if the assignments directory cannot be read
+     */
+    public final void reload() throws IOException {
+        AssignmentCatalog catalog = loader.loadCatalog();
+        List<AssignmentCatalog.Entry> entries = catalog.getEntries();
+        List<Path> files = new ArrayList<>(entries.size());
+        for (AssignmentCatalog.Entry entry : entries) {
+            files.add(catalog.resolve(entry));
+        }
+        Map<String, StreamingWorldLoader.LoadedWorld> loaded = new TreeMap<>();
+        List<String> failed = new ArrayList<>();
+        for (AssignmentImporter.Result<StreamingWorldLoader.LoadedWorld> result
+                : new AssignmentImporter().importFiles(files, loader::loadWorld)) {
+            if (result.isSuccess()) {
+                loaded.put(result.getValue().getAssignment().getName(), result.getValue());
+            } else {
+                failed.add(result.getFile() + ": " + result.getError().getMessage());
+            }
+        }
+        Map<String, String> hashes = new TreeMap<>();
+        if (cache != null) {
+            for (Map.Entry<String, StreamingWorldLoader.LoadedWorld> entry : loaded.entrySet()) {
+                hashes.put(entry.getKey(), ResultCache.assignmentHash(entry.getValue()));
+            }
+        }
+        assignmentHashes.keySet().retainAll(hashes.keySet());
+        assignmentHashes.putAll(hashes);
+        assignments.keySet().retainAll(loaded.keySet());
+        assignments.putAll(loaded);
+        skipped = List.copyOf(failed);
+    }
+
+    /**
+     * @return one line per assignment file the last reload could not read, with the reason
+     */
+    public List<String> getSkippedAssignments() {
+        return skipped;
+    }
+
+    /**
+     * @return the names of the assignments that can be graded, sorted
+     */
+    public List<String> getAssignmentNames() {
+        return assignments.keySet().stream().sorted().toList();
+    }
+
+    /**
+     * @return true if an assignment with this name is loaded
+     */
+    public boolean hasAssignment(String assignmentName) {
+        return assignmentName != null && assignments.containsKey(assignmentName);
+    }
+
+    /**
+     * A submission after compilation: either a program ready to run or the result
+     * describing why it did not compile.
+     */
+    public static class Compiled {
+        private final String assignmentName;
+        private final StreamingWorldLoader.LoadedWorld assignment;
+        private final Class<?> programClass;
+        private final GradingResult failure;
+        private final long compileMillis;
+        private final String submission;
+        private final String cacheKey;
+        private final boolean rejectedByCompiler;
+
+        private Compiled(String assignmentName, StreamingWorldLoader.LoadedWorld assignment, Class<?> programClass,
+                         GradingResult failure, long compileMillis, String submission, String cacheKey,
+                         boolean rejectedByCompiler) {
+            this.assignmentName = assignmentName;
+            this.assignment = assignment;
+            this.programClass = programClass;
+            this.failure = failure;
+            this.compileMillis = compileMillis;
+            this.submission = submission;
+            this.cacheKey = cacheKey;
+            this.rejectedByCompiler = rejectedByCompiler;
+        }
+
+        public boolean isSuccess() {
+            return failure == null;
+        }
+
+        /**
+         * Whether the outcome so far depends only on the source: the program compiled, or
+         * javac reported errors in it. A failure for any other reason, such as a missing
+         * compiler or a full disk, may not happen again and must not be cached.
+         */
+        public boolean isReproducible() {
+            return failure == null || rejectedByCompiler;
+        }
+
+        /**
+         * @return the COMPILE_ERROR result, or null if the program compiled
+         */
+        public GradingResult getFailure() {
+            return failure;
+        }
+
+        public long getCompileMillis() {
+            return compileMillis;
+        }
+
+        /**
+         * @return the hash identifying the submission's source, see KarolEvents.submissionHash()
+         */
+        public String getSubmission() {
+            return submission;
+        }
+    }
+
+    /**
+     * Compiles and runs a submission. At most compileConcurrency callers compile at once.
+     * @param assignmentName The assignment to run the program in
+     * @param source The program's source code
+     * @param expectations What the final state should be; null to only check that the program completes
+     * @return the grading result; problems with the program itself are reported there, not thrown
+     * @throws IllegalArgumentException if there is no such assignment
+     * @throws IllegalStateException if the assignment has no robot to run the program with
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public GradingResult grade(String assignmentName, String source, Expectations expectations) throws InterruptedException {
+        GradingResult cached = findCached(assignmentName, source, expectations);
+        if (cached != null) {
+            return cached;
+        }
+        Compiled compiled;
+        compilePermits.acquire();
+        try {
+            compiled = compile(assignmentName, source);
+        } finally {
+            compilePermits.release();
+        }
+        return compiled.isSuccess() ? run(compiled, expectations) : compiled.getFailure();
+    }
+
+    /**
+     * Compiles a submission without limiting concurrency; callers such as GradingScheduler
+     * limit it themselves.
+     * @throws IllegalArgumentException if there is no such assignment
+     * @throws IllegalStateException if the assignment has no robot to run the program with
+     */
+    public Compiled compile(String assignmentName, String source) {
+        StreamingWorldLoader.LoadedWorld loaded = assignmentName == null ? null : assignments.get(assignmentName);
+        if (loaded == null) {
+            throw new IllegalArgumentException("Unknown assignment: " + assignmentName);
+        }
+        if (loaded.getAssignment().getInitialRobots().isEmpty()) {
+            throw new IllegalStateException("Assignment " + assignmentName + " has no robot");
+        }
+
+        String submission = KarolEvents.submissionHash(source);
+        String cacheKey = cacheKey(assignmentName, source);
+        long compileStart = System.nanoTime();
+        GradingResult failure;
+        try {
+            Class<?> programClass = ProgramExecutor.compileAndLoad(source, ProgramExecutor.findClassName(source),
+                assignmentName, submission);
+            return new Compiled(assignmentName, loaded, programClass, null, millisSince(compileStart), submission, cacheKey,
+                false);
+        } catch (ProgramExecutor.CompilationException e) {
+            failure = new GradingResult(assignmentName, GradingResult.Outcome.COMPILE_ERROR, e.getMessage(), e.getErrors(),
+                0, null, List.of(), millisSince(compileStart), 0);
+            if (cacheKey != null) {
+                cache.put(cacheKey, failure);
+            }
+            return new Compiled(assignmentName, loaded, null, failure, failure.getCompileMillis(), submission, cacheKey,
+                true);
+        } catch (Exception e) {
+            // Validation failures end up here too; they are cheap to repeat, so nothing is lost by not caching them
+            failure = new GradingResult(assignmentName, GradingResult.Outcome.COMPILE_ERROR, e.getMessage(),
+                List.of(new ProgramExecutor.CompileError(0, 0, e.getMessage())), 0, null, List.of(), millisSince(compileStart), 0);
+        }
+        return new Compiled(assignmentName, loaded, null, failure, failure.getCompileMillis(), submission, cacheKey,
+            false);
+    }
+
+    /**
+     * @return the cache key of a submission, or null if there is no cache
+     */
+    private String cacheKey(String assignmentName, String source) {
+        String assignmentHash = assignmentName == null ? null : assignmentHashes.get(assignmentName);
+        if (cache == null || assignmentHash == null) {
+            return null;
+        }
+        return ResultCache.key(ResultCache.sourceHash(source), assignmentHash, executorVersion);
+    }
+
+    /**
+     * Looks for the result of an identical earlier submission to the same, unchanged assignment.
+     * @param expectations What the final state should be; checked against the cached final state
+     * @return the cached result with fresh checks, or null if the submission has to be graded
+     */
+    public GradingResult findCached(String assignmentName, String source, Expectations expectations) {
+        String key = cacheKey(assignmentName, source);
+        GradingResult cached = key == null ? null : cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        return cached.withChecks(cached.getFinalState() == null ? List.of() : checks(expectations, cached.getFinalState()), true);
+    }
+
+    /**
+     * Remembers a result graded elsewhere, for example in a WorkerPool. Only pass results
+     * that depend on nothing but the submission; see Compiled.isReproducible().
+     */
+    public void cacheResult(String assignmentName, String source, GradingResult result) {
+        String key = cacheKey(assignmentName, source);
+        if (key != null) {
+            cache.put(key, result);
+        }
+    }
+
+    /**
+     * @return the result cache, or null if results are not cached
+     */
+    public ResultCache getResultCache() {
+        return cache;
+    }
+
+    /**
+     * Runs a compiled program against a fresh copy of its assignment's world.
+     * @param compiled A successfully compiled submission
+     * @param expectations What the final state should be; null to only check that the program completes
+     * @throws IllegalArgumentException if the submission did not compile
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the run
+     */
+    public GradingResult run(Compiled compiled, Expectations expectations) throws InterruptedException {
+        if (!compiled.isSuccess()) {
+            throw new IllegalArgumentException("Submission did not compile");
+        }
+        String assignmentName = compiled.assignmentName;
+        long compileMillis = compiled.compileMillis;
+        Class<?> programClass = compiled.programClass;
+        Robot start = compiled.assignment.getAssignment().getInitialRobots().get(0);
+        World world = compiled.assignment.getWorld().copy();
+        Karol karol = new Karol(start.getX(), start.getY(), start.getDirection(), world);
+        StepBudget budget = new StepBudget(stepLimit);
+        KarolEvents.Execute event = new KarolEvents.Execute();
+        event.begin();
+        acquireRunner();
+        long runStart = System.nanoTime();
+        Future<?> run;
+        try {
+            run = runners.submit(() -> {
+                try {
+                    ProgramExecutor.executeProgram(programClass, karol, budget);
+                    return null;
+                } finally {
+                    synchronized (budget) {
+                        budget.finished = true;
+                        if (budget.abandoned) {
+                            runaways.decrementAndGet();
+                        }
+                    }
+                    runPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            runPermits.release();
+            throw e;
+        }
+
+        GradingResult.Outcome outcome = GradingResult.Outcome.COMPLETED;
+        String message = null;
+        try {
+            run.get(timeLimit.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // A program looping without calling Karol cannot be interrupted; its thread and run permit
+            // are given back only when it ends
+            abandon(budget);
+            run.cancel(true);
+            event.steps = budget.steps;
+            event.outcome = GradingResult.Outcome.TIMED_OUT.name();
+            event.commit(assignmentName, compiled.submission);
+            return new GradingResult(assignmentName, GradingResult.Outcome.TIMED_OUT,
+                "Program did not finish within " + timeLimit.toMillis() + " ms", List.of(), 0, null, List.of(),
+                compileMillis, millisSince(runStart));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            outcome = budget.isExceeded() ? GradingResult.Outcome.STEP_LIMIT_EXCEEDED : GradingResult.Outcome.RUNTIME_ERROR;
+            message = cause.getMessage();
+        } catch (InterruptedException e) {
+            abandon(budget);
+            run.cancel(true);
+            throw e;
+        }
+        long runMillis = millisSince(runStart);
+        event.steps = budget.steps;
+        event.outcome = outcome.name();
+        event.commit(assignmentName, compiled.submission);
+
+        int beepersInWorld = 0;
+        for (int count : world.getBeeperCounts()) {
+            beepersInWorld += count;
+        }
+        GradingResult.FinalState finalState = new GradingResult.FinalState(
+            karol.getX(), karol.getY(), karol.getDirection(), karol.getBeepersInBag(), beepersInWorld);
+        GradingResult result = new GradingResult(assignmentName, outcome, message, List.of(), budget.steps,
+            budget.actions, budget.sensorReads, finalState, checks(expectations, finalState),
+            compileMillis, runMillis, false);
+        if (compiled.cacheKey != null) {
+            cache.put(compiled.cacheKey, result);
+        }
+        return result;
+    }
+
+    static List<GradingResult.Check> checks(Expectations expected, GradingResult.FinalState actual) {
+        List<GradingResult.Check> checks = new ArrayList<>();
+        if (expected == null) {
+            return checks;
+        }
+        if (expected.getX() != null) {
+            checks.add(new GradingResult.Check("x", expected.getX(), actual.getX()));
+        }
+        if (expected.getY() != null) {
+            checks.add(new GradingResult.Check("y", expected.getY(), actual.getY()));
+        }
+        if (expected.getDirection() != null) {
+            checks.add(new GradingResult.Check("direction", expected.getDirection(), actual.getDirection()));
+        }
+        if (expected.getBeepersInBag() != null) {
+            checks.add(new GradingResult.Check("beepersInBag", expected.getBeepersInBag(), actual.getBeepersInBag()));
+        }
+        if (expected.getBeepersInWorld() != null) {
+            checks.add(new GradingResult.Check("beepersInWorld", expected.getBeepersInWorld(), actual.getBeepersInWorld()));
+        }
+        return checks;
+    }
+
+    /**
+     * Tells a run to stop at its next Karol call, and counts it as a runaway until it does.
+     */
+    private void abandon(StepBudget budget) {
+        synchronized (budget) {
+            budget.abandoned = true;
+            if (!budget.finished) {
+                runaways.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Waits for a free runner.
+     * @throws IllegalStateException if every runner is held by a program that timed out and is still running
+     */
+    private void acquireRunner() throws InterruptedException {
+        while (!runPermits.tryAcquire(timeLimit.toMillis(), TimeUnit.MILLISECONDS)) {
+            if (runaways.get() >= runnerCount) {
+                throw new IllegalStateException("Every runner is still busy with a program that did not stop in time");
+            }
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void close() {
+        runners.shutdownNow();
+    }
+}
@@ -0,0 +1,162 @@
+package com.karol;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The main class of a worker JVM started by WorkerPool. It loads the assignments,
+ * warms up the compiler by grading a small program, and then grades one submission
+ * at a time for its parent.
+ *
+ * Requests and responses are JSON frames, each preceded by its length as a 4-byte
+ * int. They travel over a loopback connection to the port the parent listens on,
+ * never over standard input or output: a student program can open those through
+ * FileDescriptor and would otherwise be able to write a result of its own. The worker
+ * first reads a token frame from standard input and sends it back as the first frame
+ * on the connection, then sends a READY frame once it is warm. System.out is pointed
+ * at standard error and System.in is replaced by an empty stream before anything runs.
+ *
+ * Usage: java com.karol.GradingWorker port stepLimit timeLimitMillis [assignmentsDirectory]
+ */
+public class GradingWorker {
+    static final String READY = "READY";
+    /** Largest frame either side accepts. */
+    static final int MAX_FRAME_BYTES = 16 << 20;
+
+    /**
+     * One submission sent to a worker.
+     */
+    static class Request {
+        @JsonProperty("assignment")
+        String assignment;
+
+        @JsonProperty("source")
+        String source;
+
+        @JsonProperty("expected")
+        GradingService.Expectations expected;
+
+        Request() {
+        }
+
+        Request(String assignment, String source, GradingService.Expectations expected) {
+            this.assignment = assignment;
+            this.source = source;
+            this.expected = expected;
+        }
+    }
+
+    /**
+     * A worker's answer: the result, or why the submission could not be graded at all.
+     */
+    static class Response {
+        @JsonProperty("result")
+        GradingResult result;
+
+        @JsonProperty("error")
+        String error;
+
+        /** Whether the result depends only on the submission, see GradingService.Compiled.isReproducible(). */
+        @JsonProperty("reproducible")
+        boolean reproducible;
+    }
+
+    static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+        out.flush();
+    }
+
+    /**
+     * @return the next frame, or null at end of stream
+     * @throws IOException if the stream ends in the middle of a frame or the frame is too large
+     */
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    public static void main(String[] args) throws IOException {
+        byte[] token = readFrame(new DataInputStream(System.in));
+        if (token == null) {
+            throw new IOException("No token on standard input");
+        }
+        System.setOut(System.err);
+        System.setIn(InputStream.nullInputStream());
+
+        int port = Integer.parseInt(args[0]);
+        long stepLimit = Long.parseLong(args[1]);
+        Duration timeLimit = Duration.ofMillis(Long.parseLong(args[2]));
+        AssignmentLoader loader = args.length > 3
+            ? new AssignmentLoader(AssignmentRepository.forDirectory(Path.of(args[3])))
+            : new AssignmentLoader();
+        ObjectMapper mapper = new ObjectMapper();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             GradingService service = new GradingService(loader, 1, stepLimit, timeLimit)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            writeFrame(out, token);
+            warmUp(service);
+            writeFrame(out, READY.getBytes(StandardCharsets.UTF_8));
+
+            byte[] frame;
+            while ((frame = readFrame(in)) != null) {
+                Request request = mapper.readValue(frame, Request.class);
+                Response response = new Response();
+                try {
+                    // One submission at a time, so compiling needs no permit
+                    GradingService.Compiled compiled = service.compile(request.assignment, request.source);
+                    response.result = compiled.isSuccess()
+                        ? service.run(compiled, request.expected)
+                        : compiled.getFailure();
+                    response.reproducible = compiled.isReproducible()
+                        && response.result.getOutcome() != GradingResult.Outcome.TIMED_OUT;
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    response.error = e.getMessage();
+                }
+                writeFrame(out, mapper.writeValueAsBytes(response));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compiles and runs one program so the first real submission does not pay for loading javac.
+     */
+    private static void warmUp(GradingService service) throws InterruptedException {
+        List<String> names = service.getAssignmentNames();
+        for (String name : names) {
+            try {
+                service.grade(name, ProgramExecutor.WARM_UP_SOURCE, null);
+                return;
+            } catch (IllegalStateException e) {
+                // No robot in this assignment; try the next one
+            }
+        }
+    }
+}
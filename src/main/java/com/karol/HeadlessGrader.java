@@ -0,0 +1,208 @@
+package com.karol;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The grading jobs that need neither a window nor a compiler, as a command-line tool
+ * that can be built as a GraalVM native image (mvn -Pnative package) and then starts in
+ * milliseconds.
+ *
+ * A native image cannot load classes at run time, so a student's program is never
+ * compiled or run here. Submissions are sent to a grading server instead, whose JVM
+ * stays warm between submissions (see GradingServer and WorkerPool); what runs
+ * natively is loading assignments, simulating the world and reporting results.
+ *
+ * Usage:
+ * <pre>
+ *   validate file-or-directory...            WorldLint findings; exit code 1 if there are errors or warnings
+ *   replay assignment trace [expected.json]  replays a .ktrace onto the assignment and prints the result as JSON
+ *   grade server assignment source [expected.json]
+ *                                            grades a submission on a grading server and prints the result
+ * </pre>
+ * replay and grade exit with 0 if the result passed and 1 if it did not. Usage and I/O
+ * errors exit with 2.
+ */
+public class HeadlessGrader {
+    private static final Duration GRADE_TIMEOUT = GradingService.DEFAULT_TIME_LIMIT.plus(WorkerPool.COMPILE_ALLOWANCE);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HeadlessGrader() {
+    }
+
+    /**
+     * Checks assignment files, or every assignment below a directory.
+     * @return one line per finding, prefixed with the file
+     * @throws IOException if a directory cannot be walked
+     */
+    static List<String> validate(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            return WorldLint.lintDirectory(path);
+        }
+        return WorldLint.lint(WorldFormatConverter.read(path)).stream()
+            .map(finding -> path + ": " + finding)
+            .toList();
+    }
+
+    /**
+     * Replays a recorded run onto an assignment's world, as if the program ran again.
+     * An action the world does not allow, such as moving into a wall, ends the replay
+     * with RUNTIME_ERROR: the trace was recorded in a different world.
+     * @param assignmentFile The assignment the trace was recorded in
+     * @param traceFile A trace written by TraceWriter
+     * @param expectations What the final state should be; null to only check that the replay completes
+     * @return the result, with the trace's step, action and sensor counts
+     * @throws IOException if either file cannot be read
+     */
+    static GradingResult replay(Path assignmentFile, Path traceFile, GradingService.Expectations expectations)
+            throws IOException {
+        StreamingWorldLoader.LoadedWorld loaded = WorldFormatConverter.read(assignmentFile);
+        World world = loaded.getWorld().copy();
+        String name = loaded.getAssignment().getName();
+        long start = System.nanoTime();
+        try (TraceReader trace = new TraceReader(traceFile)) {
+            Karol karol = new Karol(trace.getStartX(), trace.getStartY(), trace.getStartDirection(), world);
+            for (int i = 0; i < trace.getStartBeepersInBag(); i++) {
+                // Karol starts empty-handed; fill the bag without touching the world
+                world.addBeepers(karol.getX(), karol.getY(), 1);
+                karol.pickBeeper();
+            }
+
+            GradingResult.Outcome outcome = GradingResult.Outcome.COMPLETED;
+            String message = null;
+            long steps = 0;
+            long actions = 0;
+            TraceReader.Cursor cursor = trace.cursor();
+            try {
+                while (cursor.next()) {
+                    steps++;
+                    if (!cursor.isAction()) {
+                        continue;
+                    }
+                    actions++;
+                    switch (cursor.getAction()) {
+                        case MOVE -> karol.move();
+                        case TURN_LEFT -> karol.turnLeft();
+                        case TURN_RIGHT -> karol.turnRight();
+                        case PICK_BEEPER -> karol.pickBeeper();
+                        case PUT_BEEPER -> karol.putBeeper();
+                    }
+                }
+            } catch (IllegalStateException e) {
+                outcome = GradingResult.Outcome.RUNTIME_ERROR;
+                message = "Step " + cursor.getStep() + " (" + cursor.getAction() + ") is not possible here: "
+                    + e.getMessage();
+            }
+
+            int beepersInWorld = 0;
+            for (int count : world.getBeeperCounts()) {
+                beepersInWorld += count;
+            }
+            GradingResult.FinalState finalState = new GradingResult.FinalState(
+                karol.getX(), karol.getY(), karol.getDirection(), karol.getBeepersInBag(), beepersInWorld);
+            long runMillis = (System.nanoTime() - start) / 1_000_000;
+            return new GradingResult(name, outcome, message, List.of(), steps, actions, steps - actions, finalState,
+                GradingService.checks(expectations, finalState), 0, runMillis, false);
+        }
+    }
+
+    /**
+     * Sends a submission to a grading server's /grade endpoint.
+     * @param server The server's base URI, for example http://localhost:8089
+     * @throws IOException if the server cannot be reached or rejects the request
+     * @throws InterruptedException if interrupted while waiting for the result
+     */
+    static GradingResult grade(URI server, String assignmentName, String source,
+                               GradingService.Expectations expectations) throws IOException, InterruptedException {
+        ObjectNode request = MAPPER.createObjectNode()
+            .put("assignment", assignmentName)
+            .put("source", source)
+            .put("priority", GradingScheduler.Priority.BATCH.name());
+        if (expectations != null) {
+            request.set("expected", MAPPER.valueToTree(expectations));
+        }
+        HttpRequest httpRequest = HttpRequest.newBuilder(server.resolve("/grade"))
+            .timeout(GRADE_TIMEOUT)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(request)))
+            .build();
+        HttpResponse<byte[]> response;
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            response = client.send(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+        }
+        if (response.statusCode() != 200) {
+            String error = MAPPER.readTree(response.body()).path("error").asText("HTTP " + response.statusCode());
+            throw new IOException("Grading server refused the submission: " + error);
+        }
+        return MAPPER.readValue(response.body(), GradingResult.class);
+    }
+
+    private static GradingService.Expectations readExpectations(String[] args, int index) throws IOException {
+        return args.length > index ? MAPPER.readValue(Path.of(args[index]).toFile(), GradingService.Expectations.class) : null;
+    }
+
+    private static void usage() {
+        System.err.println("""
+            Usage: karol-grader validate file-or-directory...
+                   karol-grader replay assignment trace [expected.json]
+                   karol-grader grade server assignment source [expected.json]""");
+        System.exit(2);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            usage();
+        }
+        try {
+            switch (args[0]) {
+                case "validate" -> {
+                    boolean failed = false;
+                    for (int i = 1; i < args.length; i++) {
+                        for (String line : validate(Path.of(args[i]))) {
+                            System.out.println(line);
+                            failed |= line.contains(": ERROR: ") || line.contains(": WARNING: ");
+                        }
+                    }
+                    System.exit(failed ? 1 : 0);
+                }
+                case "replay" -> {
+                    if (args.length < 3) {
+                        usage();
+                    }
+                    GradingResult result = replay(Path.of(args[1]), Path.of(args[2]), readExpectations(args, 3));
+                    System.out.println(MAPPER.writeValueAsString(result));
+                    System.exit(result.isPassed() ? 0 : 1);
+                }
+                case "grade" -> {
+                    if (args.length < 4) {
+                        usage();
+                    }
+                    GradingResult result = grade(URI.create(args[1]), args[2], Files.readString(Path.of(args[3])),
+                        readExpectations(args, 4));
+                    System.out.println(MAPPER.writeValueAsString(result));
+                    System.exit(result.isPassed() ? 0 : 1);
+                }
+                default -> usage();
+            }
+        } catch (NoSuchFileException e) {
+            System.err.println(args[0] + " failed: no such file " + e.getFile());
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println(args[0] + " failed: " + e.getMessage());
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(2);
+        }
+    }
+}
@@ -1,11 +1,31 @@
 package com.karol;
 
+import java.util.Arrays;
+
 public class Karol {
+    private static final KarolListener[] NO_LISTENERS = new KarolListener[0];
+
+    /**
+     * The primitive actions that change Karol's state.
+     * Composite commands like turnAround() are reported as the primitives they perform.
+     */
+    public enum Action {
+        MOVE, TURN_LEFT, TURN_RIGHT, PICK_BEEPER, PUT_BEEPER
+    }
+
+    /**
+     * The questions a program can ask about Karol's surroundings.
+     */
+    public enum Sensor {
+        FRONT_IS_CLEAR, BEEPER_PRESENT, HAS_BEEPER
+    }
+
     private int x;
     private int y;
     private Robot.Direction direction;
     private World world;
     private int beepersInBag;  // Track how many beepers Karol is carrying
+    private KarolListener[] listeners = NO_LISTENERS;
 
     public Karol(int x, int y, Robot.Direction direction, World world) {
         this.x = x;
@@ -27,6 +47,59 @@ public class Karol {
         return direction;
     }
 
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Registers a listener that is told about every action Karol performs.
+     * @param listener The listener to add
+     */
+    public void addListener(KarolListener listener) {
+        KarolListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Removes a listener previously added with addListener().
+     * @param listener The listener to remove
+     */
+    public void removeListener(KarolListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                KarolListener[] updated = new KarolListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+                listeners = updated.length == 0 ? NO_LISTENERS : updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Restores the number of beepers in the bag, used when rebuilding a recorded state.
+     */
+    void setBeepersInBag(int beepersInBag) {
+        this.beepersInBag = beepersInBag;
+    }
+
+    private void fire(Action action) {
+        if (Metrics.ENABLED) {
+            Metrics.KAROL_ACTIONS[action.ordinal()].increment();
+        }
+        for (KarolListener listener : listeners) {
+            listener.onAction(this, action);
+        }
+    }
+
+    private boolean fire(Sensor sensor, boolean result) {
+        for (KarolListener listener : listeners) {
+            listener.onSensor(this, sensor, result);
+        }
+        return result;
+    }
+
     public void move() {
         int newX = x;
         int newY = y;
@@ -41,6 +114,7 @@ public class Karol {
         if (world.isValidMove(x, y, newX, newY)) {
             x = newX;
             y = newY;
+            fire(Action.MOVE);
         } else {
             throw new IllegalStateException("Cannot move in that direction!");
         }
@@ -53,6 +127,7 @@ public class Karol {
             case SOUTH -> Robot.Direction.EAST;
             case EAST -> Robot.Direction.NORTH;
         };
+        fire(Action.TURN_LEFT);
     }
 
     public void turnRight() {
@@ -62,6 +137,7 @@ public class Karol {
             case SOUTH -> Robot.Direction.WEST;
             case WEST -> Robot.Direction.NORTH;
         };
+        fire(Action.TURN_RIGHT);
     }
 
     public void pickBeeper() {
@@ -71,12 +147,14 @@ public class Karol {
         } catch (IllegalStateException e) {
             throw new IllegalStateException("No beeper to pick up!");
         }
+        fire(Action.PICK_BEEPER);
     }
 
     public void putBeeper() {
         if (beepersInBag > 0) {  // Only put beeper if Karol has one
             world.putBeeper(x, y);
             beepersInBag--;  // Remove beeper from Karol's bag
+            fire(Action.PUT_BEEPER);
         } else {
             throw new IllegalStateException("No beepers in bag to put down!");
         }
@@ -93,16 +171,11 @@ public class Karol {
             case WEST -> checkX--;
         }
 
-        return world.isValidMove(x, y, checkX, checkY);
+        return fire(Sensor.FRONT_IS_CLEAR, world.isValidMove(x, y, checkX, checkY));
     }
 
     public boolean beeperPresent() {
-        for (Beeper beeper : world.getBeepers()) {
-            if (beeper.getX() == x && beeper.getY() == y) {
-                return true;
-            }
-        }
-        return false;
+        return fire(Sensor.BEEPER_PRESENT, world.getBeeperCount(x, y) > 0);
     }
 
     /**
@@ -118,7 +191,7 @@ public class Karol {
      * @return true if Karol has at least one beeper
      */
     public boolean hasBeeper() {
-        return beepersInBag > 0;
+        return fire(Sensor.HAS_BEEPER, beepersInBag > 0);
     }
 
     /**
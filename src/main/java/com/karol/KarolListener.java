@@ -0,0 +1,24 @@
+package com.karol;
+
+/**
+ * Receives a callback for every action Karol performs and every sensor it reads.
+ * Listeners are called after the action has changed Karol's state, so failed
+ * actions (like moving into a wall) are never reported.
+ */
+public interface KarolListener {
+    /**
+     * Called after Karol has performed an action.
+     * @param karol The robot that performed the action
+     * @param action The action that was performed
+     */
+    void onAction(Karol karol, Karol.Action action);
+
+    /**
+     * Called after Karol has read a sensor, with the answer the program received.
+     * @param karol The robot whose sensor was read
+     * @param sensor The sensor that was read
+     * @param result The value returned to the program
+     */
+    default void onSensor(Karol karol, Karol.Sensor sensor, boolean result) {
+    }
+}
@@ -0,0 +1,253 @@
+package com.karol;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Ranks passing submissions per assignment by how efficient they are: fewest actions,
+ * fewest sensor reads and shortest run time.
+ *
+ * Results are folded in one at a time as they are graded and then dropped. Per
+ * assignment only the best topK entries of each ranking are kept, plus a
+ * MetricsRegistry.Histogram per measure for the percentiles, so memory depends on
+ * the number of assignments and topK and not on the number of results: 100,000
+ * results take the same space as 100. A student appears at most once in each ranking,
+ * with their best submission.
+ *
+ * Thread-safe.
+ */
+public class Leaderboard {
+    public static final int DEFAULT_TOP_K = 10;
+
+    /**
+     * What a ranking is ordered by; lower is better.
+     */
+    public enum Measure {
+        ACTIONS,
+        SENSOR_READS,
+        RUN_MILLIS
+    }
+
+    /**
+     * One submission's place in a ranking.
+     */
+    public static class Entry {
+        private final String student;
+        private final long actions;
+        private final long sensorReads;
+        private final long runMillis;
+
+        Entry(String student, long actions, long sensorReads, long runMillis) {
+            this.student = student;
+            this.actions = actions;
+            this.sensorReads = sensorReads;
+            this.runMillis = runMillis;
+        }
+
+        public String getStudent() {
+            return student;
+        }
+
+        public long getActions() {
+            return actions;
+        }
+
+        public long getSensorReads() {
+            return sensorReads;
+        }
+
+        public long getRunMillis() {
+            return runMillis;
+        }
+
+        long get(Measure measure) {
+            return switch (measure) {
+                case ACTIONS -> actions;
+                case SENSOR_READS -> sensorReads;
+                case RUN_MILLIS -> runMillis;
+            };
+        }
+    }
+
+    /**
+     * A snapshot of one assignment's rankings and percentiles.
+     */
+    public static class Summary {
+        private final String assignment;
+        private final long submissions;
+        private final long passed;
+        private final Map<Measure, List<Entry>> rankings;
+        private final Map<Measure, Map<String, Long>> percentiles;
+
+        Summary(String assignment, long submissions, long passed, Map<Measure, List<Entry>> rankings,
+                Map<Measure, Map<String, Long>> percentiles) {
+            this.assignment = assignment;
+            this.submissions = submissions;
+            this.passed = passed;
+            this.rankings = rankings;
+            this.percentiles = percentiles;
+        }
+
+        public String getAssignment() {
+            return assignment;
+        }
+
+        /**
+         * @return results recorded, passing or not
+         */
+        public long getSubmissions() {
+            return submissions;
+        }
+
+        public long getPassed() {
+            return passed;
+        }
+
+        /**
+         * @return for each measure the best entries, best first
+         */
+        public Map<Measure, List<Entry>> getRankings() {
+            return rankings;
+        }
+
+        /**
+         * @return for each measure its p50, p90 and p99 over passing submissions, accurate to about 6%
+         */
+        public Map<Measure, Map<String, Long>> getPercentiles() {
+            return percentiles;
+        }
+    }
+
+    /**
+     * The running aggregate of one assignment.
+     */
+    private static class Board {
+        private long submissions;
+        private long passed;
+        private final Map<Measure, PriorityQueue<Entry>> top = new EnumMap<>(Measure.class);
+        private final Map<Measure, MetricsRegistry.Histogram> histograms = new EnumMap<>(Measure.class);
+
+        Board() {
+            for (Measure measure : Measure.values()) {
+                // Worst entry at the head, so it is the one replaced
+                top.put(measure, new PriorityQueue<>(ORDERS.get(measure).reversed()));
+                histograms.put(measure, new MetricsRegistry.Histogram());
+            }
+        }
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final Map<Measure, Comparator<Entry>> ORDERS = new EnumMap<>(Measure.class);
+
+    static {
+        for (Measure measure : Measure.values()) {
+            ORDERS.put(measure, order(measure));
+        }
+    }
+
+    private final int topK;
+    private final Map<String, Board> boards = new TreeMap<>();
+
+    public Leaderboard() {
+        this(DEFAULT_TOP_K);
+    }
+
+    /**
+     * @param topK How many entries each ranking keeps
+     */
+    public Leaderboard(int topK) {
+        if (topK < 1) {
+            throw new IllegalArgumentException("Top K must be at least 1");
+        }
+        this.topK = topK;
+    }
+
+    /**
+     * Ties are broken by the other measures, then by student, so rankings do not depend on arrival order.
+     */
+    private static Comparator<Entry> order(Measure measure) {
+        Comparator<Entry> order = Comparator.comparingLong(entry -> entry.get(measure));
+        for (Measure other : Measure.values()) {
+            if (other != measure) {
+                order = order.thenComparingLong(entry -> entry.get(other));
+            }
+        }
+        return order.thenComparing(Entry::getStudent);
+    }
+
+    /**
+     * Adds a graded submission. Only submissions that passed are ranked.
+     * @param student Who submitted it
+     * @param result The grading result
+     */
+    public synchronized void record(String student, GradingResult result) {
+        Board board = boards.computeIfAbsent(result.getAssignment(), _ -> new Board());
+        board.submissions++;
+        if (!result.isPassed()) {
+            return;
+        }
+        board.passed++;
+        Entry entry = new Entry(student, result.getActions(), result.getSensorReads(), result.getRunMillis());
+        for (Measure measure : Measure.values()) {
+            board.histograms.get(measure).record(entry.get(measure));
+            offer(board.top.get(measure), ORDERS.get(measure), entry);
+        }
+    }
+
+    /**
+     * Keeps entry if it is among the best topK, replacing the same student's worse entry.
+     */
+    private void offer(PriorityQueue<Entry> top, Comparator<Entry> order, Entry entry) {
+        for (Entry existing : top) {
+            if (existing.getStudent().equals(entry.getStudent())) {
+                if (order.compare(entry, existing) < 0) {
+                    top.remove(existing);
+                    top.add(entry);
+                }
+                return;
+            }
+        }
+        if (top.size() < topK) {
+            top.add(entry);
+        } else if (order.compare(entry, top.peek()) < 0) {
+            top.poll();
+            top.add(entry);
+        }
+    }
+
+    /**
+     * @return the assignment's rankings, or null if nothing was recorded for it
+     */
+    public synchronized Summary getSummary(String assignment) {
+        Board board = boards.get(assignment);
+        if (board == null) {
+            return null;
+        }
+        Map<Measure, List<Entry>> rankings = new EnumMap<>(Measure.class);
+        Map<Measure, Map<String, Long>> percentiles = new EnumMap<>(Measure.class);
+        for (Measure measure : Measure.values()) {
+            List<Entry> ranking = new ArrayList<>(board.top.get(measure));
+            ranking.sort(ORDERS.get(measure));
+            rankings.put(measure, ranking);
+            Map<String, Long> values = new TreeMap<>();
+            MetricsRegistry.Histogram histogram = board.histograms.get(measure);
+            for (double quantile : QUANTILES) {
+                values.put("p" + Math.round(quantile * 100), histogram.getPercentile(quantile));
+            }
+            percentiles.put(measure, values);
+        }
+        return new Summary(assignment, board.submissions, board.passed, rankings, percentiles);
+    }
+
+    /**
+     * @return the assignments with recorded results, sorted
+     */
+    public synchronized List<String> getAssignments() {
+        return new ArrayList<>(boards.keySet());
+    }
+}
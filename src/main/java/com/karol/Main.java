@@ -1,6 +1,7 @@
 package com.karol;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -11,36 +12,60 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import javafx.scene.Node;
 import javafx.geometry.Pos;
-import javafx.scene.input.KeyCode;
-import javafx.scene.input.KeyEvent;
 import javafx.stage.FileChooser;
 import javafx.scene.text.Font;
 
 public class Main extends Application {
     private static final int CELL_SIZE = 50;
+    private static final String TRACES_DIRECTORY_PROPERTY = "karol.traces.dir";
     private ListView<String> assignmentList;
     private TextArea descriptionArea;
     private TextArea programArea;
     private Canvas worldCanvas;
-    private List<Assignment> assignments;
+    private AssignmentCatalog catalog;
+    private AssignmentWatcher watcher;
+    private StreamingWorldLoader.LoadedWorld currentAssignment;
     private AssignmentLoader loader;
+    private SolutionStore solutions;
+    // Assignment whose solution is in the editor, and whether edits are saved as they happen
+    private String solutionName;
+    private boolean loadingSolution;
+    private CheckBox autosaveBox;
     private World world;
     private Karol karol;
     private ObservableList<String> assignmentNames;
+    private RunTimeline timeline;
+    private Slider stepSlider;
+    private Label stepLabel;
+    /** Hash of the program last run, for Flight Recorder events. */
+    private String submission;
+    private WorldBroadcaster broadcaster;
 
     @Override
     public void start(Stage primaryStage) {
         try {
             loader = new AssignmentLoader();
-            assignments = loader.loadAllAssignments();
+            // Reading the catalog and loading javac run in the background while the window opens
+            CompletableFuture<AssignmentCatalog> catalogLoad = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return loader.loadCatalog();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            CompletableFuture.runAsync(ProgramExecutor::warmUp);
+            solutions = SolutionStore.fromConfiguration();
+            Metrics.publish();
+            broadcaster = WorldBroadcaster.fromConfiguration();
             
             // Initialize with example program
             programArea = new TextArea();
@@ -75,9 +100,6 @@ public class Main extends Application {
             Label assignmentsLabel = new Label("Assignments:");
             assignmentList = new ListView<>();
             assignmentNames = FXCollections.observableArrayList();
-            for (Assignment assignment : assignments) {
-                assignmentNames.add(assignment.getName());
-            }
             assignmentList.setItems(assignmentNames);
             
             descriptionArea = new TextArea();
@@ -106,6 +128,19 @@ public class Main extends Application {
             // World canvas at the top
             worldCanvas = new Canvas(500, 500);
             centerPanel.getChildren().add(worldCanvas);
+
+            // Step slider for scrubbing through the last run (hidden until a program has run)
+            stepSlider = new Slider(0, 0, 0);
+            stepSlider.setBlockIncrement(1);
+            stepLabel = new Label("Step: 0 / 0");
+            HBox stepBox = new HBox(10, stepLabel, stepSlider);
+            stepBox.setAlignment(Pos.CENTER_LEFT);
+            HBox.setHgrow(stepSlider, Priority.ALWAYS);
+            stepBox.visibleProperty().bind(stepSlider.visibleProperty());
+            stepBox.managedProperty().bind(stepSlider.visibleProperty());
+            stepSlider.setVisible(false);
+            stepSlider.valueProperty().addListener((_, _, newValue) -> showStep(newValue.intValue()));
+            centerPanel.getChildren().add(stepBox);
             
             // Program editor section (initially hidden)
             VBox programSection = new VBox(10);
@@ -113,39 +148,10 @@ public class Main extends Application {
             
             Label programLabel = new Label("Program:");
 
-            // Create a HBox to hold line numbers and program text
-            HBox editorBox = new HBox();
-            editorBox.setStyle("-fx-font-family: monospace; -fx-background-color: white; -fx-border-color: lightgray;");
-
-            // Line numbers
-            VBox lineNumbers = new VBox();
-            lineNumbers.setAlignment(Pos.TOP_RIGHT);
-            lineNumbers.setPadding(new Insets(5, 5, 5, 5));
-            lineNumbers.setStyle("-fx-background-color: #f0f0f0; -fx-border-color: lightgray; -fx-border-width: 0 1 0 0;");
-            lineNumbers.setPrefWidth(40);
-
-            // Program text area
-            programArea = new TextArea();
-            programArea.setWrapText(true);
-            programArea.setPrefRowCount(15);
-            programArea.setStyle("-fx-font-family: monospace;");
-
-            // Update line numbers when text changes
-            programArea.textProperty().addListener((_, _, newText) -> {
-                updateLineNumbers(lineNumbers, newText);
-            });
-
-            // Handle tab key
-            programArea.addEventFilter(KeyEvent.KEY_PRESSED, event -> {
-                if (event.getCode() == KeyCode.TAB) {
-                    event.consume(); // Prevent default tab behavior
-                    int caretPosition = programArea.getCaretPosition();
-                    programArea.insertText(caretPosition, "    "); // Insert 4 spaces
-                }
-            });
-
-            editorBox.getChildren().addAll(lineNumbers, programArea);
-            HBox.setHgrow(programArea, Priority.ALWAYS);
+            // Editor with a line number gutter
+            CodeEditor editorBox = new CodeEditor();
+            programArea = editorBox.getTextArea();
+            programArea.textProperty().addListener((_, _, newText) -> autosave(newText));
 
             Button runProgramButton = new Button("Run Program");
             runProgramButton.setMaxWidth(Double.MAX_VALUE);
@@ -220,7 +226,10 @@ public class Main extends Application {
             saveButton.setMaxWidth(Double.MAX_VALUE);
             saveButton.setOnAction(_ -> saveSolution());
             runProgramButton.setMaxWidth(Double.MAX_VALUE);
-            buttonBox.getChildren().addAll(runProgramButton, saveButton);
+            autosaveBox = new CheckBox("Autosave");
+            autosaveBox.setSelected(true);
+            autosaveBox.setMaxHeight(Double.MAX_VALUE);
+            buttonBox.getChildren().addAll(runProgramButton, saveButton, autosaveBox);
             HBox.setHgrow(runProgramButton, Priority.ALWAYS);
             HBox.setHgrow(saveButton, Priority.ALWAYS);
 
@@ -287,15 +296,12 @@ public class Main extends Application {
                 programSection.setVisible(hasSelection);
                 
                 if (hasSelection) {
-                    Assignment selected = assignments.stream()
-                        .filter(a -> a.getName().equals(newVal))
-                        .findFirst()
-                        .orElse(null);
+                    AssignmentCatalog.Entry selected = catalog.findByName(newVal);
                     if (selected != null) {
-                        descriptionArea.setText(selected.getDescription());
-                        loadAssignment(selected);
+                        loadAssignmentInBackground(selected);
                     }
                 } else {
+                    currentAssignment = null;
                     descriptionArea.clear();
                     if (worldCanvas != null) {
                         GraphicsContext gc = worldCanvas.getGraphicsContext2D();
@@ -354,19 +360,13 @@ public class Main extends Application {
             });
             
             resetButton.setOnAction(_ -> {
-                if (assignmentList.getSelectionModel().getSelectedItem() != null) {
-                    // Find and reload the current assignment
-                    String selectedName = assignmentList.getSelectionModel().getSelectedItem();
-                    for (Assignment assignment : assignments) {
-                        if (assignment.getName().equals(selectedName)) {
-                            loadAssignment(assignment);
-                            // Update beeper count label
-                            Node beeperLabel = controlPanel.getChildren().get(1);
-                            if (beeperLabel instanceof Label) {
-                                ((Label) beeperLabel).setText("Beepers: 0");
-                            }
-                            break;
-                        }
+                if (currentAssignment != null) {
+                    // Reload the current assignment
+                    loadAssignment(currentAssignment);
+                    // Update beeper count label
+                    Node beeperLabel = controlPanel.getChildren().get(1);
+                    if (beeperLabel instanceof Label) {
+                        ((Label) beeperLabel).setText("Beepers: 0");
                     }
                 }
             });
@@ -379,12 +379,52 @@ public class Main extends Application {
             primaryStage.setTitle("Karol the Robot - Assignments");
             primaryStage.setScene(scene);
             primaryStage.show();
+
+            catalogLoad.whenComplete((loaded, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    showError("Error loading assignments: " + error.getCause().getMessage());
+                    return;
+                }
+                catalog = loaded;
+                refreshAssignmentNames();
+                watchAssignments();
+            }));
             
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Applies changes to the assignments directory as they happen.
+     */
+    private void watchAssignments() {
+        if (!loader.getRepository().isWatchable()) {
+            return;
+        }
+        try {
+            watcher = new AssignmentWatcher(catalog, new AssignmentWatcher.Listener() {
+                @Override
+                public void assignmentChanged(AssignmentCatalog.Entry oldEntry, AssignmentCatalog.Entry newEntry) {
+                    Platform.runLater(() -> applyCatalogChange(oldEntry, newEntry));
+                }
+
+                @Override
+                public void catalogReloaded() {
+                    Platform.runLater(() -> refreshAssignmentNames());
+                }
+
+                @Override
+                public void reloadFailed(IOException error) {
+                    Platform.runLater(() -> showError("Could not reload assignments: " + error.getMessage()));
+                }
+            });
+            watcher.start();
+        } catch (IOException e) {
+            showError("Cannot watch the assignments directory: " + e.getMessage());
+        }
+    }
+
     private void showError(String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Error");
@@ -393,29 +433,90 @@ public class Main extends Application {
         alert.showAndWait();
     }
 
-    private void loadAssignment(Assignment assignment) {
-        // Create a new world with the correct dimensions
-        world = new World(assignment.getWorldWidth(), assignment.getWorldHeight());
-        
-        // Clear any existing state
-        world.clearWalls();
-        world.clearBeepers();
-        
-        // Load walls
-        for (Wall wall : assignment.getWalls()) {
-            world.addWall(wall);
+    @Override
+    public void stop() throws Exception {
+        if (watcher != null) {
+            watcher.close();
         }
-        
-        // Load beepers
-        for (Beeper beeper : assignment.getBeepers()) {
-            world.addBeeper(beeper);
+        if (solutions != null) {
+            solutions.close();
+        }
+        Metrics.unpublish();
+        if (broadcaster != null) {
+            broadcaster.close();
+        }
+    }
+
+    /**
+     * Updates the assignment list for a single added, changed or removed file.
+     */
+    private void applyCatalogChange(AssignmentCatalog.Entry oldEntry, AssignmentCatalog.Entry newEntry) {
+        String selectedName = assignmentList.getSelectionModel().getSelectedItem();
+        // Another file may still use the old name
+        if (oldEntry != null && (newEntry == null || !oldEntry.getName().equals(newEntry.getName()))
+                && catalog.findByName(oldEntry.getName()) == null) {
+            assignmentNames.remove(oldEntry.getName());
+        }
+        if (newEntry != null && !assignmentNames.contains(newEntry.getName())) {
+            assignmentNames.add(newEntry.getName());
+        }
+        // Show the new version of the assignment that is currently open
+        if (oldEntry != null && newEntry != null && newEntry.getName().equals(selectedName)) {
+            loadAssignmentInBackground(newEntry);
+        }
+    }
+
+    private void refreshAssignmentNames() {
+        if (catalog == null) {
+            // Still loading; the list is filled once it is read
+            return;
         }
+        assignmentNames.clear();
+        for (AssignmentCatalog.Entry entry : catalog.getEntries()) {
+            assignmentNames.add(entry.getName());
+        }
+    }
+
+    /**
+     * Parses the full assignment off the FX thread and shows it once it is loaded,
+     * unless the selection changed in the meantime.
+     */
+    private void loadAssignmentInBackground(AssignmentCatalog.Entry entry) {
+        Path file = catalog.resolve(entry);
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return loader.loadWorld(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((loaded, error) -> Platform.runLater(() -> {
+            if (!entry.getName().equals(assignmentList.getSelectionModel().getSelectedItem())) {
+                return;
+            }
+            if (error != null) {
+                showError("Error loading assignment: " + error.getCause().getMessage());
+                return;
+            }
+            currentAssignment = loaded;
+            descriptionArea.setText(loaded.getAssignment().getDescription());
+            loadAssignment(loaded);
+        }));
+    }
+
+    private void loadAssignment(StreamingWorldLoader.LoadedWorld loaded) {
+        Assignment assignment = loaded.getAssignment();
+        
+        // Start from a fresh copy so the loaded world can be reused for resets
+        world = loaded.getWorld().copy();
         
         // Load robot
         if (!assignment.getInitialRobots().isEmpty()) {
             Robot initialRobot = assignment.getInitialRobots().get(0);
             karol = new Karol(initialRobot.getX(), initialRobot.getY(), 
                                    initialRobot.getDirection(), world);
+            if (broadcaster != null) {
+                broadcaster.reset(karol);
+            }
         }
         
         // Resize canvas to fit world
@@ -425,11 +526,39 @@ public class Main extends Application {
         // Load saved solution if it exists
         loadSolution(assignment.getName());
         
+        // A new world invalidates the recorded run
+        timeline = null;
+        stepSlider.setVisible(false);
+        
         drawWorld();
     }
 
+    private void showTimeline() {
+        int steps = timeline.getStepCount();
+        stepSlider.setMax(steps);
+        stepSlider.setMajorTickUnit(Math.max(1, steps / 10));
+        stepSlider.setValue(steps);
+        stepLabel.setText("Step: " + steps + " / " + steps);
+        stepSlider.setVisible(steps > 0);
+    }
+
+    private void showStep(int step) {
+        if (timeline == null) return;
+        
+        Karol restored = timeline.seek(step);
+        stepLabel.setText("Step: " + step + " / " + timeline.getStepCount());
+        drawWorld(restored.getWorld(), restored);
+    }
+
     private void drawWorld() {
+        drawWorld(world, karol);
+    }
+
+    private void drawWorld(World world, Karol karol) {
         if (world == null) return;
+        long frameStart = Metrics.start();
+        KarolEvents.Render renderEvent = new KarolEvents.Render();
+        renderEvent.begin();
         
         GraphicsContext gc = worldCanvas.getGraphicsContext2D();
         gc.clearRect(0, 0, worldCanvas.getWidth(), worldCanvas.getHeight());
@@ -499,6 +628,17 @@ public class Main extends Application {
             
             gc.strokeLine(centerX, centerY, arrowX, arrowY);
         }
+        Metrics.stop(Metrics.FRAME_TIME, frameStart);
+        renderEvent.width = world.getWidth();
+        renderEvent.height = world.getHeight();
+        renderEvent.commit(assignmentName(), submission);
+    }
+
+    /**
+     * @return the name of the loaded assignment, or null
+     */
+    private String assignmentName() {
+        return currentAssignment == null ? null : currentAssignment.getAssignment().getName();
     }
 
     private void createNewProblem() {
@@ -535,31 +675,9 @@ public class Main extends Application {
             if (!name.isEmpty()) {
                 // Open the world editor
                 Stage editorStage = new Stage();
-                WorldEditor editor = new WorldEditor(editorInstance -> {
-                    // Save the world configuration
-                    try {
-                        ObjectMapper mapper = new ObjectMapper();
-                        ObjectNode worldNode = mapper.createObjectNode();
-                        
-                        worldNode.put("worldWidth", editorInstance.getWorldWidth());
-                        worldNode.put("worldHeight", editorInstance.getWorldHeight());
-                        worldNode.set("initialRobots", editorInstance.getRobotsNode());
-                        worldNode.set("walls", editorInstance.getWallsNode());
-                        worldNode.set("beepers", editorInstance.getBeepersNode());
-                        
-                        FileChooser fileChooser = new FileChooser();
-                        fileChooser.setTitle("Save World");
-                        fileChooser.getExtensionFilters().add(
-                            new FileChooser.ExtensionFilter("JSON Files", "*.json")
-                        );
-                        File file = fileChooser.showSaveDialog(editorStage);
-                        if (file != null) {
-                            mapper.writerWithDefaultPrettyPrinter().writeValue(file, worldNode);
-                        }
-                    } catch (Exception ex) {
-                        showError("Error saving world: " + ex.getMessage());
-                    }
-                });
+                String description = descriptionArea.getText();
+                WorldEditor editor = new WorldEditor(editorInstance -> saveEditorWorld(
+                    editorStage, editorInstance, name, description));
 
                 Scene editorScene = new Scene(editor, 800, 600);
                 editorStage.setTitle("World Editor - " + name);
@@ -569,6 +687,79 @@ public class Main extends Application {
         }
     }
 
+    /**
+     * Saves the world in the editor. The editor contents are copied on the FX thread;
+     * validation and writing happen in the background. Errors stop the save, warnings
+     * ask for confirmation first.
+     */
+    private void saveEditorWorld(Stage editorStage, WorldEditor editor, String name, String description) {
+        WorldEditor.Snapshot snapshot = editor.snapshot();
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save World");
+        fileChooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("JSON Files", "*.json"),
+            new FileChooser.ExtensionFilter("Binary World Files", "*" + BinaryWorldFormat.EXTENSION)
+        );
+        File file = fileChooser.showSaveDialog(editorStage);
+        if (file == null) {
+            return;
+        }
+
+        editor.setSaving(true);
+        CompletableFuture.supplyAsync(snapshot::validate).whenComplete((problems, failure) -> Platform.runLater(() -> {
+            if (failure != null) {
+                editor.setSaving(false);
+                showError("Error checking world: " + failure.getCause().getMessage());
+                return;
+            }
+            List<WorldValidator.Problem> errors = problems.stream().filter(WorldValidator.Problem::isError).toList();
+            if (!errors.isEmpty()) {
+                editor.setSaving(false);
+                showError("The world cannot be saved:\n" + describeProblems(errors));
+                return;
+            }
+            if (!problems.isEmpty() && !confirmSave(describeProblems(problems))) {
+                editor.setSaving(false);
+                return;
+            }
+            CompletableFuture.runAsync(() -> {
+                try {
+                    loader.saveWorld(file, snapshot.toAssignment(name, description), snapshot.toWorld());
+                    // Pick up worlds saved into the assignments directory
+                    if (catalog != null && file.toPath().toAbsolutePath().startsWith(catalog.getDirectory())) {
+                        catalog.update(file.toPath());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).whenComplete((_, error) -> Platform.runLater(() -> {
+                editor.setSaving(false);
+                if (error != null) {
+                    showError("Error saving world: " + error.getCause().getMessage());
+                } else {
+                    refreshAssignmentNames();
+                }
+            }));
+        }));
+    }
+
+    private static String describeProblems(List<WorldValidator.Problem> problems) {
+        StringBuilder text = new StringBuilder();
+        for (WorldValidator.Problem problem : problems) {
+            text.append("- ").append(problem.getMessage()).append("\n");
+        }
+        return text.toString();
+    }
+
+    private boolean confirmSave(String warnings) {
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("Save World");
+        confirm.setHeaderText("Save anyway?");
+        confirm.setContentText(warnings);
+        return confirm.showAndWait().filter(response -> response == ButtonType.OK).isPresent();
+    }
+
     private void deleteSelectedAssignment() {
         String selectedName = assignmentList.getSelectionModel().getSelectedItem();
         if (selectedName == null) {
@@ -584,36 +775,18 @@ public class Main extends Application {
 
         if (confirm.showAndWait().filter(response -> response == ButtonType.OK).isPresent()) {
             try {
-                // Find the assignment file by matching the name in the JSON
-                File assignmentsDir = new File("src/main/resources/assignments");
-                File[] files = assignmentsDir.listFiles((_, name) -> name.endsWith(".json"));
-                
-                boolean deleted = false;
-                if (files != null) {
-                    ObjectMapper mapper = new ObjectMapper();
-                    for (File file : files) {
-                        try {
-                            Assignment assignment = mapper.readValue(file, Assignment.class);
-                            if (assignment.getName().equals(selectedName)) {
-                                if (file.delete()) {
-                                    deleted = true;
-                                    break;
-                                }
-                            }
-                        } catch (IOException e) {
-                            // Skip files that can't be parsed
-                            continue;
-                        }
-                    }
+                if (!loader.getRepository().isWritable()) {
+                    showError("Assignments are read-only in this installation");
+                    return;
                 }
+                // Look up the assignment file in the catalog
+                AssignmentCatalog.Entry entry = catalog.findByName(selectedName);
+                boolean deleted = entry != null && Files.deleteIfExists(catalog.resolve(entry));
 
                 if (deleted) {
-                    // Reload assignments
-                    assignments = loader.loadAllAssignments();
-                    assignmentNames.clear();
-                    for (Assignment assignment : assignments) {
-                        assignmentNames.add(assignment.getName());
-                    }
+                    loader.getRepository().invalidate(catalog.resolve(entry));
+                    catalog.remove(entry);
+                    refreshAssignmentNames();
                     
                     // Clear description if the deleted assignment was selected
                     descriptionArea.clear();
@@ -637,20 +810,40 @@ public class Main extends Application {
             String sourceCode = programArea.getText();
             
             // Extract class name from source code
-            String className = "MyProgram"; // Default name
-            if (sourceCode.contains("class ")) {
-                int classIndex = sourceCode.indexOf("class ") + 6;
-                int implementsIndex = sourceCode.indexOf(" implements", classIndex);
-                if (classIndex > 5 && implementsIndex > classIndex) {
-                    className = sourceCode.substring(classIndex, implementsIndex).trim();
-                }
-            }
+            String className = ProgramExecutor.findClassName(sourceCode);
+            submission = KarolEvents.submissionHash(sourceCode);
 
             // Compile and load the program
-            Class<?> programClass = ProgramExecutor.compileAndLoad(sourceCode, className);
+            Class<?> programClass = ProgramExecutor.compileAndLoad(sourceCode, className, assignmentName(), submission);
             
-            // Execute the program
-            ProgramExecutor.executeProgram(programClass, karol);
+            // Execute the program, recording it so it can be scrubbed afterwards
+            timeline = new RunTimeline(karol);
+            TraceWriter trace = openTrace();
+            if (trace != null) {
+                karol.addListener(trace);
+            }
+            if (broadcaster != null) {
+                broadcaster.reset(karol);
+                karol.addListener(broadcaster);
+            }
+            KarolEvents.Execute event = new KarolEvents.Execute();
+            event.begin();
+            event.outcome = GradingResult.Outcome.RUNTIME_ERROR.name();
+            try {
+                ProgramExecutor.executeProgram(programClass, karol, timeline);
+                event.outcome = GradingResult.Outcome.COMPLETED.name();
+            } finally {
+                event.steps = timeline.getStepCount() + timeline.getSensorReadCount();
+                event.commit(assignmentName(), submission);
+                if (trace != null) {
+                    karol.removeListener(trace);
+                    trace.close();
+                }
+                if (broadcaster != null) {
+                    karol.removeListener(broadcaster);
+                }
+                showTimeline();
+            }
             
             // Update the world view
             drawWorld();
@@ -664,6 +857,22 @@ public class Main extends Application {
         }
     }
 
+    /**
+     * Starts a trace file for the next run if the karol.traces.dir system property
+     * names a directory to export traces to.
+     * @return the trace writer, or null if tracing is off
+     */
+    private TraceWriter openTrace() throws IOException {
+        String directory = System.getProperty(TRACES_DIRECTORY_PROPERTY);
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+        String assignment = solutionName != null ? solutionName.toLowerCase().replace(" ", "_") : "run";
+        Path file = Path.of(directory, assignment + "-" + System.currentTimeMillis() + TraceWriter.EXTENSION);
+        Files.createDirectories(file.getParent());
+        return new TraceWriter(file, karol);
+    }
+
     private void saveSolution() {
         String selectedName = assignmentList.getSelectionModel().getSelectedItem();
         if (selectedName == null) {
@@ -671,32 +880,47 @@ public class Main extends Application {
             return;
         }
 
-        try {
-            // Create solutions directory if it doesn't exist
-            File solutionsDir = new File("src/main/resources/solutions");
-            if (!solutionsDir.exists()) {
-                solutionsDir.mkdirs();
-            }
-
-            // Create solution file named after the assignment
-            String filename = selectedName.toLowerCase().replace(" ", "_") + "_solution.java";
-            File solutionFile = new File(solutionsDir, filename);
-            Files.writeString(solutionFile.toPath(), programArea.getText());
+        // Written on the solution store's background thread
+        solutions.save(selectedName, programArea.getText())
+            .whenComplete((_, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    showError("Error saving solution: " + error.getCause().getMessage());
+                } else {
+                    showInfo("Solution saved successfully!");
+                }
+            }));
+    }
 
-            showInfo("Solution saved successfully!");
-        } catch (IOException e) {
-            showError("Error saving solution: " + e.getMessage());
+    /**
+     * Saves every edit in the background. Saves coalesce in the solution store,
+     * so typing quickly results in few writes. A failed write turns autosave off
+     * so the error is shown once rather than on every key.
+     */
+    private void autosave(String programText) {
+        if (loadingSolution || solutionName == null || autosaveBox == null || !autosaveBox.isSelected()) {
+            return;
         }
+        solutions.save(solutionName, programText).whenComplete((_, error) -> {
+            if (error != null) {
+                Platform.runLater(() -> {
+                    // Merged saves share one failure; report it once
+                    if (autosaveBox.isSelected()) {
+                        autosaveBox.setSelected(false);
+                        showError("Autosave failed and has been turned off: " + error.getCause().getMessage());
+                    }
+                });
+            }
+        });
     }
 
     private void loadSolution(String assignmentName) {
+        solutionName = assignmentName;
+        loadingSolution = true;
         try {
             // Try to load saved solution
-            String filename = assignmentName.toLowerCase().replace(" ", "_") + "_solution.java";
-            File solutionFile = new File("src/main/resources/solutions", filename);
+            String savedSolution = solutions.load(assignmentName);
             
-            if (solutionFile.exists()) {
-                String savedSolution = Files.readString(solutionFile.toPath());
+            if (savedSolution != null) {
                 programArea.setText(savedSolution);
             } else {
                 // If no solution exists, load the default template
@@ -726,6 +950,8 @@ public class Main extends Application {
             }
         } catch (IOException e) {
             showError("Error loading solution: " + e.getMessage());
+        } finally {
+            loadingSolution = false;
         }
     }
 
@@ -737,21 +963,6 @@ public class Main extends Application {
         alert.showAndWait();
     }
 
-    private void updateLineNumbers(VBox lineNumbers, String text) {
-        // Clear existing line numbers
-        lineNumbers.getChildren().clear();
-        
-        // Count lines
-        int lines = text.split("\n", -1).length;
-        
-        // Add new line numbers
-        for (int i = 1; i <= lines; i++) {
-            Label lineNum = new Label(String.format("%3d", i));
-            lineNum.setStyle("-fx-font-family: monospace; -fx-text-fill: #666666;");
-            lineNumbers.getChildren().add(lineNum);
-        }
-    }
-
     public static void main(String[] args) {
         launch(args);
     }
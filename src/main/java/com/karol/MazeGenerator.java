@@ -0,0 +1,93 @@
+package com.karol;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Generates perfect mazes: every cell can be reached from every other cell along
+ * exactly one path.
+ *
+ * The maze is carved by a randomized depth-first search that starts with every inner
+ * wall in place and knocks down the wall between the current cell and a random
+ * unvisited neighbour. The search keeps its stack in an int array and marks visited
+ * cells in a bitset, so a 1000 x 1000 maze needs a few megabytes and no recursion.
+ * Walls on the outer border are not added, since the edge of the world already stops Karol.
+ */
+public class MazeGenerator {
+    private final Random random;
+
+    public MazeGenerator() {
+        this(new Random());
+    }
+
+    /**
+     * @param random Source of randomness; pass a seeded Random for repeatable mazes
+     */
+    public MazeGenerator(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Creates a maze filling a whole world.
+     * @param width World width in cells
+     * @param height World height in cells
+     * @return a new world containing only the maze walls
+     */
+    public World generate(int width, int height) {
+        World world = new World(width, height);
+        if (width == 0 || height == 0) {
+            return world;
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 1; x < width; x++) {
+                world.addWall(x, y, true);
+            }
+        }
+        for (int y = 1; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                world.addWall(x, y, false);
+            }
+        }
+
+        BitSet visited = new BitSet(width * height);
+        int[] stack = new int[width * height];
+        int[] neighbours = new int[4];
+        int top = 0;
+        int startCell = random.nextInt(width * height);
+        stack[top++] = startCell;
+        visited.set(startCell);
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int x = cell % width;
+            int y = cell / width;
+            int count = 0;
+            if (x > 0 && !visited.get(cell - 1)) {
+                neighbours[count++] = cell - 1;
+            }
+            if (x < width - 1 && !visited.get(cell + 1)) {
+                neighbours[count++] = cell + 1;
+            }
+            if (y > 0 && !visited.get(cell - width)) {
+                neighbours[count++] = cell - width;
+            }
+            if (y < height - 1 && !visited.get(cell + width)) {
+                neighbours[count++] = cell + width;
+            }
+            if (count == 0) {
+                top--;
+                continue;
+            }
+            int next = neighbours[random.nextInt(count)];
+            int nextX = next % width;
+            int nextY = next / width;
+            if (nextY == y) {
+                world.removeWall(Math.max(x, nextX), y, true);
+            } else {
+                world.removeWall(x, Math.max(y, nextY), false);
+            }
+            visited.set(next);
+            stack[top++] = next;
+        }
+        return world;
+    }
+}
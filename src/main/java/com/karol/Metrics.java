@@ -0,0 +1,122 @@
+package com.karol;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application's metrics: how long compiling, running, loading and drawing take
+ * and how many actions Karol performs.
+ *
+ * Metrics are off unless the JVM is started with -Dkarol.metrics.enabled=true.
+ * ENABLED is a static final constant, so when it is false the JIT removes every
+ * "if (Metrics.ENABLED)" check and Karol's hot path pays nothing.
+ *
+ * When enabled, start() can also publish them:
+ *   -Dkarol.metrics.port=9464         serve Prometheus text on http://localhost:9464/metrics
+ *   -Dkarol.metrics.log.seconds=60    print a summary line every 60 seconds
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("karol.metrics.enabled");
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    public static final MetricsRegistry.Histogram VALIDATE_TIME = REGISTRY.histogram(
+        "karol_validate_seconds", "Time to check a program's package, imports and interface");
+    public static final MetricsRegistry.Histogram COMPILE_TIME = REGISTRY.histogram(
+        "karol_compile_seconds", "Time to compile and load a program");
+    public static final MetricsRegistry.Histogram EXECUTE_TIME = REGISTRY.histogram(
+        "karol_execute_seconds", "Time to run a program");
+    public static final MetricsRegistry.Histogram ASSIGNMENT_LOAD_TIME = REGISTRY.histogram(
+        "karol_assignment_load_seconds", "Time to load an assignment file");
+    public static final MetricsRegistry.Histogram FRAME_TIME = REGISTRY.histogram(
+        "karol_frame_seconds", "Time to draw the world");
+    public static final MetricsRegistry.Counter PROGRAM_FAILURES = REGISTRY.counter(
+        "karol_program_failures_total", "Programs that failed to compile or threw while running");
+
+    /** Actions performed by Karol, indexed by Karol.Action ordinal. */
+    static final MetricsRegistry.Counter[] KAROL_ACTIONS = new MetricsRegistry.Counter[Karol.Action.values().length];
+
+    static {
+        for (Karol.Action action : Karol.Action.values()) {
+            KAROL_ACTIONS[action.ordinal()] = REGISTRY.counter(
+                "karol_actions_total", "Actions performed by Karol", "action", action.name());
+        }
+    }
+
+    private static HttpServer server;
+    private static ScheduledExecutorService logger;
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the current time to pass to stop(), or 0 when metrics are disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since start in a histogram, if metrics are enabled.
+     */
+    public static void stop(MetricsRegistry.Histogram histogram, long start) {
+        if (ENABLED) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Starts the endpoint and log line configured by system properties. Does nothing
+     * when metrics are disabled or already published.
+     * @throws IOException if the metrics port cannot be bound
+     */
+    public static synchronized void publish() throws IOException {
+        if (!ENABLED || server != null || logger != null) {
+            return;
+        }
+        int port = Integer.getInteger("karol.metrics.port", -1);
+        if (port >= 0) {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = REGISTRY.toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+        }
+        int seconds = Integer.getInteger("karol.metrics.log.seconds", 0);
+        if (seconds > 0) {
+            logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "karol-metrics-log");
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.scheduleAtFixedRate(() -> System.out.println("metrics: " + REGISTRY.toSummaryLine()),
+                seconds, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the endpoint and log line started by publish().
+     */
+    public static synchronized void unpublish() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.karol;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A small set of named counters, gauges and latency histograms that can be written
+ * out in the Prometheus text format or as a one-line summary.
+ *
+ * Instruments are created once, usually into static fields (see Metrics), and are
+ * safe to update from any thread without locking. Names follow Prometheus
+ * conventions: snake_case, counters ending in _total, durations in _seconds.
+ */
+public class MetricsRegistry {
+    /**
+     * A value that only goes up, such as the number of moves made.
+     */
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * A latency histogram with HDR-style buckets: every power of two is split into
+     * 16 linear sub-buckets, so any recorded value is known to within 6.25% from 1 ns
+     * to centuries, using under 8 KB and one atomic increment per sample. Works for
+     * any non-negative values; Leaderboard uses it for action counts.
+     */
+    public static class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private final AtomicLongArray buckets = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records one duration.
+         * @param nanos The duration in nanoseconds; negative values count as 0
+         */
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketIndex(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        static int bucketIndex(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+            return (shift + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * @return the largest value that falls into a bucket
+         */
+        static long bucketUpperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the total of all recorded values, in nanoseconds
+         */
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param quantile Between 0 and 1, for example 0.99
+         * @return an upper bound of the value below which that share of samples fall, in nanoseconds; 0 if empty
+         */
+        public long getPercentile(double quantile) {
+            long total = getCount();
+            if (total == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return Math.min(bucketUpperBound(i), getMax());
+                }
+            }
+            return getMax();
+        }
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * All instruments sharing a name, one per set of label values.
+     */
+    private static class Family {
+        private final String type;
+        private final String help;
+        private final Map<String, Object> instruments = new LinkedHashMap<>();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Returns the counter with this name and labels, creating it if needed.
+     * @param labels Alternating label names and values, for example "action", "MOVE"
+     */
+    public synchronized Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, "counter", help).instruments.computeIfAbsent(labels(labels), _ -> new Counter());
+    }
+
+    /**
+     * Returns the histogram with this name and labels, creating it if needed.
+     * Values are recorded in nanoseconds and written out in seconds.
+     */
+    public synchronized Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, "summary", help).instruments.computeIfAbsent(labels(labels), _ -> new Histogram());
+    }
+
+    /**
+     * Registers a value that is read whenever metrics are written, such as a queue length.
+     * A gauge registered again under the same name and labels replaces the old one.
+     */
+    public synchronized void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, "gauge", help).instruments.put(labels(labels), value);
+    }
+
+    private Family family(String name, String type, String help) {
+        Family family = families.computeIfAbsent(name, _ -> new Family(type, help));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must come in name, value pairs");
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            text.append(text.length() == 0 ? "" : ",").append(labels[i]).append("=\"")
+                .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return every instrument in the Prometheus text exposition format
+     */
+    public synchronized String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> instrument : family.instruments.entrySet()) {
+                String labels = instrument.getKey();
+                if (instrument.getValue() instanceof Histogram histogram) {
+                    for (double quantile : QUANTILES) {
+                        String quantileLabel = (labels.isEmpty() ? "" : labels + ",") + "quantile=\"" + quantile + "\"";
+                        sample(out, name, quantileLabel, seconds(histogram.getPercentile(quantile)));
+                    }
+                    sample(out, name + "_sum", labels, seconds(histogram.getSum()));
+                    sample(out, name + "_count", labels, Long.toString(histogram.getCount()));
+                } else {
+                    sample(out, name, labels, Long.toString(value(instrument.getValue())));
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return a single line with every instrument that has data, for periodic logging
+     */
+    public synchronized String toSummaryLine() {
+        List<String> parts = new ArrayList<>();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            for (Map.Entry<String, Object> instrument : entry.getValue().instruments.entrySet()) {
+                String name = entry.getKey() + (instrument.getKey().isEmpty() ? "" : "{" + instrument.getKey() + "}");
+                if (instrument.getValue() instanceof Histogram histogram) {
+                    if (histogram.getCount() > 0) {
+                        parts.add(String.format(Locale.ROOT, "%s n=%d p50=%.1fms p99=%.1fms max=%.1fms", name,
+                            histogram.getCount(), millis(histogram.getPercentile(0.5)),
+                            millis(histogram.getPercentile(0.99)), millis(histogram.getMax())));
+                    }
+                } else {
+                    long value = value(instrument.getValue());
+                    if (value != 0) {
+                        parts.add(name + "=" + value);
+                    }
+                }
+            }
+        }
+        return String.join(" | ", parts);
+    }
+
+    private static long value(Object instrument) {
+        return instrument instanceof Counter counter ? counter.get() : ((LongSupplier) instrument).getAsLong();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
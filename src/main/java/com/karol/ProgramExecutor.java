@@ -1,5 +1,7 @@
 package com.karol;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
@@ -12,6 +14,9 @@ import javax.tools.*;
 import java.util.List;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Handles compilation and execution of user programs.
@@ -19,6 +24,83 @@ import java.util.ArrayList;
 public class ProgramExecutor {
     private static final String TEMP_DIR = "temp_programs";
     private static final String REQUIRED_PACKAGE = "com.karol.userprograms";
+    public static final String DEFAULT_CLASS_NAME = "MyProgram";
+    // The class implementing KarolProgram, so helper classes and comments mentioning "class" are skipped
+    private static final Pattern PROGRAM_CLASS_NAME = Pattern.compile("\\bclass\\s+([A-Za-z_$][A-Za-z0-9_$]*)\\s+implements\\b");
+    static final String WARM_UP_SOURCE = """
+        package com.karol.userprograms;
+
+        import com.karol.KarolProgram;
+        import com.karol.Karol;
+
+        public class WarmUp implements KarolProgram {
+            @Override
+            public void run(Karol karol) {
+                karol.turnLeft();
+            }
+        }
+        """;
+
+    /**
+     * One error reported by the compiler.
+     */
+    public static class CompileError {
+        private final long line;
+        private final long column;
+        private final String message;
+
+        @JsonCreator
+        CompileError(@JsonProperty("line") long line, @JsonProperty("column") long column,
+                     @JsonProperty("message") String message) {
+            this.line = line;
+            this.column = column;
+            this.message = message;
+        }
+
+        /**
+         * @return the 1-based source line, or 0 if the error has no position
+         */
+        public long getLine() {
+            return line;
+        }
+
+        public long getColumn() {
+            return column;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Thrown when a program does not compile. The message is the same text the
+     * editor has always shown; the errors give each diagnostic with its position.
+     */
+    public static class CompilationException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        // Not serialized; a deserialized exception has only its message
+        private final transient List<CompileError> errors;
+
+        CompilationException(String message, List<CompileError> errors) {
+            super(message);
+            this.errors = List.copyOf(errors);
+        }
+
+        public List<CompileError> getErrors() {
+            return errors != null ? errors : List.of();
+        }
+    }
+
+    /**
+     * Finds the name of the program class in a source file: the first class that implements an interface.
+     * @return the class name, or DEFAULT_CLASS_NAME if there is none
+     */
+    public static String findClassName(String sourceCode) {
+        Matcher matcher = PROGRAM_CLASS_NAME.matcher(sourceCode);
+        return matcher.find() ? matcher.group(1) : DEFAULT_CLASS_NAME;
+    }
 
     private static JavaFileObject createSourceFileObject(String sourceCode, String className) {
         // Create a safe URI by replacing any illegal characters
@@ -35,7 +117,8 @@ public class ProgramExecutor {
     }
 
     /**
-     * Validates the source code before compilation.
+     * Checks the requirements a program must meet before it is compiled.
+     * Syntax errors are left to the compiler in compileAndLoad().
      * @param sourceCode The source code to validate
      * @param className The name of the class being compiled
      * @throws Exception if validation fails
@@ -58,35 +141,15 @@ public class ProgramExecutor {
             !sourceCode.contains("import com.karol.Karol")) {
             throw new Exception("Missing required imports: com.karol.KarolProgram and com.karol.Karol");
         }
+    }
 
-        // Now try to compile to catch syntax errors
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        if (compiler == null) {
-            throw new Exception("Java compiler not available. Please run with JDK instead of JRE.");
-        }
-
-        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
-        
-        JavaFileObject sourceFile = createSourceFileObject(sourceCode, className);
-
-        // Set up compilation options
-        List<String> options = new ArrayList<>();
-        String classesDir = new File("target/classes").getAbsolutePath();
-        options.add("-cp");
-        options.add(classesDir);
-
-        JavaCompiler.CompilationTask task = compiler.getTask(
-            null, fileManager, diagnostics, options, null, Arrays.asList(sourceFile)
-        );
-
-        if (!task.call()) {
-            StringBuilder errorMsg = new StringBuilder("Compilation failed:\n");
-            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
-                errorMsg.append(diagnostic.getMessage(null)).append("\n");
-            }
-            throw new Exception(errorMsg.toString());
-        }
+    /**
+     * Finds where the Karol classes were loaded from, a classes directory or a jar,
+     * so student programs compile against the classes the app is running with.
+     */
+    private static String karolClasspath() throws Exception {
+        URL location = KarolProgram.class.getProtectionDomain().getCodeSource().getLocation();
+        return Paths.get(location.toURI()).toString();
     }
 
     /**
@@ -97,15 +160,56 @@ public class ProgramExecutor {
      * @throws Exception if compilation or loading fails
      */
     public static Class<?> compileAndLoad(String sourceCode, String className) throws Exception {
+        return compileAndLoad(sourceCode, className, null, null);
+    }
+
+    /**
+     * Compiles and loads a Java program, tagging the Flight Recorder events of each
+     * stage with the submission they belong to.
+     * @param sourceCode The Java source code to compile
+     * @param className The name of the class to load
+     * @param assignmentName The assignment the program is for, or null
+     * @param submission The submission's KarolEvents.submissionHash(), or null
+     * @return The loaded class
+     * @throws Exception if compilation or loading fails
+     */
+    public static Class<?> compileAndLoad(String sourceCode, String className, String assignmentName,
+                                          String submission) throws Exception {
+        return compileAndLoad(sourceCode, className, assignmentName, submission, true);
+    }
+
+    /**
+     * @param record Whether to record metrics and Flight Recorder events; false for the warm-up
+     */
+    private static Class<?> compileAndLoad(String sourceCode, String className, String assignmentName,
+                                           String submission, boolean record) throws Exception {
         // Validate source code first
-        validateSourceCode(sourceCode, className);
+        long validateStart = Metrics.start();
+        KarolEvents.Validate validateEvent = new KarolEvents.Validate();
+        validateEvent.begin();
+        try {
+            validateSourceCode(sourceCode, className);
+            validateEvent.valid = true;
+        } catch (Exception e) {
+            if (record && Metrics.ENABLED) Metrics.PROGRAM_FAILURES.increment();
+            throw e;
+        } finally {
+            if (record) {
+                Metrics.stop(Metrics.VALIDATE_TIME, validateStart);
+                validateEvent.commit(assignmentName, submission);
+            }
+        }
+
+        long compileStart = Metrics.start();
 
         // Create a temporary directory for compiled classes
         Path tempDir = Files.createTempDirectory("karol-classes");
         try {
             // Compile the source code
             JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+            if (compiler == null) {
+                throw new Exception("Java compiler not available. Please run with JDK instead of JRE.");
+            }
             
             // Create a JavaFileObject for the source code
             JavaFileObject sourceFile = createSourceFileObject(sourceCode, className);
@@ -116,7 +220,7 @@ public class ProgramExecutor {
             options.add(tempDir.toString());
             
             // Add the project's classes to the classpath
-            String classesDir = new File("target/classes").getAbsolutePath();
+            String classesDir = karolClasspath();
             options.add("-cp");
             options.add(classesDir);
             
@@ -124,16 +228,37 @@ public class ProgramExecutor {
             DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
             
             // Compile the source code
-            JavaCompiler.CompilationTask task = compiler.getTask(
-                null, fileManager, diagnostics, options, null, Arrays.asList(sourceFile)
-            );
+            boolean compiled;
+            KarolEvents.Compile compileEvent = new KarolEvents.Compile();
+            compileEvent.begin();
+            try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+                JavaCompiler.CompilationTask task = compiler.getTask(
+                    null, fileManager, diagnostics, options, null, Arrays.asList(sourceFile)
+                );
+                compiled = task.call();
+            }
+            if (compileEvent.isEnabled()) {
+                compileEvent.success = compiled;
+                compileEvent.errors = (int) diagnostics.getDiagnostics().stream()
+                    .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR).count();
+            }
+            if (record) {
+                compileEvent.commit(assignmentName, submission);
+            }
             
-            if (!task.call()) {
+            if (!compiled) {
+                if (record && Metrics.ENABLED) Metrics.PROGRAM_FAILURES.increment();
                 StringBuilder errorMsg = new StringBuilder("Compilation failed:\n");
+                List<CompileError> errors = new ArrayList<>();
                 for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
                     errorMsg.append(diagnostic.getMessage(null)).append("\n");
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        long line = Math.max(0, diagnostic.getLineNumber());
+                        long column = Math.max(0, diagnostic.getColumnNumber());
+                        errors.add(new CompileError(line, column, diagnostic.getMessage(null)));
+                    }
                 }
-                throw new Exception(errorMsg.toString());
+                throw new CompilationException(errorMsg.toString(), errors);
             }
             
             // Create a class loader that includes both the temp directory and the project's classes
@@ -144,6 +269,9 @@ public class ProgramExecutor {
             
             // Create a class loader with the parent class loader to ensure proper interface loading
             URLClassLoader classLoader = new URLClassLoader(urls, ProgramExecutor.class.getClassLoader());
+            KarolEvents.ClassLoad loadEvent = new KarolEvents.ClassLoad();
+            loadEvent.className = REQUIRED_PACKAGE + "." + className;
+            loadEvent.begin();
             try {
                 Class<?> loadedClass = classLoader.loadClass(REQUIRED_PACKAGE + "." + className);
                 
@@ -155,10 +283,33 @@ public class ProgramExecutor {
                 return loadedClass;
             } finally {
                 classLoader.close();
+                if (record) {
+                    loadEvent.commit(assignmentName, submission);
+                }
             }
         } finally {
-            // Clean up temporary files
+            // Clean up temporary files; the class is already defined, so its files are no longer needed
+            deleteDirectory(tempDir);
             cleanup();
+            if (record) {
+                Metrics.stop(Metrics.COMPILE_TIME, compileStart);
+            }
+        }
+    }
+
+    /**
+     * Compiles and runs a one-line program so javac is loaded and its hot paths compiled
+     * before the first real submission, which would otherwise pay for it. Meant to be run
+     * in the background at startup; failures are ignored, the real compile reports them.
+     * Nothing is recorded in Metrics or Flight Recorder, so the warm-up does not show up
+     * as a student's submission.
+     */
+    public static void warmUp() {
+        try {
+            Class<?> programClass = compileAndLoad(WARM_UP_SOURCE, findClassName(WARM_UP_SOURCE), null, null, false);
+            executeProgram(programClass, new Karol(0, 0, Robot.Direction.NORTH, new World(1, 1)), false);
+        } catch (Exception e) {
+            // Nothing to warm up, for example when running on a JRE
         }
     }
 
@@ -169,6 +320,11 @@ public class ProgramExecutor {
      * @throws Exception if execution fails
      */
     public static void executeProgram(Class<?> programClass, Karol karol) throws Exception {
+        executeProgram(programClass, karol, true);
+    }
+
+    private static void executeProgram(Class<?> programClass, Karol karol, boolean record) throws Exception {
+        long start = Metrics.start();
         try {
             Object program = programClass.getDeclaredConstructor().newInstance();
             if (!(program instanceof KarolProgram)) {
@@ -176,7 +332,29 @@ public class ProgramExecutor {
             }
             ((KarolProgram) program).run(karol);
         } catch (Exception e) {
+            if (record && Metrics.ENABLED) Metrics.PROGRAM_FAILURES.increment();
             throw new Exception("Failed to execute program: " + e.getMessage());
+        } finally {
+            if (record) {
+                Metrics.stop(Metrics.EXECUTE_TIME, start);
+            }
+        }
+    }
+
+    /**
+     * Executes a Karol program while a listener observes every action.
+     * The listener is removed again when the program finishes or fails.
+     * @param programClass The class of the program to execute
+     * @param karol The robot instance to use
+     * @param listener The listener to attach for the duration of the run
+     * @throws Exception if execution fails
+     */
+    public static void executeProgram(Class<?> programClass, Karol karol, KarolListener listener) throws Exception {
+        karol.addListener(listener);
+        try {
+            executeProgram(programClass, karol);
+        } finally {
+            karol.removeListener(listener);
         }
     }
 
@@ -184,14 +362,17 @@ public class ProgramExecutor {
      * Cleans up temporary files.
      */
     public static void cleanup() {
-        try {
-            Path tempDir = Paths.get(TEMP_DIR);
-            if (Files.exists(tempDir)) {
-                Files.walk(tempDir)
-                    .sorted((a, b) -> b.compareTo(a))  // Sort in reverse order to delete files before directories
-                    .map(Path::toFile)
-                    .forEach(File::delete);
-            }
+        deleteDirectory(Paths.get(TEMP_DIR));
+    }
+
+    private static void deleteDirectory(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a))  // Sort in reverse order to delete files before directories
+                .map(Path::toFile)
+                .forEach(File::delete);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,445 @@
+package com.karol;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the cells Karol can reach from a start cell, given the walls of a world.
+ *
+ * Each row of the world is a bitset of 64-bit words. One pass over a row adds the cells
+ * that can be entered from the rows above and below, then spreads the row sideways up to
+ * the next vertical wall with a logarithmic shift-and-mask fill, so a whole corridor is
+ * filled in a few word operations. Passes sweep up and down the world until nothing
+ * changes. Large worlds are cut into bands of rows that are swept in parallel; bands see
+ * their neighbours' edge rows as they were at the start of each round.
+ *
+ * The analyzer keeps its own copy of the walls. setWall() updates it in constant time,
+ * and extend() continues a fill from an earlier result, which is all a wall removal
+ * needs.
+ */
+public class ReachabilityAnalyzer {
+    /** Worlds with at least this many cells are swept in parallel bands. */
+    public static final int PARALLEL_THRESHOLD = 128 * 128;
+    private static final int MIN_BAND_ROWS = 32;
+
+    private final int width;
+    private final int height;
+    private final int words;
+    // Per row, bit x is set if cell x can be entered from the given neighbour
+    private final long[][] fromWest;
+    private final long[][] fromEast;
+    private final long[][] fromSouth;
+    private final long[][] fromNorth;
+
+    /**
+     * A connected group of cells that cannot be reached from the start.
+     */
+    public static class Region {
+        private final int x;
+        private final int y;
+        private final int cellCount;
+        private final int beeperCount;
+
+        Region(int x, int y, int cellCount, int beeperCount) {
+            this.x = x;
+            this.y = y;
+            this.cellCount = cellCount;
+            this.beeperCount = beeperCount;
+        }
+
+        /**
+         * @return x of the region's lowest, leftmost cell
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * @return y of the region's lowest, leftmost cell
+         */
+        public int getY() {
+            return y;
+        }
+
+        public int getCellCount() {
+            return cellCount;
+        }
+
+        /**
+         * @return the number of beepers lying in the region
+         */
+        public int getBeeperCount() {
+            return beeperCount;
+        }
+    }
+
+    /**
+     * The outcome of analyze(): what can and cannot be reached.
+     */
+    public static class Report {
+        private final int width;
+        private final BitSet reachable;
+        private final List<Beeper> unreachableBeepers;
+        private final List<Region> regions;
+
+        Report(int width, BitSet reachable, List<Beeper> unreachableBeepers, List<Region> regions) {
+            this.width = width;
+            this.reachable = reachable;
+            this.unreachableBeepers = unreachableBeepers;
+            this.regions = regions;
+        }
+
+        public boolean isReachable(int x, int y) {
+            return reachable.get(y * width + x);
+        }
+
+        public int getReachableCellCount() {
+            return reachable.cardinality();
+        }
+
+        /**
+         * @return the reachable cells, one bit per cell at index y * width + x
+         */
+        public BitSet getReachableCells() {
+            return (BitSet) reachable.clone();
+        }
+
+        public List<Beeper> getUnreachableBeepers() {
+            return unreachableBeepers;
+        }
+
+        /**
+         * @return the groups of unreachable cells, ordered by their first cell
+         */
+        public List<Region> getRegions() {
+            return regions;
+        }
+    }
+
+    /**
+     * Copies the walls of a world.
+     */
+    public ReachabilityAnalyzer(World world) {
+        this.width = world.getWidth();
+        this.height = world.getHeight();
+        this.words = (width + 63) >>> 6;
+        this.fromWest = new long[height][words];
+        this.fromEast = new long[height][words];
+        this.fromSouth = new long[height][words];
+        this.fromNorth = new long[height][words];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                setBit(fromWest[y], x, x > 0 && !world.hasWall(x, y, true));
+                setBit(fromEast[y], x, x + 1 < width && !world.hasWall(x + 1, y, true));
+                setBit(fromSouth[y], x, y > 0 && !world.hasWall(x, y, false));
+                setBit(fromNorth[y], x, y + 1 < height && !world.hasWall(x, y + 1, false));
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Adds or removes a wall, with the same coordinates as World.addWall(). Walls on the
+     * world's border and walls outside it are ignored.
+     */
+    public void setWall(int x, int y, boolean isVertical, boolean present) {
+        if (isVertical) {
+            if (x > 0 && x < width && y >= 0 && y < height) {
+                setBit(fromWest[y], x, !present);
+                setBit(fromEast[y], x - 1, !present);
+            }
+        } else if (y > 0 && y < height && x >= 0 && x < width) {
+            setBit(fromSouth[y], x, !present);
+            setBit(fromNorth[y - 1], x, !present);
+        }
+    }
+
+    /**
+     * @return the cells reachable from the start, one bit per cell at index y * width + x;
+     *         empty if the start is outside the world
+     */
+    public BitSet reachableFrom(int startX, int startY) {
+        return extend(new BitSet(), startX, startY);
+    }
+
+    /**
+     * Grows an earlier result after walls were removed, by adding a new seed cell and
+     * filling from all cells already known to be reachable.
+     * @param reachable A set of reachable cells; not modified
+     * @param seedX The cell to add, for example the far side of a removed wall
+     * @param seedY The cell to add
+     * @return everything reachable from the old cells and the seed
+     */
+    public BitSet extend(BitSet reachable, int seedX, int seedY) {
+        if (seedX < 0 || seedX >= width || seedY < 0 || seedY >= height) {
+            return (BitSet) reachable.clone();
+        }
+        long[][] rows = new long[height][words];
+        for (int cell = reachable.nextSetBit(0); cell >= 0 && cell < width * height; cell = reachable.nextSetBit(cell + 1)) {
+            setBit(rows[cell / width], cell % width, true);
+        }
+        setBit(rows[seedY], seedX, true);
+        fill(rows);
+        return toBitSet(rows);
+    }
+
+    /**
+     * Adds or removes a wall and brings an earlier result from the same start up to date.
+     * Removing a wall between a reachable and an unreachable cell only extends the
+     * result; adding a wall between two reachable cells needs a full fill. Any other
+     * change leaves the result as it was.
+     * @param reachable The result before the change, from reachableFrom(startX, startY)
+     * @return the result after the change; may be the same object if nothing changed
+     */
+    public BitSet updateWall(BitSet reachable, int startX, int startY, int x, int y, boolean isVertical, boolean present) {
+        setWall(x, y, isVertical, present);
+        int otherX = isVertical ? x - 1 : x;
+        int otherY = isVertical ? y : y - 1;
+        if (x < 0 || y < 0 || otherX < 0 || otherY < 0 || x >= width || y >= height) {
+            // Border walls and walls outside the world never change what can be reached
+            return reachable;
+        }
+        boolean here = reachable.get(y * width + x);
+        boolean other = reachable.get(otherY * width + otherX);
+        if (present) {
+            return here && other ? reachableFrom(startX, startY) : reachable;
+        }
+        if (here != other) {
+            return here ? extend(reachable, otherX, otherY) : extend(reachable, x, y);
+        }
+        return reachable;
+    }
+
+    /**
+     * Fills from the start and describes everything that was left out.
+     * @param startX The robot's start
+     * @param startY The robot's start
+     * @param beepers Beepers to check; those outside the world are ignored
+     * @return reachable cells, unreachable beepers and the unreachable regions
+     */
+    public Report analyze(int startX, int startY, List<Beeper> beepers) {
+        BitSet reachable = reachableFrom(startX, startY);
+        int[] beepersPerCell = new int[width * height];
+        List<Beeper> unreachableBeepers = new ArrayList<>();
+        for (Beeper beeper : beepers) {
+            int x = beeper.getX();
+            int y = beeper.getY();
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                continue;
+            }
+            beepersPerCell[y * width + x] += beeper.getCount();
+            if (!reachable.get(y * width + x)) {
+                unreachableBeepers.add(beeper);
+            }
+        }
+        return new Report(width, reachable, unreachableBeepers, findRegions(reachable, beepersPerCell));
+    }
+
+    /**
+     * Labels the unreachable cells as connected regions with a plain breadth-first search;
+     * every cell is visited once.
+     */
+    private List<Region> findRegions(BitSet reachable, int[] beepersPerCell) {
+        List<Region> regions = new ArrayList<>();
+        int cells = width * height;
+        BitSet visited = (BitSet) reachable.clone();
+        int[] queue = new int[cells - reachable.cardinality()];
+        for (int first = visited.nextClearBit(0); first < cells; first = visited.nextClearBit(first + 1)) {
+            int head = 0;
+            int tail = 0;
+            int beeperCount = 0;
+            queue[tail++] = first;
+            visited.set(first);
+            while (head < tail) {
+                int cell = queue[head++];
+                beeperCount += beepersPerCell[cell];
+                int x = cell % width;
+                int y = cell / width;
+                if (getBit(fromEast[y], x) && !visited.get(cell + 1)) {
+                    visited.set(cell + 1);
+                    queue[tail++] = cell + 1;
+                }
+                if (getBit(fromWest[y], x) && !visited.get(cell - 1)) {
+                    visited.set(cell - 1);
+                    queue[tail++] = cell - 1;
+                }
+                if (getBit(fromNorth[y], x) && !visited.get(cell + width)) {
+                    visited.set(cell + width);
+                    queue[tail++] = cell + width;
+                }
+                if (getBit(fromSouth[y], x) && !visited.get(cell - width)) {
+                    visited.set(cell - width);
+                    queue[tail++] = cell - width;
+                }
+            }
+            regions.add(new Region(first % width, first / width, tail, beeperCount));
+        }
+        return regions;
+    }
+
+    /**
+     * Runs rounds of band sweeps until no row changes.
+     */
+    private void fill(long[][] rows) {
+        int bandCount = width * height >= PARALLEL_THRESHOLD
+            ? Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), height / MIN_BAND_ROWS))
+            : 1;
+        int[] bounds = new int[bandCount + 1];
+        for (int i = 0; i <= bandCount; i++) {
+            bounds[i] = (int) ((long) height * i / bandCount);
+        }
+        long[][] below = new long[bandCount][];
+        long[][] above = new long[bandCount][];
+        boolean changed = true;
+        while (changed) {
+            for (int i = 0; i < bandCount; i++) {
+                below[i] = bounds[i] > 0 ? rows[bounds[i] - 1].clone() : null;
+                above[i] = bounds[i + 1] < height ? rows[bounds[i + 1]].clone() : null;
+            }
+            if (bandCount == 1) {
+                changed = sweepBand(rows, 0, height, below[0], above[0]);
+            } else {
+                changed = IntStream.range(0, bandCount).parallel()
+                    .mapToObj(i -> sweepBand(rows, bounds[i], bounds[i + 1], below[i], above[i]))
+                    .reduce(false, Boolean::logicalOr);
+            }
+        }
+    }
+
+    /**
+     * Sweeps a band of rows up and down until it stops changing.
+     * @param below The row just below the band, or null at the bottom of the world
+     * @param above The row just above the band, or null at the top of the world
+     * @return true if any row in the band changed
+     */
+    private boolean sweepBand(long[][] rows, int start, int end, long[] below, long[] above) {
+        boolean changedAny = false;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int y = start; y < end; y++) {
+                changed |= updateRow(rows, y, y == start ? below : rows[y - 1], y + 1 == end ? above : rows[y + 1]);
+            }
+            for (int y = end - 1; y >= start; y--) {
+                changed |= updateRow(rows, y, y == start ? below : rows[y - 1], y + 1 == end ? above : rows[y + 1]);
+            }
+            changedAny |= changed;
+        }
+        return changedAny;
+    }
+
+    /**
+     * Adds the cells of row y that can be entered from the rows next to it, then spreads
+     * the row sideways.
+     * @return true if the row changed
+     */
+    private boolean updateRow(long[][] rows, int y, long[] rowBelow, long[] rowAbove) {
+        long[] row = rows[y];
+        long[] south = fromSouth[y];
+        long[] north = fromNorth[y];
+        long[] west = fromWest[y];
+        long[] east = fromEast[y];
+        boolean changed = false;
+
+        // Spread east, carrying the top bit of each word into the next one
+        long carry = 0;
+        for (int w = 0; w < words; w++) {
+            long gen = row[w];
+            if (rowBelow != null) {
+                gen |= rowBelow[w] & south[w];
+            }
+            if (rowAbove != null) {
+                gen |= rowAbove[w] & north[w];
+            }
+            gen |= carry & west[w];
+            gen = fillUp(gen, west[w]);
+            carry = gen >>> 63;
+            if (gen != row[w]) {
+                row[w] = gen;
+                changed = true;
+            }
+        }
+        // Spread west, carrying the bottom bit of each word into the previous one
+        carry = 0;
+        for (int w = words - 1; w >= 0; w--) {
+            long gen = fillDown(row[w] | (carry & east[w]), east[w]);
+            carry = gen << 63;
+            if (gen != row[w]) {
+                row[w] = gen;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Spreads set bits towards higher bit positions through bits set in pro,
+     * where pro bit i means bit i can be entered from bit i - 1.
+     */
+    static long fillUp(long gen, long pro) {
+        gen |= pro & (gen << 1);
+        pro &= pro << 1;
+        gen |= pro & (gen << 2);
+        pro &= pro << 2;
+        gen |= pro & (gen << 4);
+        pro &= pro << 4;
+        gen |= pro & (gen << 8);
+        pro &= pro << 8;
+        gen |= pro & (gen << 16);
+        pro &= pro << 16;
+        gen |= pro & (gen << 32);
+        return gen;
+    }
+
+    /**
+     * Spreads set bits towards lower bit positions through bits set in pro,
+     * where pro bit i means bit i can be entered from bit i + 1.
+     */
+    static long fillDown(long gen, long pro) {
+        gen |= pro & (gen >>> 1);
+        pro &= pro >>> 1;
+        gen |= pro & (gen >>> 2);
+        pro &= pro >>> 2;
+        gen |= pro & (gen >>> 4);
+        pro &= pro >>> 4;
+        gen |= pro & (gen >>> 8);
+        pro &= pro >>> 8;
+        gen |= pro & (gen >>> 16);
+        pro &= pro >>> 16;
+        gen |= pro & (gen >>> 32);
+        return gen;
+    }
+
+    private BitSet toBitSet(long[][] rows) {
+        BitSet result = new BitSet(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int w = 0; w < words; w++) {
+                for (long bits = rows[y][w]; bits != 0; bits &= bits - 1) {
+                    result.set(y * width + (w << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void setBit(long[] row, int x, boolean value) {
+        if (value) {
+            row[x >>> 6] |= 1L << x;
+        } else {
+            row[x >>> 6] &= ~(1L << x);
+        }
+    }
+
+    private static boolean getBit(long[] row, int x) {
+        return (row[x >>> 6] & (1L << x)) != 0;
+    }
+}
@@ -0,0 +1,240 @@
+package com.karol;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers grading results so a regrade of an unchanged submission is answered
+ * without compiling or running anything.
+ *
+ * A result is stored under a key made of the hash of the normalized source, the
+ * hash of the assignment's content and the executor version (which includes the step
+ * and time limits). Change any of them and the key changes, so stale results are
+ * never served; there is nothing to invalidate. Expectations are not part of the
+ * key: results are stored without checks, and the checks are worked out again from
+ * the stored final state, so changing a rubric needs no reruns at all.
+ *
+ * Recently used results are kept in memory. With a directory, every result is also
+ * written there as a small JSON file, so the cache survives restarts; a result found
+ * on disk is moved into memory. Timed out runs are not cached, since whether a run
+ * times out depends on how busy the machine was. For the same reason GradingService
+ * and GradingScheduler never store a result caused by the grader rather than the
+ * submission, such as a missing compiler or a worker JVM that died. An entry that
+ * cannot be written to disk is still kept in memory; getWriteFailureCount() tells
+ * how often that happened.
+ *
+ * The directory is chosen by fromConfiguration(): the karol.grading.cache.dir system
+ * property if set, otherwise .karol/grading-cache in the user's home directory.
+ *
+ * Thread-safe.
+ */
+public class ResultCache {
+    public static final String DIRECTORY_PROPERTY = "karol.grading.cache.dir";
+    public static final int DEFAULT_MEMORY_ENTRIES = 10_000;
+    private static final String FILE_EXTENSION = ".json";
+
+    private final Path directory;
+    private final Map<String, GradingResult> memory;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+
+    /**
+     * @param directory Where to keep results across restarts, or null to keep them in memory only
+     * @param memoryEntries How many results to keep in memory
+     * @throws IOException if the directory cannot be created
+     */
+    public ResultCache(Path directory, int memoryEntries) throws IOException {
+        if (memoryEntries < 1) {
+            throw new IllegalArgumentException("Memory entries must be at least 1");
+        }
+        this.directory = directory;
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GradingResult> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+    }
+
+    /**
+     * Opens the cache in the configured directory.
+     * @throws IOException if the directory cannot be created
+     */
+    public static ResultCache fromConfiguration() throws IOException {
+        String configured = System.getProperty(DIRECTORY_PROPERTY);
+        Path directory = configured != null && !configured.isBlank()
+            ? Paths.get(configured)
+            : Paths.get(System.getProperty("user.home"), ".karol", "grading-cache");
+        return new ResultCache(directory, DEFAULT_MEMORY_ENTRIES);
+    }
+
+    /**
+     * Hashes a program's source after normalizing line endings and trailing whitespace,
+     * which change nothing about how it compiles or runs. Nothing that moves code to
+     * another line is normalized, so cached compiler errors keep their line numbers.
+     * @return the SHA-256 of the normalized source, as hex
+     */
+    public static String sourceHash(String source) {
+        String normalized = source.replace("\r\n", "\n").replace('\r', '\n')
+            .lines()
+            .map(String::stripTrailing)
+            .collect(Collectors.joining("\n"));
+        return HexFormat.of().formatHex(sha256().digest(normalized.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Hashes everything about an assignment that a run depends on: size, walls,
+     * beepers, robots, name and description, in the canonical binary world format.
+     * @return the SHA-256 of the assignment, as hex
+     */
+    public static String assignmentHash(StreamingWorldLoader.LoadedWorld assignment) {
+        MessageDigest digest = sha256();
+        try (DigestOutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            BinaryWorldFormat.write(Channels.newChannel(out), assignment.getAssignment(), assignment.getWorld());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not hash assignment " + assignment.getAssignment().getName(), e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return the key for a submission in an assignment graded by a given executor version
+     */
+    public static String key(String sourceHash, String assignmentHash, String executorVersion) {
+        String text = sourceHash + "\n" + assignmentHash + "\n" + executorVersion;
+        return HexFormat.of().formatHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return the stored result, without checks, or null if there is none
+     */
+    public GradingResult get(String key) {
+        GradingResult result;
+        synchronized (memory) {
+            result = memory.get(key);
+        }
+        if (result == null && directory != null) {
+            result = read(key);
+            if (result != null) {
+                synchronized (memory) {
+                    memory.put(key, result);
+                }
+            }
+        }
+        (result == null ? misses : hits).incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Stores a result. Its checks are dropped; timed out results are ignored.
+     */
+    public void put(String key, GradingResult result) {
+        if (result.getOutcome() == GradingResult.Outcome.TIMED_OUT) {
+            return;
+        }
+        GradingResult stored = result.withChecks(List.of(), false);
+        synchronized (memory) {
+            memory.put(key, stored);
+        }
+        if (directory != null) {
+            write(key, stored);
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + FILE_EXTENSION);
+    }
+
+    private GradingResult read(String key) {
+        Path file = file(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return mapper.readValue(file.toFile(), GradingResult.class);
+        } catch (IOException e) {
+            // A damaged entry is only a miss; the result will be stored again
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Try again next time
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Writes a result to a temporary file and renames it into place, so readers never see half an entry.
+     */
+    private void write(String key, GradingResult result) {
+        Path file = file(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try {
+                mapper.writeValue(temp.toFile(), result);
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // The result is still cached in memory
+            writeFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return lookups answered from memory or disk
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return lookups that found nothing
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return results that could not be written to the cache directory
+     */
+    public long getWriteFailureCount() {
+        return writeFailures.get();
+    }
+}
@@ -0,0 +1,187 @@
+package com.karol;
+
+import java.util.Arrays;
+
+/**
+ * Records a program run so that any step of it can be shown again later.
+ * Every action is stored as a single byte, and every few steps a keyframe with
+ * Karol's state and the beepers in the world is taken. Seeking to a step restores
+ * the nearest keyframe before it and replays the actions in between.
+ *
+ * The number of keyframes never grows past the keyframe budget: when the budget is
+ * full, every other keyframe is dropped and the keyframe interval is doubled.
+ */
+public class RunTimeline implements KarolListener {
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 1024;
+    public static final int DEFAULT_KEYFRAME_BUDGET = 256;
+
+    private static final Karol.Action[] ACTIONS = Karol.Action.values();
+
+    private final World template;
+    private final int keyframeBudget;
+    private int keyframeInterval;
+    private Keyframe[] keyframes;
+    private int keyframeCount;
+    private byte[] actions;
+    private int stepCount;
+    private long sensorReadCount;
+
+    /**
+     * A compact copy of everything that can change while a program runs.
+     * Beepers are stored as flat (x, y, count) triples.
+     */
+    private record Keyframe(int x, int y, Robot.Direction direction, int beepersInBag, int[] beepers) {
+    }
+
+    public RunTimeline(Karol karol) {
+        this(karol, DEFAULT_KEYFRAME_INTERVAL, DEFAULT_KEYFRAME_BUDGET);
+    }
+
+    /**
+     * Starts a timeline at Karol's current state.
+     * @param karol The robot whose run is recorded; the timeline still has to be added as a listener
+     * @param keyframeInterval Number of steps between keyframes
+     * @param keyframeBudget Maximum number of keyframes kept in memory (at least 2)
+     */
+    public RunTimeline(Karol karol, int keyframeInterval, int keyframeBudget) {
+        if (keyframeInterval < 1) {
+            throw new IllegalArgumentException("Keyframe interval must be at least 1");
+        }
+        if (keyframeBudget < 2) {
+            throw new IllegalArgumentException("Keyframe budget must be at least 2");
+        }
+        this.template = new World(karol.getWorld());
+        this.keyframeInterval = keyframeInterval;
+        this.keyframeBudget = keyframeBudget;
+        this.keyframes = new Keyframe[Math.min(keyframeBudget, 16)];
+        this.actions = new byte[1024];
+        addKeyframe(karol);
+    }
+
+    @Override
+    public void onAction(Karol karol, Karol.Action action) {
+        if (stepCount == actions.length) {
+            actions = Arrays.copyOf(actions, actions.length * 2);
+        }
+        actions[stepCount++] = (byte) action.ordinal();
+
+        if (stepCount % keyframeInterval == 0) {
+            if (keyframeCount == keyframeBudget) {
+                thinKeyframes();
+            }
+            if (stepCount % keyframeInterval == 0) {
+                addKeyframe(karol);
+            }
+        }
+    }
+
+    @Override
+    public void onSensor(Karol karol, Karol.Sensor sensor, boolean result) {
+        // Sensor reads change nothing, so they are counted but not recorded
+        sensorReadCount++;
+    }
+
+    /**
+     * @return the number of actions recorded so far
+     */
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * @return the number of sensors the program read so far
+     */
+    public long getSensorReadCount() {
+        return sensorReadCount;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public int getKeyframeCount() {
+        return keyframeCount;
+    }
+
+    /**
+     * Gets the action performed at a step.
+     * @param step Step index, from 0 to getStepCount() - 1
+     * @return the action Karol performed at that step
+     */
+    public Karol.Action getAction(int step) {
+        if (step < 0 || step >= stepCount) {
+            throw new IndexOutOfBoundsException("No step " + step + " in a run of " + stepCount + " steps");
+        }
+        return ACTIONS[actions[step]];
+    }
+
+    /**
+     * Rebuilds the world and robot as they were after the given number of steps.
+     * At most one keyframe interval of actions is replayed.
+     * @param step Number of steps into the run; clamped to the recorded range
+     * @return a new robot standing in a new world, independent of the recorded run
+     */
+    public Karol seek(int step) {
+        step = Math.max(0, Math.min(step, stepCount));
+        int index = Math.min(step / keyframeInterval, keyframeCount - 1);
+        Keyframe keyframe = keyframes[index];
+
+        World world = new World(template);
+        int[] beepers = keyframe.beepers();
+        for (int i = 0; i < beepers.length; i += 3) {
+            world.addBeeper(new Beeper(beepers[i], beepers[i + 1], beepers[i + 2]));
+        }
+        Karol karol = new Karol(keyframe.x(), keyframe.y(), keyframe.direction(), world);
+        karol.setBeepersInBag(keyframe.beepersInBag());
+
+        for (int i = index * keyframeInterval; i < step; i++) {
+            replay(karol, ACTIONS[actions[i]]);
+        }
+        return karol;
+    }
+
+    private static void replay(Karol karol, Karol.Action action) {
+        switch (action) {
+            case MOVE -> karol.move();
+            case TURN_LEFT -> karol.turnLeft();
+            case TURN_RIGHT -> karol.turnRight();
+            case PICK_BEEPER -> karol.pickBeeper();
+            case PUT_BEEPER -> karol.putBeeper();
+        }
+    }
+
+    private void addKeyframe(Karol karol) {
+        if (keyframeCount == keyframes.length) {
+            keyframes = Arrays.copyOf(keyframes, Math.min(keyframeBudget, keyframes.length * 2));
+        }
+        keyframes[keyframeCount++] = new Keyframe(
+            karol.getX(), karol.getY(), karol.getDirection(), karol.getBeepersInBag(),
+            packBeepers(karol.getWorld())
+        );
+    }
+
+    private static int[] packBeepers(World world) {
+        int[] packed = new int[world.getBeepers().size() * 3];
+        int i = 0;
+        for (Beeper beeper : world.getBeepers()) {
+            packed[i++] = beeper.getX();
+            packed[i++] = beeper.getY();
+            packed[i++] = beeper.getCount();
+        }
+        return packed;
+    }
+
+    /**
+     * Keeps every other keyframe and doubles the interval, so keyframe i
+     * still describes step i * keyframeInterval.
+     */
+    private void thinKeyframes() {
+        int kept = 0;
+        for (int i = 0; i < keyframeCount; i += 2) {
+            keyframes[kept++] = keyframes[i];
+        }
+        Arrays.fill(keyframes, kept, keyframeCount, null);
+        keyframeCount = kept;
+        keyframeInterval *= 2;
+    }
+}
@@ -0,0 +1,362 @@
+package com.karol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes students' solutions, one file per assignment.
+ *
+ * The directory is chosen by fromConfiguration(): the karol.solutions.dir system
+ * property if set, otherwise src/main/resources/solutions when running from a source
+ * checkout, otherwise .karol/solutions in the user's home directory.
+ *
+ * Writes happen on a background thread once an assignment has had no new save for the
+ * debounce delay, so typing produces one write per pause rather than one per keystroke;
+ * a save that keeps being replaced is still written after a few delays. close() writes
+ * whatever is still waiting. Each
+ * write goes to a temporary file that is then renamed over the solution, so a crash
+ * never leaves a half-written solution behind. The replaced version is kept in a
+ * history file next to the solution as a reverse delta: the changed middle section
+ * only, which for a single edit is a few bytes.
+ */
+public class SolutionStore implements AutoCloseable {
+    public static final String DIRECTORY_PROPERTY = "karol.solutions.dir";
+    public static final String SOURCE_DIRECTORY = "src/main/resources/solutions";
+    /** History files larger than this are trimmed to their newer half. */
+    public static final long DEFAULT_HISTORY_LIMIT_BYTES = 1024 * 1024;
+    /** How long a solution must go without a new save before it is written. */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+    // A save keeps being postponed for at most this many debounce delays
+    private static final int MAX_POSTPONEMENTS = 10;
+
+    private final Path directory;
+    private final long historyLimitBytes;
+    private final long debounceMillis;
+    private final ScheduledExecutorService writer;
+    // Assignment name -> save waiting for the writer
+    private final Map<String, PendingSave> pending = new HashMap<>();
+    // Assignment name -> text last written or read, to skip saves that change nothing
+    private final Map<String, String> lastSaved = new HashMap<>();
+
+    /**
+     * A previous version of a solution.
+     */
+    public record Version(long savedAt, String text) {
+    }
+
+    /**
+     * One history record: turns the newer text back into the version it replaced by
+     * putting the removed middle back between the unchanged prefix and suffix.
+     */
+    private record Delta(long savedAt, int newerHash, int prefix, int suffix, String middle) {
+        String apply(String newer) {
+            return newer.substring(0, prefix) + middle + newer.substring(newer.length() - suffix);
+        }
+    }
+
+    private static class PendingSave {
+        String text;
+        final long firstSavedAt = System.currentTimeMillis();
+        ScheduledFuture<?> scheduled;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingSave(String text) {
+            this.text = text;
+        }
+    }
+
+    public SolutionStore(Path directory) {
+        this(directory, DEFAULT_HISTORY_LIMIT_BYTES);
+    }
+
+    public SolutionStore(Path directory, long historyLimitBytes) {
+        this(directory, historyLimitBytes, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * @param historyLimitBytes History files larger than this are trimmed
+     * @param debounceMillis How long a solution must go without a new save before it is written
+     */
+    public SolutionStore(Path directory, long historyLimitBytes, long debounceMillis) {
+        this.directory = directory.toAbsolutePath();
+        this.historyLimitBytes = historyLimitBytes;
+        this.debounceMillis = debounceMillis;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "solution-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Picks the solutions directory from system properties and the working directory.
+     */
+    public static SolutionStore fromConfiguration() {
+        String configured = System.getProperty(DIRECTORY_PROPERTY);
+        if (configured != null && !configured.isBlank()) {
+            return new SolutionStore(Paths.get(configured));
+        }
+        if (Files.isDirectory(Paths.get(SOURCE_DIRECTORY).getParent())) {
+            return new SolutionStore(Paths.get(SOURCE_DIRECTORY));
+        }
+        return new SolutionStore(Paths.get(System.getProperty("user.home"), ".karol", "solutions"));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the file a solution for the assignment is stored in
+     */
+    public Path solutionFile(String assignmentName) {
+        return directory.resolve(baseName(assignmentName) + "_solution.java");
+    }
+
+    /**
+     * @return the file previous versions of the solution are stored in
+     */
+    public Path historyFile(String assignmentName) {
+        return directory.resolve(baseName(assignmentName) + "_solution.history");
+    }
+
+    private static String baseName(String assignmentName) {
+        return assignmentName.toLowerCase().replace(" ", "_");
+    }
+
+    /**
+     * Reads the saved solution for an assignment, including a save that is still queued.
+     * @param assignmentName The assignment name
+     * @return the program text, or null if no solution was saved
+     * @throws IOException if the file exists but cannot be read
+     */
+    public String load(String assignmentName) throws IOException {
+        synchronized (pending) {
+            PendingSave queued = pending.get(assignmentName);
+            if (queued != null) {
+                return queued.text;
+            }
+        }
+        Path file = solutionFile(assignmentName);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String text = Files.readString(file);
+        synchronized (pending) {
+            lastSaved.putIfAbsent(assignmentName, text);
+        }
+        return text;
+    }
+
+    /**
+     * Saves a solution on the background writer after the debounce delay. If a save for
+     * the same assignment is still waiting, its text is replaced, its delay starts over
+     * and both callers share the same future.
+     * @param assignmentName The assignment name
+     * @param programText The program to save
+     * @return a future that completes when this text, or a newer one, is on disk
+     */
+    public CompletableFuture<Void> save(String assignmentName, String programText) {
+        synchronized (pending) {
+            PendingSave save = pending.get(assignmentName);
+            if (save == null) {
+                save = new PendingSave(programText);
+                pending.put(assignmentName, save);
+            } else {
+                save.text = programText;
+                if (System.currentTimeMillis() - save.firstSavedAt >= debounceMillis * MAX_POSTPONEMENTS) {
+                    // Already waited long enough; let the scheduled write go ahead
+                    return save.done;
+                }
+                save.scheduled.cancel(false);
+            }
+            save.scheduled = writer.schedule(() -> write(assignmentName), debounceMillis, TimeUnit.MILLISECONDS);
+            return save.done;
+        }
+    }
+
+    private void write(String assignmentName) {
+        PendingSave save;
+        String previous;
+        synchronized (pending) {
+            save = pending.remove(assignmentName);
+            previous = lastSaved.get(assignmentName);
+        }
+        if (save == null) {
+            // Written by an earlier task that started before this one was cancelled
+            return;
+        }
+        try {
+            String text = save.text;
+            if (!text.equals(previous)) {
+                Files.createDirectories(directory);
+                Path file = solutionFile(assignmentName);
+                if (previous == null && Files.exists(file)) {
+                    previous = Files.readString(file);
+                }
+                writeAtomically(file, text.getBytes(StandardCharsets.UTF_8));
+                // Written after the rename: a crash in between loses one history entry,
+                // which the hash check in loadHistory detects
+                if (previous != null && !text.equals(previous)) {
+                    appendHistory(assignmentName, delta(previous, text));
+                }
+                synchronized (pending) {
+                    lastSaved.put(assignmentName, text);
+                }
+            }
+            save.done.complete(null);
+        } catch (IOException e) {
+            save.done.completeExceptionally(new UncheckedIOException(e));
+        }
+    }
+
+    private static void writeAtomically(Path file, byte[] content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, content);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Computes the record that turns newer back into older.
+     */
+    private static Delta delta(String older, String newer) {
+        int max = Math.min(older.length(), newer.length());
+        int prefix = 0;
+        while (prefix < max && older.charAt(prefix) == newer.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && older.charAt(older.length() - 1 - suffix) == newer.charAt(newer.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return new Delta(System.currentTimeMillis(), newer.hashCode(), prefix, suffix,
+            older.substring(prefix, older.length() - suffix));
+    }
+
+    private void appendHistory(String assignmentName, Delta delta) throws IOException {
+        Path history = historyFile(assignmentName);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(history,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            writeDelta(new DataOutputStream(out), delta);
+        }
+        if (Files.size(history) > historyLimitBytes) {
+            List<Delta> deltas = readHistory(history);
+            ByteArrayOutputStream trimmed = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(trimmed);
+            for (Delta kept : deltas.subList(deltas.size() / 2, deltas.size())) {
+                writeDelta(out, kept);
+            }
+            writeAtomically(history, trimmed.toByteArray());
+        }
+    }
+
+    private static void writeDelta(DataOutputStream out, Delta delta) throws IOException {
+        byte[] middle = delta.middle().getBytes(StandardCharsets.UTF_8);
+        out.writeLong(delta.savedAt());
+        out.writeInt(delta.newerHash());
+        out.writeInt(delta.prefix());
+        out.writeInt(delta.suffix());
+        out.writeInt(middle.length);
+        out.write(middle);
+        out.flush();
+    }
+
+    /**
+     * Reads all complete records, oldest first. A record cut short by a crash ends the list.
+     */
+    private static List<Delta> readHistory(Path history) throws IOException {
+        List<Delta> deltas = new ArrayList<>();
+        if (!Files.exists(history)) {
+            return deltas;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(history)))) {
+            while (true) {
+                long savedAt = in.readLong();
+                int newerHash = in.readInt();
+                int prefix = in.readInt();
+                int suffix = in.readInt();
+                byte[] middle = new byte[in.readInt()];
+                in.readFully(middle);
+                deltas.add(new Delta(savedAt, newerHash, prefix, suffix, new String(middle, StandardCharsets.UTF_8)));
+            }
+        } catch (EOFException e) {
+            // End of history
+        }
+        return deltas;
+    }
+
+    /**
+     * Rebuilds the previous versions of a solution from its history.
+     * @param assignmentName The assignment name
+     * @return earlier versions, newest first; empty if there is no saved solution
+     * @throws IOException if the files cannot be read
+     */
+    public List<Version> loadHistory(String assignmentName) throws IOException {
+        List<Version> versions = new ArrayList<>();
+        Path file = solutionFile(assignmentName);
+        if (!Files.exists(file)) {
+            return versions;
+        }
+        List<Delta> deltas = readHistory(historyFile(assignmentName));
+        String text = Files.readString(file);
+        for (int i = deltas.size() - 1; i >= 0; i--) {
+            Delta delta = deltas.get(i);
+            // Stop where the chain is broken, e.g. by a crash between rename and append
+            if (delta.newerHash() != text.hashCode()
+                    || delta.prefix() + delta.suffix() > text.length()) {
+                break;
+            }
+            text = delta.apply(text);
+            versions.add(new Version(delta.savedAt(), text));
+        }
+        return versions;
+    }
+
+    /**
+     * Writes waiting saves without their remaining delay and stops the background writer.
+     */
+    @Override
+    public void close() {
+        synchronized (pending) {
+            for (Map.Entry<String, PendingSave> entry : pending.entrySet()) {
+                entry.getValue().scheduled.cancel(false);
+                String assignmentName = entry.getKey();
+                writer.execute(() -> write(assignmentName));
+            }
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
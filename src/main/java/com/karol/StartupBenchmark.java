@@ -0,0 +1,121 @@
+package com.karol;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a fresh JVM takes to get to where a student can press Run: the
+ * assignment catalog read, an assignment parsed with Jackson, and a first program
+ * compiled and run. The window itself is left out so the benchmark runs headless.
+ *
+ * Every measurement starts a new JVM running Workload, first with only the JDK's own
+ * class-data sharing archive, then with an application archive created by a training
+ * run (-XX:+AutoCreateSharedArchive), which also covers Jackson, the com.karol classes
+ * and the javac classes ProgramExecutor uses. The median of each is printed.
+ *
+ * Classes are only archived when loaded from jars, so the class path must not contain
+ * directories. The startup Maven profile runs it against the packaged jar: mvn -Pstartup verify
+ *
+ * Usage: java com.karol.StartupBenchmark archiveFile [runs]
+ */
+public class StartupBenchmark {
+    public static final int DEFAULT_RUNS = 5;
+
+    /**
+     * What a student waits for after starting the app, done the way Main does it:
+     * the catalog and the compiler warm-up in parallel.
+     */
+    public static class Workload {
+        public static void main(String[] args) throws IOException {
+            AssignmentLoader loader = new AssignmentLoader();
+            CompletableFuture<Void> warmUp = CompletableFuture.runAsync(ProgramExecutor::warmUp);
+            AssignmentCatalog catalog = loader.loadCatalog();
+            Optional<AssignmentCatalog.Entry> first = catalog.getEntries().stream().findFirst();
+            if (first.isPresent()) {
+                loader.loadWorld(catalog.resolve(first.get()));
+            }
+            warmUp.join();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: java com.karol.StartupBenchmark archiveFile [runs]");
+            System.exit(1);
+        }
+        Path archive = Path.of(args[0]).toAbsolutePath();
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+        if (runs < 1) {
+            throw new IllegalArgumentException("Runs must be at least 1");
+        }
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (Files.isDirectory(Path.of(entry))) {
+                // The JVM refuses to archive classes loaded from a directory
+                throw new IllegalStateException("Class path entry " + entry + " is a directory; run from the jar");
+            }
+        }
+        List<String> useArchive = List.of("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + archive,
+            "-Xlog:cds=off,cds+dynamic=off");
+
+        // A fresh archive, written when the training run exits
+        Files.createDirectories(archive.getParent());
+        Files.deleteIfExists(archive);
+        long training = run(useArchive);
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("Training run did not create " + archive);
+        }
+
+        long without = median(runs, List.of());
+        long with = median(runs, useArchive);
+        System.out.printf("Startup to first compiled program, median of %d runs:%n", runs);
+        System.out.printf("  without application archive  %5d ms%n", without);
+        System.out.printf("  with application archive     %5d ms (%.0f%% faster)%n",
+            with, 100.0 * (without - with) / without);
+        System.out.printf("  training run                 %5d ms, archive %d KB%n",
+            training, Files.size(archive) / 1024);
+    }
+
+    private static long median(int runs, List<String> options) throws IOException, InterruptedException {
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            millis[i] = run(options);
+        }
+        Arrays.sort(millis);
+        return millis[runs / 2];
+    }
+
+    /**
+     * Runs Workload in a new JVM with this JVM's class path.
+     * @return the wall-clock time from starting the process until it exited
+     */
+    private static long run(List<String> options) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xshare:auto");
+        command.addAll(options);
+        if (ManagementFactory.getRuntimeMXBean().getInputArguments().contains("--enable-preview")) {
+            command.add("--enable-preview");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Workload.class.getName());
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        int status = process.waitFor();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (status != 0) {
+            throw new IllegalStateException("Startup workload exited with status " + status);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,234 @@
+package com.karol;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads assignment files straight into a World, one token at a time.
+ *
+ * Unlike AssignmentLoader.loadAssignment(), no Wall or Beeper objects are created:
+ * each element's numbers are read from the parser and written into the world's wall
+ * bitsets and beeper counts. Only the header (name, description, size and robots) ends
+ * up in an Assignment. If walls or beepers appear before the world size, their
+ * coordinates are buffered in a primitive array until the world can be created.
+ */
+public class StreamingWorldLoader {
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+
+    /**
+     * An assignment header together with its world.
+     * The header's wall and beeper lists are always empty; the world holds them.
+     */
+    public static class LoadedWorld {
+        private final Assignment assignment;
+        private final World world;
+
+        LoadedWorld(Assignment assignment, World world) {
+            this.assignment = assignment;
+            this.world = world;
+        }
+
+        public Assignment getAssignment() {
+            return assignment;
+        }
+
+        public World getWorld() {
+            return world;
+        }
+    }
+
+    public StreamingWorldLoader() {
+        this(new ObjectMapper());
+    }
+
+    public StreamingWorldLoader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Loads an assignment file through a read-only memory mapping
+     * (or a plain stream for files that are not on the default file system).
+     * @param file The JSON assignment file
+     * @return the header and the populated world
+     * @throws IOException if the file cannot be read or is not a valid assignment
+     */
+    public LoadedWorld load(Path file) throws IOException {
+        if (file.getFileSystem() != FileSystems.getDefault()) {
+            // Files inside a jar cannot be mapped
+            try (InputStream in = Files.newInputStream(file)) {
+                return load(in);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                // A single mapping is limited to 2 GB; fall back to a buffered stream
+                try (InputStream in = Channels.newInputStream(channel)) {
+                    return load(in);
+                }
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return load(new ByteBufferBackedInputStream(buffer));
+        }
+    }
+
+    /**
+     * Loads an assignment from a stream.
+     * @param in The JSON input; not closed by this method
+     * @return the header and the populated world
+     * @throws IOException if the input is not a valid assignment
+     */
+    public LoadedWorld load(InputStream in) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return read(parser);
+        }
+    }
+
+    private LoadedWorld read(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Assignment must be a JSON object");
+        }
+
+        String name = null;
+        String description = null;
+        int width = -1;
+        int height = -1;
+        World world = null;
+        Robot[] robots = new Robot[0];
+        // Elements seen before the world size: walls as (x, y, vertical), beepers as (x, y, count)
+        PendingElements pendingWalls = new PendingElements();
+        PendingElements pendingBeepers = new PendingElements();
+
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "name" -> name = parser.getValueAsString();
+                case "description" -> description = parser.getValueAsString();
+                case "worldWidth" -> width = parser.getIntValue();
+                case "worldHeight" -> height = parser.getIntValue();
+                case "initialRobots" -> robots = value == JsonToken.START_ARRAY
+                    ? objectMapper.readValue(parser, Robot[].class)
+                    : robots;
+                case "walls" -> {
+                    if (world == null && width >= 0 && height >= 0) {
+                        world = new World(width, height);
+                    }
+                    readWalls(parser, value, world, pendingWalls);
+                }
+                case "beepers" -> {
+                    if (world == null && width >= 0 && height >= 0) {
+                        world = new World(width, height);
+                    }
+                    readBeepers(parser, value, world, pendingBeepers);
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (width < 0 || height < 0) {
+            throw new IOException("Assignment is missing worldWidth or worldHeight");
+        }
+        if (world == null) {
+            world = new World(width, height);
+        }
+        for (int i = 0; i < pendingWalls.size; i += 3) {
+            world.addWall(pendingWalls.values[i], pendingWalls.values[i + 1], pendingWalls.values[i + 2] != 0);
+        }
+        for (int i = 0; i < pendingBeepers.size; i += 3) {
+            world.addBeepers(pendingBeepers.values[i], pendingBeepers.values[i + 1], pendingBeepers.values[i + 2]);
+        }
+
+        Assignment assignment = new Assignment(name, description, width, height);
+        for (Robot robot : robots) {
+            assignment.addRobot(robot);
+        }
+        return new LoadedWorld(assignment, world);
+    }
+
+    private static void readWalls(JsonParser parser, JsonToken value, World world, PendingElements pending) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            int x = 0;
+            int y = 0;
+            boolean vertical = false;
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "x" -> x = parser.getIntValue();
+                    case "y" -> y = parser.getIntValue();
+                    case "isVertical" -> vertical = token == JsonToken.VALUE_TRUE;
+                    default -> parser.skipChildren();
+                }
+            }
+            if (world != null) {
+                world.addWall(x, y, vertical);
+            } else {
+                pending.add(x, y, vertical ? 1 : 0);
+            }
+        }
+    }
+
+    private static void readBeepers(JsonParser parser, JsonToken value, World world, PendingElements pending) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            int x = 0;
+            int y = 0;
+            int count = 0;
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                parser.nextToken();
+                switch (field) {
+                    case "x" -> x = parser.getIntValue();
+                    case "y" -> y = parser.getIntValue();
+                    case "count" -> count = parser.getIntValue();
+                    default -> parser.skipChildren();
+                }
+            }
+            if (world != null) {
+                world.addBeepers(x, y, count);
+            } else {
+                pending.add(x, y, count);
+            }
+        }
+    }
+
+    /**
+     * Growable array of int triples.
+     */
+    private static class PendingElements {
+        private int[] values = new int[0];
+        private int size;
+
+        void add(int a, int b, int c) {
+            if (size + 3 > values.length) {
+                values = Arrays.copyOf(values, Math.max(48, values.length * 2));
+            }
+            values[size++] = a;
+            values[size++] = b;
+            values[size++] = c;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.karol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a trace written by TraceWriter.
+ *
+ * Only the header and the block index are read when the trace is opened. Events are
+ * decompressed one block at a time as a cursor moves through them, and a cursor can
+ * start at any step by jumping straight to the block that contains it.
+ *
+ * Each cursor holds a native Inflater until it reaches the end of the trace or is
+ * closed; closing the reader closes any cursors still open.
+ */
+public class TraceReader implements AutoCloseable {
+    private static final Karol.Action[] ACTIONS = Karol.Action.values();
+    private static final Karol.Sensor[] SENSORS = Karol.Sensor.values();
+    private static final Robot.Direction[] DIRECTIONS = Robot.Direction.values();
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final int startX;
+    private final int startY;
+    private final Robot.Direction startDirection;
+    private final int startBeepersInBag;
+    private final long[] blockOffsets;
+    private final long eventCount;
+    private final Set<Cursor> openCursors = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Opens a trace and reads its index.
+     * @param file The trace file
+     * @throws IOException if the file is not a complete trace
+     */
+    public TraceReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, TraceWriter.HEADER_SIZE);
+            for (byte b : TraceWriter.MAGIC) {
+                if (header.get() != b) {
+                    throw new IOException("Not a Karol trace");
+                }
+            }
+            int version = header.get();
+            if (version != TraceWriter.VERSION) {
+                throw new IOException("Unsupported trace version " + version);
+            }
+            blockSize = header.getInt();
+            startX = header.getInt();
+            startY = header.getInt();
+            int direction = header.get();
+            if (direction < 0 || direction >= DIRECTIONS.length) {
+                throw new IOException("Invalid start direction " + direction);
+            }
+            startDirection = DIRECTIONS[direction];
+            startBeepersInBag = header.getInt();
+
+            if (channel.size() < TraceWriter.HEADER_SIZE + TraceWriter.FOOTER_SIZE) {
+                throw new IOException("Trace has no index; the run may not have finished");
+            }
+            ByteBuffer footer = read(channel.size() - TraceWriter.FOOTER_SIZE, TraceWriter.FOOTER_SIZE);
+            int blockCount = footer.getInt();
+            eventCount = footer.getLong();
+            long indexOffset = footer.getLong();
+            for (byte b : TraceWriter.INDEX_MAGIC) {
+                if (footer.get() != b) {
+                    throw new IOException("Trace has no index; the run may not have finished");
+                }
+            }
+            ByteBuffer index = read(indexOffset, blockCount * Long.BYTES);
+            blockOffsets = new long[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = index.getLong();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    public int getStartX() {
+        return startX;
+    }
+
+    public int getStartY() {
+        return startY;
+    }
+
+    public Robot.Direction getStartDirection() {
+        return startDirection;
+    }
+
+    public int getStartBeepersInBag() {
+        return startBeepersInBag;
+    }
+
+    /**
+     * @return a cursor positioned before the first event
+     */
+    public Cursor cursor() {
+        return cursor(0);
+    }
+
+    /**
+     * Creates a cursor whose first call to next() moves to the given step.
+     * Only the block containing that step is decompressed.
+     * @param step Index of the first event to visit, from 0 to getEventCount()
+     */
+    public Cursor cursor(long step) {
+        if (step < 0 || step > eventCount) {
+            throw new IndexOutOfBoundsException("No step " + step + " in a trace of " + eventCount + " events");
+        }
+        Cursor cursor = new Cursor(step);
+        openCursors.add(cursor);
+        return cursor;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Cursor cursor : openCursors) {
+            cursor.close();
+        }
+        channel.close();
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Trace ended unexpectedly");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Walks through the events of a trace without allocating per event.
+     * Not thread-safe; use one cursor per thread.
+     */
+    public class Cursor implements AutoCloseable {
+        private final Inflater inflater = new Inflater();
+        private byte[] compressed = new byte[0];
+        private final byte[] events = new byte[blockSize];
+        private int eventsInBlock;
+        private int block;
+        private int position;
+        private long step;
+        private int event = -1;
+        private boolean closed;
+
+        private Cursor(long start) {
+            block = (int) (start / blockSize);
+            position = (int) (start % blockSize);
+            step = start - 1;
+        }
+
+        /**
+         * Moves to the next event.
+         * @return false if the end of the trace was reached
+         * @throws IOException if the trace cannot be read
+         */
+        public boolean next() throws IOException {
+            if (step + 1 >= eventCount) {
+                close();
+                event = -1;
+                return false;
+            }
+            if (closed) {
+                throw new IllegalStateException("Cursor is closed");
+            }
+            if (position >= eventsInBlock) {
+                if (eventsInBlock > 0) {
+                    block++;
+                    position = 0;
+                }
+                loadBlock(block);
+            }
+            event = events[position++];
+            step++;
+            return true;
+        }
+
+        private void loadBlock(int index) throws IOException {
+            ByteBuffer blockHeader = read(blockOffsets[index], TraceWriter.BLOCK_HEADER_SIZE);
+            eventsInBlock = blockHeader.getInt();
+            int length = blockHeader.getInt();
+            if (compressed.length < length) {
+                compressed = new byte[length];
+            }
+            ByteBuffer data = ByteBuffer.wrap(compressed, 0, length);
+            long offset = blockOffsets[index] + TraceWriter.BLOCK_HEADER_SIZE;
+            while (data.hasRemaining()) {
+                if (channel.read(data, offset + data.position()) < 0) {
+                    throw new EOFException("Trace block " + index + " is truncated");
+                }
+            }
+            inflater.reset();
+            inflater.setInput(compressed, 0, length);
+            try {
+                int inflated = 0;
+                while (inflated < eventsInBlock && !inflater.finished() && !inflater.needsInput()) {
+                    inflated += inflater.inflate(events, inflated, eventsInBlock - inflated);
+                }
+                if (inflated != eventsInBlock) {
+                    throw new IOException("Trace block " + index + " is damaged");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Trace block " + index + " is damaged", e);
+            }
+        }
+
+        /**
+         * Releases the cursor's inflater. Called automatically at the end of the trace.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                inflater.end();
+                openCursors.remove(this);
+            }
+        }
+
+        /**
+         * @return the index of the current event
+         */
+        public long getStep() {
+            return step;
+        }
+
+        public boolean isAction() {
+            return event >= 0 && event < TraceWriter.SENSOR_BASE;
+        }
+
+        /**
+         * @return the action at the current step, or null if it is a sensor reading
+         */
+        public Karol.Action getAction() {
+            return isAction() ? ACTIONS[event] : null;
+        }
+
+        /**
+         * @return the sensor read at the current step, or null if it is an action
+         */
+        public Karol.Sensor getSensor() {
+            return event >= TraceWriter.SENSOR_BASE ? SENSORS[(event - TraceWriter.SENSOR_BASE) / 2] : null;
+        }
+
+        /**
+         * @return the value the sensor returned; only meaningful when getSensor() is not null
+         */
+        public boolean getSensorResult() {
+            return event >= TraceWriter.SENSOR_BASE && ((event - TraceWriter.SENSOR_BASE) & 1) == 1;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.karol;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Streams every action and sensor reading of a run to a compressed trace file.
+ *
+ * Each event is one byte. Events are collected in fixed-size blocks; a full block is
+ * handed to a background thread that deflates it and appends it to the file, so the
+ * running program only ever touches an in-memory array. At most a few blocks can be
+ * waiting at once; if the disk falls behind, the program waits for it instead of the
+ * trace growing in memory.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header   'K' 'R' 'L' 'T', version byte, events per block (int),
+ *            start x, y (int), direction ordinal (byte), beepers in bag (int)
+ *   blocks   per block: event count (int), compressed length (int), deflated events
+ *   index    file offset of every block (long)
+ *   footer   block count (int), event count (long), index offset (long), 'K' 'T' 'I' 'X'
+ * </pre>
+ * Use TraceReader to read a trace back.
+ */
+public class TraceWriter implements KarolListener, AutoCloseable {
+    public static final String EXTENSION = ".ktrace";
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_QUEUED_BLOCKS = 4;
+
+    static final byte[] MAGIC = {'K', 'R', 'L', 'T'};
+    static final byte[] INDEX_MAGIC = {'K', 'T', 'I', 'X'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 22;
+    static final int BLOCK_HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 24;
+    // Event bytes: action ordinals below SENSOR_BASE, sensors as SENSOR_BASE + 2 * ordinal + result
+    static final int SENSOR_BASE = 8;
+
+    private static final Block END = new Block(null, 0);
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final BlockingQueue<Block> filled;
+    private final BlockingQueue<byte[]> free;
+    private final Thread thread;
+    private byte[] buffer;
+    private int position;
+    private boolean closed;
+    private volatile IOException failure;
+
+    private record Block(byte[] events, int length) {
+    }
+
+    public TraceWriter(Path file, Karol karol) throws IOException {
+        this(file, karol, DEFAULT_BLOCK_SIZE, DEFAULT_QUEUED_BLOCKS);
+    }
+
+    /**
+     * Creates the trace file and writes its header; add the writer to Karol as a listener
+     * to start recording.
+     * @param file The trace file, replaced if it exists
+     * @param karol The robot whose run is traced; its current state is stored as the start
+     * @param blockSize Number of events per compressed block
+     * @param queuedBlocks Number of full blocks that may wait for the writer thread
+     * @throws IOException if the file cannot be created
+     */
+    public TraceWriter(Path file, Karol karol, int blockSize, int queuedBlocks) throws IOException {
+        if (blockSize < 1 || queuedBlocks < 1) {
+            throw new IllegalArgumentException("Block size and queued blocks must be at least 1");
+        }
+        this.blockSize = blockSize;
+        this.filled = new ArrayBlockingQueue<>(queuedBlocks + 1);
+        this.free = new ArrayBlockingQueue<>(queuedBlocks + 1);
+        this.buffer = new byte[blockSize];
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put((byte) VERSION).putInt(blockSize);
+        header.putInt(karol.getX()).putInt(karol.getY());
+        header.put((byte) karol.getDirection().ordinal()).putInt(karol.getBeepersInBag());
+        header.flip();
+        try {
+            writeFully(header);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this::writeBlocks, "trace-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void onAction(Karol karol, Karol.Action action) {
+        record(action.ordinal());
+    }
+
+    @Override
+    public void onSensor(Karol karol, Karol.Sensor sensor, boolean result) {
+        record(SENSOR_BASE + 2 * sensor.ordinal() + (result ? 1 : 0));
+    }
+
+    private void record(int event) {
+        // After a failure events are dropped; the error is reported by close()
+        if (closed || failure != null) {
+            return;
+        }
+        buffer[position++] = (byte) event;
+        if (position == blockSize) {
+            submit();
+        }
+    }
+
+    private void submit() {
+        try {
+            filled.put(new Block(buffer, position));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new InterruptedIOException("Interrupted while writing trace");
+            return;
+        }
+        byte[] recycled = free.poll();
+        buffer = recycled != null ? recycled : new byte[blockSize];
+        position = 0;
+    }
+
+    /**
+     * Writes the last partial block and the index, then closes the file.
+     * @throws IOException if any part of the trace could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (position > 0 && failure == null) {
+            submit();
+        }
+        closed = true;
+        try {
+            filled.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            thread.interrupt();
+            failure = new InterruptedIOException("Interrupted while finishing trace");
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs on the writer thread: compresses blocks in order, then writes index and footer.
+     * After a failure, blocks are still taken off the queue so the program never blocks.
+     */
+    private void writeBlocks() {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        List<Long> offsets = new ArrayList<>();
+        long events = 0;
+        byte[] compressed = new byte[blockSize + blockSize / 8 + 64];
+        try {
+            for (Block block = filled.take(); block != END; block = filled.take()) {
+                if (failure != null) {
+                    continue;
+                }
+                deflater.reset();
+                deflater.setInput(block.events(), 0, block.length());
+                deflater.finish();
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    length += deflater.deflate(compressed, length, compressed.length - length);
+                }
+                free.offer(block.events());
+
+                try {
+                    offsets.add(channel.position());
+                    ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+                    blockHeader.putInt(block.length()).putInt(length).flip();
+                    writeFully(blockHeader);
+                    writeFully(ByteBuffer.wrap(compressed, 0, length));
+                    events += block.length();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+
+            if (failure == null) {
+                long indexOffset = channel.position();
+                ByteBuffer index = ByteBuffer.allocate(offsets.size() * Long.BYTES + FOOTER_SIZE);
+                for (long offset : offsets) {
+                    index.putLong(offset);
+                }
+                index.putInt(offsets.size()).putLong(events).putLong(indexOffset).put(INDEX_MAGIC);
+                index.flip();
+                writeFully(index);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Trace writer was interrupted");
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.karol;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Grades submissions in separate worker JVMs, so a student program that calls
+ * System.exit, allocates until the heap is gone or never stops takes down one worker
+ * instead of the grading server.
+ *
+ * Starting a JVM and loading javac takes around a second, so workers are started
+ * ahead of time (see GradingWorker) and each grades many submissions. A submission is
+ * sent to an idle worker, and the result read back, over a loopback connection the
+ * worker opens to the pool when it starts. Student code can write to the worker's
+ * standard output but cannot reach that connection, so it cannot forge a result.
+ * Each worker has its own heap limit and exits as soon as it runs
+ * out of memory. A worker is replaced after jobsPerWorker submissions, after a run
+ * that timed out (its thread may still be spinning), and whenever it dies or stops
+ * answering; the replacement starts in the background while the other workers carry on.
+ *
+ * Thread-safe. At most size submissions are graded at once; further callers wait for
+ * a worker to become idle. A replacement that fails to start is retried every second;
+ * getRestartFailureCount() tells how often that happened.
+ */
+public final class WorkerPool implements AutoCloseable {
+    public static final int DEFAULT_HEAP_MEGABYTES = 256;
+    public static final int DEFAULT_JOBS_PER_WORKER = 200;
+    /** How long a worker may take to start and warm up. */
+    public static final Duration START_TIMEOUT = Duration.ofSeconds(60);
+    /** Time allowed for compiling on top of the run time limit before a worker is killed. */
+    public static final Duration COMPILE_ALLOWANCE = Duration.ofSeconds(30);
+    /** Exit status of a JVM stopped by -XX:+ExitOnOutOfMemoryError. */
+    private static final int OUT_OF_MEMORY_EXIT = 3;
+    private static final long RESTART_DELAY_MILLIS = 1000;
+    private static final int TOKEN_BYTES = 32;
+    private static final int ACCEPT_POLL_MILLIS = 250;
+    private static final SecureRandom TOKENS = new SecureRandom();
+
+    /**
+     * One worker process and the connection to it.
+     */
+    private static class Worker {
+        private final Process process;
+        // The socket the worker connects to while it starts, then the connection itself
+        private volatile Closeable channel;
+        private DataOutputStream to;
+        private DataInputStream from;
+        private volatile boolean killed;
+        private int jobs;
+
+        Worker(Process process, ServerSocket listener) {
+            this.process = process;
+            this.channel = listener;
+        }
+
+        void connect(Socket socket) throws IOException {
+            channel = socket;
+            to = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            from = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        }
+
+        void kill() {
+            killed = true;
+            process.destroyForcibly();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // The process is gone either way
+            }
+        }
+    }
+
+    private final int size;
+    private final Path assignmentsDirectory;
+    private final int heapMegabytes;
+    private final int jobsPerWorker;
+    private final long stepLimit;
+    private final Duration timeLimit;
+    private final BlockingQueue<Worker> idle = new LinkedBlockingQueue<>();
+    private final List<Worker> workers = new ArrayList<>();
+    private final ScheduledExecutorService watchdog;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong recycled = new AtomicLong();
+    private final AtomicLong restartFailures = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Starts a pool with default limits, reading assignments from the same place as this JVM.
+     * @throws IOException if a worker cannot be started
+     */
+    public WorkerPool(int size) throws IOException {
+        this(size, null, DEFAULT_HEAP_MEGABYTES, DEFAULT_JOBS_PER_WORKER,
+            GradingService.DEFAULT_STEP_LIMIT, GradingService.DEFAULT_TIME_LIMIT);
+    }
+
+    /**
+     * Starts size workers and waits until all of them are ready.
+     * @param size Number of worker JVMs
+     * @param assignmentsDirectory Where workers read assignments from, or null for the karol.assignments.dir default
+     * @param heapMegabytes Maximum heap of each worker
+     * @param jobsPerWorker Submissions a worker grades before it is replaced
+     * @param stepLimit Maximum number of actions and sensor reads per run
+     * @param timeLimit Maximum wall-clock time per run
+     * @throws IOException if a worker cannot be started
+     */
+    public WorkerPool(int size, Path assignmentsDirectory, int heapMegabytes, int jobsPerWorker,
+                      long stepLimit, Duration timeLimit) throws IOException {
+        if (size < 1 || jobsPerWorker < 1) {
+            throw new IllegalArgumentException("A pool needs at least one worker that grades at least one job");
+        }
+        this.size = size;
+        this.assignmentsDirectory = assignmentsDirectory;
+        this.heapMegabytes = heapMegabytes;
+        this.jobsPerWorker = jobsPerWorker;
+        this.stepLimit = stepLimit;
+        this.timeLimit = timeLimit;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "worker-pool-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (ExecutorService starter = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Worker>> starting = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                starting.add(starter.submit(this::startWorker));
+            }
+            for (Future<Worker> future : starting) {
+                idle.add(future.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            close();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new IOException("Could not start grading workers: " + cause.getMessage(), cause);
+        }
+    }
+
+    private List<String> command(int port) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + heapMegabytes + "m");
+        command.add("-XX:+ExitOnOutOfMemoryError");
+        if (ManagementFactory.getRuntimeMXBean().getInputArguments().contains("--enable-preview")) {
+            command.add("--enable-preview");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(GradingWorker.class.getName());
+        command.add(Integer.toString(port));
+        command.add(Long.toString(stepLimit));
+        command.add(Long.toString(timeLimit.toMillis()));
+        if (assignmentsDirectory != null) {
+            command.add(assignmentsDirectory.toString());
+        }
+        return command;
+    }
+
+    /**
+     * Starts a worker and waits for it to report that it is warmed up. The worker gets a
+     * random token on its standard input and has to present it when it connects, so no
+     * other local process can take its place.
+     */
+    private Worker startWorker() throws IOException {
+        byte[] token = new byte[TOKEN_BYTES];
+        TOKENS.nextBytes(token);
+        ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Process process;
+        try {
+            process = new ProcessBuilder(command(listener.getLocalPort()))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        } catch (IOException e) {
+            listener.close();
+            throw e;
+        }
+        Worker worker = new Worker(process, listener);
+        synchronized (workers) {
+            workers.add(worker);
+        }
+        ScheduledFuture<?> kill = watchdog.schedule(worker::kill, START_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            try (DataOutputStream stdin = new DataOutputStream(process.getOutputStream())) {
+                GradingWorker.writeFrame(stdin, token);
+            }
+            try (listener) {
+                worker.connect(accept(listener, process));
+            }
+            byte[] presented = GradingWorker.readFrame(worker.from);
+            if (presented == null || !MessageDigest.isEqual(token, presented)) {
+                throw new IOException("Worker connection did not present its token");
+            }
+            byte[] ready = GradingWorker.readFrame(worker.from);
+            if (ready == null || !GradingWorker.READY.equals(new String(ready, StandardCharsets.UTF_8))) {
+                throw new IOException("Worker did not start");
+            }
+            return worker;
+        } catch (IOException e) {
+            retire(worker);
+            throw new IOException(worker.killed ? "Worker did not start within " + START_TIMEOUT.toSeconds() + " s"
+                : e.getMessage(), e);
+        } finally {
+            kill.cancel(false);
+        }
+    }
+
+    /**
+     * Waits for a starting worker to connect, giving up as soon as its process exits.
+     */
+    private static Socket accept(ServerSocket listener, Process process) throws IOException {
+        listener.setSoTimeout(ACCEPT_POLL_MILLIS);
+        while (true) {
+            try {
+                return listener.accept();
+            } catch (SocketTimeoutException e) {
+                if (!process.isAlive()) {
+                    throw new IOException("Worker exited with status " + process.exitValue() + " before connecting");
+                }
+            }
+        }
+    }
+
+    /**
+     * A grading result, and whether it can be cached: only results a worker sent back
+     * that depend on nothing but the submission can. A worker that died, hung or failed
+     * to compile for reasons of its own says nothing about the next attempt.
+     */
+    record Graded(GradingResult result, boolean reproducible) {
+    }
+
+    /**
+     * Grades a submission in the next idle worker.
+     * @param assignmentName The assignment to run the program in
+     * @param source The program's source code
+     * @param expectations What the final state should be; null to only check that the program completes
+     * @return the grading result; a worker that died or hung is reported as RUNTIME_ERROR or TIMED_OUT
+     * @throws IllegalArgumentException if there is no such assignment or it has no robot
+     * @throws IllegalStateException if the pool is closed
+     * @throws InterruptedException if interrupted while waiting for a worker
+     */
+    public GradingResult grade(String assignmentName, String source, GradingService.Expectations expectations)
+            throws InterruptedException {
+        return gradeInWorker(assignmentName, source, expectations).result();
+    }
+
+    /**
+     * Grades a submission like grade(), also telling whether the result can be cached.
+     */
+    Graded gradeInWorker(String assignmentName, String source, GradingService.Expectations expectations)
+            throws InterruptedException {
+        Worker worker = acquire();
+        boolean reusable = false;
+        long start = System.nanoTime();
+        Duration deadline = timeLimit.plus(COMPILE_ALLOWANCE);
+        ScheduledFuture<?> kill = watchdog.schedule(worker::kill, deadline.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            GradingWorker.writeFrame(worker.to,
+                mapper.writeValueAsBytes(new GradingWorker.Request(assignmentName, source, expectations)));
+            byte[] frame = GradingWorker.readFrame(worker.from);
+            if (frame == null) {
+                throw new IOException("Worker closed its output");
+            }
+            GradingWorker.Response response = mapper.readValue(frame, GradingWorker.Response.class);
+            if (response.error != null) {
+                reusable = true;
+                throw new IllegalArgumentException(response.error);
+            }
+            reusable = response.result.getOutcome() != GradingResult.Outcome.TIMED_OUT;
+            return new Graded(response.result, response.reproducible);
+        } catch (IOException e) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (worker.killed) {
+                return new Graded(new GradingResult(assignmentName, GradingResult.Outcome.TIMED_OUT,
+                    "Worker did not answer within " + deadline.toMillis() + " ms", List.of(), 0, null, List.of(), 0, millis),
+                    false);
+            }
+            return new Graded(new GradingResult(assignmentName, GradingResult.Outcome.RUNTIME_ERROR, describeExit(worker),
+                List.of(), 0, null, List.of(), 0, millis), false);
+        } finally {
+            kill.cancel(false);
+            release(worker, reusable);
+        }
+    }
+
+    private Worker acquire() throws InterruptedException {
+        while (true) {
+            if (closed) {
+                throw new IllegalStateException("Worker pool is closed");
+            }
+            Worker worker = idle.poll(1, TimeUnit.SECONDS);
+            if (worker != null) {
+                return worker;
+            }
+        }
+    }
+
+    /**
+     * Explains why a worker stopped answering, waiting briefly for it to exit.
+     */
+    private static String describeExit(Worker worker) {
+        try {
+            if (worker.process.waitFor(1, TimeUnit.SECONDS)) {
+                int status = worker.process.exitValue();
+                return status == OUT_OF_MEMORY_EXIT
+                    ? "Program ran out of memory"
+                    : "Program stopped the JVM with exit status " + status;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "Worker stopped answering";
+    }
+
+    /**
+     * Returns a worker to the pool, or replaces it if it is used up or broken.
+     */
+    private void release(Worker worker, boolean reusable) {
+        if (closed) {
+            retire(worker);
+        } else if (reusable && ++worker.jobs < jobsPerWorker) {
+            idle.add(worker);
+        } else {
+            retire(worker);
+            recycled.incrementAndGet();
+            Thread.ofVirtual().name("worker-pool-restart").start(this::replace);
+        }
+    }
+
+    private void retire(Worker worker) {
+        worker.kill();
+        synchronized (workers) {
+            workers.remove(worker);
+        }
+    }
+
+    /**
+     * Starts a replacement worker, retrying until it starts or the pool is closed.
+     */
+    private void replace() {
+        while (!closed) {
+            try {
+                Worker worker = startWorker();
+                idle.add(worker);
+                if (closed && idle.remove(worker)) {
+                    retire(worker);
+                }
+                return;
+            } catch (IOException e) {
+                restartFailures.incrementAndGet();
+                try {
+                    Thread.sleep(RESTART_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of workers, which is also the number of submissions graded at once
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return workers replaced so far because they were used up, timed out or died
+     */
+    public long getRecycledCount() {
+        return recycled.get();
+    }
+
+    /**
+     * @return replacement workers that failed to start; each failure is retried after a second
+     */
+    public long getRestartFailureCount() {
+        return restartFailures.get();
+    }
+
+    /**
+     * Stops every worker. Submissions being graded end with a RUNTIME_ERROR.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        List<Worker> running;
+        synchronized (workers) {
+            running = new ArrayList<>(workers);
+            workers.clear();
+        }
+        for (Worker worker : running) {
+            worker.kill();
+        }
+        idle.clear();
+        watchdog.shutdownNow();
+    }
+}
@@ -1,19 +1,55 @@
 package com.karol;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
+/**
+ * The grid Karol lives in.
+ *
+ * Walls are stored as two bitsets, one bit per possible wall position, and beepers as
+ * a count per cell. A vertical wall at (x, y) sits on the west edge of cell (x, y), so x
+ * ranges from 0 to width. A horizontal wall at (x, y) sits on the south edge of cell
+ * (x, y), so y ranges from 0 to height. Walls and beepers outside those ranges are
+ * ignored, since they can never affect Karol.
+ */
 public class World {
     private int width;
     private int height;
-    private List<Wall> walls;
-    private List<Beeper> beepers;
+    private BitSet verticalWalls;
+    private BitSet horizontalWalls;
+    private int[] beeperCounts;
 
     public World(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("World size cannot be negative: " + width + "x" + height);
+        }
         this.width = width;
         this.height = height;
-        this.walls = new ArrayList<>();
-        this.beepers = new ArrayList<>();
+        this.verticalWalls = new BitSet();
+        this.horizontalWalls = new BitSet();
+        this.beeperCounts = new int[width * height];
+    }
+
+    /**
+     * Creates a world with the same size and walls as another world, but no beepers.
+     */
+    World(World template) {
+        this.width = template.width;
+        this.height = template.height;
+        this.verticalWalls = (BitSet) template.verticalWalls.clone();
+        this.horizontalWalls = (BitSet) template.horizontalWalls.clone();
+        this.beeperCounts = new int[width * height];
+    }
+
+    /**
+     * @return an independent copy of this world, including its beepers
+     */
+    public World copy() {
+        World copy = new World(this);
+        System.arraycopy(beeperCounts, 0, copy.beeperCounts, 0, beeperCounts.length);
+        return copy;
     }
 
     public int getWidth() {
@@ -24,62 +60,122 @@ public class World {
         return height;
     }
 
+    /**
+     * @return a new list with every wall in the world
+     */
     public List<Wall> getWalls() {
+        List<Wall> walls = new ArrayList<>(verticalWalls.cardinality() + horizontalWalls.cardinality());
+        for (int i = horizontalWalls.nextSetBit(0); i >= 0; i = horizontalWalls.nextSetBit(i + 1)) {
+            walls.add(new Wall(i % width, i / width, false));
+        }
+        for (int i = verticalWalls.nextSetBit(0); i >= 0; i = verticalWalls.nextSetBit(i + 1)) {
+            walls.add(new Wall(i % (width + 1), i / (width + 1), true));
+        }
         return walls;
     }
 
+    /**
+     * @return a new list with one entry per cell that holds beepers
+     */
     public List<Beeper> getBeepers() {
+        List<Beeper> beepers = new ArrayList<>();
+        for (int i = 0; i < beeperCounts.length; i++) {
+            if (beeperCounts[i] > 0) {
+                beepers.add(new Beeper(i % width, i / width, beeperCounts[i]));
+            }
+        }
         return beepers;
     }
 
     public void addWall(Wall wall) {
-        walls.add(wall);
+        addWall(wall.getX(), wall.getY(), wall.isVertical());
+    }
+
+    /**
+     * Adds a wall without creating a Wall object.
+     * @param x The wall's x coordinate
+     * @param y The wall's y coordinate
+     * @param isVertical True for a wall on the west edge of the cell, false for the south edge
+     */
+    public void addWall(int x, int y, boolean isVertical) {
+        int index = wallIndex(x, y, isVertical);
+        if (index >= 0) {
+            (isVertical ? verticalWalls : horizontalWalls).set(index);
+        }
+    }
+
+    public void removeWall(int x, int y, boolean isVertical) {
+        int index = wallIndex(x, y, isVertical);
+        if (index >= 0) {
+            (isVertical ? verticalWalls : horizontalWalls).clear(index);
+        }
+    }
+
+    public boolean hasWall(int x, int y, boolean isVertical) {
+        int index = wallIndex(x, y, isVertical);
+        return index >= 0 && (isVertical ? verticalWalls : horizontalWalls).get(index);
+    }
+
+    public int getWallCount() {
+        return verticalWalls.cardinality() + horizontalWalls.cardinality();
     }
 
     public void clearWalls() {
-        walls.clear();
+        verticalWalls.clear();
+        horizontalWalls.clear();
     }
 
     public void clearBeepers() {
-        beepers.clear();
+        Arrays.fill(beeperCounts, 0);
     }
 
     public void addBeeper(Beeper beeper) {
-        // Check if there's already a beeper at this location
-        for (Beeper existing : beepers) {
-            if (existing.getX() == beeper.getX() && existing.getY() == beeper.getY()) {
-                existing.setCount(existing.getCount() + beeper.getCount());
-                return;
-            }
+        addBeepers(beeper.getX(), beeper.getY(), beeper.getCount());
+    }
+
+    /**
+     * Adds beepers to a cell without creating a Beeper object.
+     * @param x The cell's x coordinate
+     * @param y The cell's y coordinate
+     * @param count How many beepers to add
+     */
+    public void addBeepers(int x, int y, int count) {
+        if (isInside(x, y) && count > 0) {
+            beeperCounts[y * width + x] += count;
+        }
+    }
+
+    /**
+     * @return the number of beepers in a cell, 0 for cells outside the world
+     */
+    public int getBeeperCount(int x, int y) {
+        return isInside(x, y) ? beeperCounts[y * width + x] : 0;
+    }
+
+    /**
+     * Replaces the number of beepers in a cell; 0 empties it. Cells outside the world are ignored.
+     */
+    public void setBeeperCount(int x, int y, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Beeper count cannot be negative: " + count);
+        }
+        if (isInside(x, y)) {
+            beeperCounts[y * width + x] = count;
         }
-        // If no existing beeper found, add the new one
-        beepers.add(beeper);
     }
 
     public void putBeeper(int x, int y) {
-        // Check if there's already a beeper at this location
-        for (Beeper beeper : beepers) {
-            if (beeper.getX() == x && beeper.getY() == y) {
-                beeper.setCount(beeper.getCount() + 1);
-                return;
-            }
+        if (!isInside(x, y)) {
+            throw new IllegalStateException("Cannot put a beeper outside the world!");
         }
-        // If no existing beeper found, add a new one
-        beepers.add(new Beeper(x, y, 1));
+        beeperCounts[y * width + x]++;
     }
 
     public void pickBeeper(int x, int y) {
-        for (Beeper beeper : beepers) {
-            if (beeper.getX() == x && beeper.getY() == y) {
-                if (beeper.getCount() > 1) {
-                    beeper.setCount(beeper.getCount() - 1);
-                } else {
-                    beepers.remove(beeper);
-                }
-                return;
-            }
+        if (getBeeperCount(x, y) == 0) {
+            throw new IllegalStateException("No beeper to pick up!");
         }
-        throw new IllegalStateException("No beeper to pick up!");
+        beeperCounts[y * width + x]--;
     }
 
     public boolean isValidMove(int fromX, int fromY, int toX, int toY) {
@@ -89,24 +185,46 @@ public class World {
         }
 
         // Check for walls
-        for (Wall wall : walls) {
-            if (wall.isVertical()) {
-                // Vertical wall blocks horizontal movement
-                if (wall.getX() == Math.max(fromX, toX) && 
-                    wall.getY() == fromY && 
-                    Math.abs(fromX - toX) == 1) {
-                    return false;
-                }
-            } else {
-                // Horizontal wall blocks vertical movement
-                if (wall.getY() == Math.max(fromY, toY) && 
-                    wall.getX() == fromX && 
-                    Math.abs(fromY - toY) == 1) {
-                    return false;
-                }
-            }
+        if (fromY == toY && Math.abs(fromX - toX) == 1) {
+            // Vertical wall blocks horizontal movement
+            return !hasWall(Math.max(fromX, toX), fromY, true);
+        }
+        if (fromX == toX && Math.abs(fromY - toY) == 1) {
+            // Horizontal wall blocks vertical movement
+            return !hasWall(fromX, Math.max(fromY, toY), false);
         }
-
         return true;
     }
-} 
\ No newline at end of file
+
+    /**
+     * The live vertical wall bitset, indexed by y * (width + 1) + x.
+     */
+    BitSet getVerticalWallBits() {
+        return verticalWalls;
+    }
+
+    /**
+     * The live horizontal wall bitset, indexed by y * width + x.
+     */
+    BitSet getHorizontalWallBits() {
+        return horizontalWalls;
+    }
+
+    /**
+     * The live beeper counts, indexed by y * width + x.
+     */
+    int[] getBeeperCounts() {
+        return beeperCounts;
+    }
+
+    private boolean isInside(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    private int wallIndex(int x, int y, boolean isVertical) {
+        if (isVertical) {
+            return x >= 0 && x <= width && y >= 0 && y < height ? y * (width + 1) + x : -1;
+        }
+        return x >= 0 && x < width && y >= 0 && y <= height ? y * width + x : -1;
+    }
+}
@@ -0,0 +1,474 @@
+package com.karol;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes a running program's world and robot to any number of viewers on a local
+ * socket, for example to show a run on the projector while students follow on their
+ * own machines.
+ *
+ * Add the broadcaster to Karol as a listener. Each action becomes a small delta: the
+ * robot's pose after a move or turn, and additionally the cell's new beeper count after
+ * a pick or put. Every SNAPSHOT_INTERVAL deltas the whole world is encoded once more
+ * as a snapshot, so a viewer that joins late gets the latest snapshot and the deltas
+ * since, never the whole run.
+ *
+ * Every viewer has its own bounded queue. The program thread only offers deltas to the
+ * queues and never waits on a socket; a viewer whose queue is full has its queue
+ * cleared and is sent the latest snapshot and the deltas since, so a slow viewer skips
+ * ahead instead of slowing the program down or holding memory.
+ *
+ * Frames are sent with their length as a 4-byte int in front (big-endian):
+ * <pre>
+ *   ROBOT     type 1, sequence (long), x, y (int), direction ordinal (byte), beepers in bag (int)
+ *   CELL      type 2, sequence (long), x, y (int), beeper count (int)
+ *   SNAPSHOT  type 3, sequence (long), robot as in ROBOT, the world in BinaryWorldFormat
+ * </pre>
+ * Sequence numbers count deltas; a snapshot carries the number of the last delta it
+ * includes. Use Mirror to rebuild the world from the frames.
+ *
+ * The port is chosen by the karol.broadcast.port system property; see fromConfiguration().
+ * If accepting viewers fails, the broadcaster keeps serving the connected ones and
+ * close() reports the error.
+ */
+public final class WorldBroadcaster implements KarolListener, AutoCloseable {
+    public static final String PORT_PROPERTY = "karol.broadcast.port";
+    public static final int SNAPSHOT_INTERVAL = 1024;
+    public static final int DEFAULT_BUFFER_FRAMES = 4096;
+
+    static final byte ROBOT = 1;
+    static final byte CELL = 2;
+    static final byte SNAPSHOT = 3;
+    private static final int ROBOT_SIZE = 1 + 8 + 4 + 4 + 1 + 4;
+    private static final int CELL_SIZE = 1 + 8 + 4 + 4 + 4;
+    private static final Robot.Direction[] DIRECTIONS = Robot.Direction.values();
+
+    /**
+     * One viewer's queue. Filled by the program thread, drained by the viewer's sender.
+     */
+    class Subscription implements AutoCloseable {
+        private final BlockingQueue<byte[]> queue;
+        private final List<byte[]> pending = new ArrayList<>();
+        // Set when the viewer has to start over from a snapshot; guarded by the broadcaster
+        private boolean resync = true;
+
+        Subscription(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Called by the program thread with the broadcaster's lock held.
+         */
+        void offer(byte[] frame) {
+            if (!resync && !queue.offer(frame)) {
+                queue.clear();
+                resync = true;
+                resyncs.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return the next frame to send, or null if none arrived within the timeout
+         */
+        byte[] next(long timeout, TimeUnit unit) throws InterruptedException {
+            if (pending.isEmpty()) {
+                catchUp();
+            }
+            if (!pending.isEmpty()) {
+                return pending.removeFirst();
+            }
+            return queue.poll(timeout, unit);
+        }
+
+        private void catchUp() {
+            synchronized (WorldBroadcaster.this) {
+                if (!resync) {
+                    return;
+                }
+                queue.clear();
+                if (snapshot != null) {
+                    pending.add(snapshot);
+                    pending.addAll(recent);
+                }
+                resync = false;
+            }
+        }
+
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final int bufferFrames;
+    private final ServerSocket server;
+    private final Thread acceptor;
+    // Guarded by this
+    private byte[] snapshot;
+    private final List<byte[]> recent = new ArrayList<>();
+    private long sequence;
+    private volatile boolean closed;
+    private volatile IOException acceptFailure;
+
+    /**
+     * Creates a broadcaster without a socket; viewers can only subscribe in-process.
+     * @param bufferFrames How many frames a viewer may fall behind before it is resynchronized
+     */
+    WorldBroadcaster(int bufferFrames) {
+        if (bufferFrames < 1) {
+            throw new IllegalArgumentException("Buffer frames must be at least 1");
+        }
+        this.bufferFrames = bufferFrames;
+        this.server = null;
+        this.acceptor = null;
+    }
+
+    /**
+     * Starts accepting viewers.
+     * @param address Where to listen; port 0 picks a free port
+     * @param bufferFrames How many frames a viewer may fall behind before it is resynchronized
+     * @throws IOException if the address cannot be bound
+     */
+    public WorldBroadcaster(InetSocketAddress address, int bufferFrames) throws IOException {
+        if (bufferFrames < 1) {
+            throw new IllegalArgumentException("Buffer frames must be at least 1");
+        }
+        this.bufferFrames = bufferFrames;
+        this.server = new ServerSocket();
+        server.bind(address);
+        this.acceptor = Thread.ofVirtual().name("world-broadcaster").start(this::acceptLoop);
+    }
+
+    /**
+     * Starts a broadcaster on the loopback port named by the karol.broadcast.port system property.
+     * @return the broadcaster, or null if the property is not set
+     * @throws IOException if the port cannot be bound
+     */
+    public static WorldBroadcaster fromConfiguration() throws IOException {
+        String port = System.getProperty(PORT_PROPERTY);
+        if (port == null || port.isBlank()) {
+            return null;
+        }
+        return new WorldBroadcaster(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port)),
+            DEFAULT_BUFFER_FRAMES);
+    }
+
+    /**
+     * @return the port viewers connect to
+     */
+    public int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("Broadcaster has no socket");
+        }
+        return server.getLocalPort();
+    }
+
+    /**
+     * Starts over from Karol's current world and pose, for a newly loaded assignment or a
+     * new run. Every viewer is sent the new snapshot.
+     */
+    public synchronized void reset(Karol karol) {
+        takeSnapshot(karol);
+        for (Subscription subscription : subscriptions) {
+            subscription.queue.clear();
+            subscription.resync = true;
+        }
+    }
+
+    @Override
+    public void onAction(Karol karol, Karol.Action action) {
+        byte[] cell = null;
+        if (action == Karol.Action.PICK_BEEPER || action == Karol.Action.PUT_BEEPER) {
+            int x = karol.getX();
+            int y = karol.getY();
+            cell = ByteBuffer.allocate(CELL_SIZE).put(CELL).putLong(0)
+                .putInt(x).putInt(y).putInt(karol.getWorld().getBeeperCount(x, y)).array();
+        }
+        byte[] robot = ByteBuffer.allocate(ROBOT_SIZE).put(ROBOT).putLong(0).put(pose(karol)).array();
+        synchronized (this) {
+            if (snapshot == null) {
+                takeSnapshot(karol);
+                return;
+            }
+            if (cell != null) {
+                publish(cell);
+            }
+            publish(robot);
+            if (recent.size() >= SNAPSHOT_INTERVAL) {
+                takeSnapshot(karol);
+            }
+        }
+    }
+
+    private void publish(byte[] frame) {
+        ByteBuffer.wrap(frame).putLong(1, ++sequence);
+        recent.add(frame);
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(frame);
+        }
+    }
+
+    private static byte[] pose(Karol karol) {
+        return ByteBuffer.allocate(ROBOT_SIZE - 9)
+            .putInt(karol.getX())
+            .putInt(karol.getY())
+            .put((byte) karol.getDirection().ordinal())
+            .putInt(karol.getBeepersInBag())
+            .array();
+    }
+
+    private void takeSnapshot(Karol karol) {
+        World world = karol.getWorld();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(SNAPSHOT);
+        bytes.writeBytes(ByteBuffer.allocate(8).putLong(sequence).array());
+        bytes.writeBytes(pose(karol));
+        try {
+            BinaryWorldFormat.write(Channels.newChannel(bytes),
+                new Assignment("live", "", world.getWidth(), world.getHeight()), world);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode world", e);
+        }
+        snapshot = bytes.toByteArray();
+        recent.clear();
+    }
+
+    /**
+     * Adds an in-process viewer. Its first frame is the latest snapshot.
+     * @param capacity How many frames it may fall behind before it is resynchronized
+     */
+    Subscription subscribe(int capacity) {
+        Subscription subscription = new Subscription(capacity);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Subscription subscription = subscribe(bufferFrames);
+                Thread.ofVirtual().name("world-broadcaster-viewer").start(() -> send(socket, subscription));
+            } catch (IOException e) {
+                if (!closed) {
+                    acceptFailure = e;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a viewer's frames to its socket until it disconnects or the broadcaster closes.
+     */
+    private void send(Socket socket, Subscription subscription) {
+        try (socket; subscription) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (!closed) {
+                byte[] frame = subscription.next(100, TimeUnit.MILLISECONDS);
+                if (frame == null) {
+                    out.flush();
+                    continue;
+                }
+                out.writeInt(frame.length);
+                out.write(frame);
+                if (subscription.pending.isEmpty() && subscription.queue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // The viewer went away
+        }
+    }
+
+    /**
+     * @return viewers currently connected or subscribed
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return how often a viewer fell too far behind and was sent a snapshot instead
+     */
+    public long getResyncCount() {
+        return resyncs.get();
+    }
+
+    /**
+     * Stops accepting viewers and disconnects the connected ones.
+     * @throws IOException if the socket could not be closed, or accepting viewers failed earlier
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+        if (server != null) {
+            server.close();
+            acceptor.interrupt();
+        }
+        if (acceptFailure != null) {
+            throw new IOException("World broadcaster stopped accepting viewers: " + acceptFailure.getMessage(),
+                acceptFailure);
+        }
+    }
+
+    /**
+     * A viewer's copy of the broadcast world, rebuilt from frames.
+     */
+    public static class Mirror {
+        private World world;
+        private int x;
+        private int y;
+        private Robot.Direction direction;
+        private int beepersInBag;
+        private long sequence = -1;
+
+        /**
+         * Reads the next frame from a broadcaster's socket and applies it.
+         * @return false at end of stream
+         * @throws IOException if the stream is broken or the frame invalid
+         */
+        public boolean read(DataInputStream in) throws IOException {
+            byte[] frame = GradingWorker.readFrame(in);
+            if (frame == null) {
+                return false;
+            }
+            apply(frame);
+            return true;
+        }
+
+        /**
+         * Applies one frame. Deltas that arrive before the first snapshot, or that the
+         * latest snapshot already includes, are ignored.
+         * @throws IOException if the frame is invalid
+         */
+        public void apply(byte[] frame) throws IOException {
+            if (frame.length < 1) {
+                throw new IOException("Empty frame");
+            }
+            byte type = frame[0];
+            int expected = switch (type) {
+                case ROBOT -> ROBOT_SIZE;
+                case CELL -> CELL_SIZE;
+                // Starts like a ROBOT frame, followed by the world
+                case SNAPSHOT -> ROBOT_SIZE;
+                default -> throw new IOException("Unknown frame type " + type);
+            };
+            if (type == SNAPSHOT ? frame.length < expected : frame.length != expected) {
+                throw new IOException("Frame of type " + type + " has " + frame.length + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(frame, 1, frame.length - 1);
+            long frameSequence = buffer.getLong();
+            if (type == SNAPSHOT) {
+                readPose(buffer);
+                world = BinaryWorldFormat.read(Channels.newChannel(
+                    new ByteArrayInputStream(frame, buffer.position(), buffer.remaining()))).getWorld();
+                sequence = frameSequence;
+                return;
+            }
+            if (world == null || frameSequence <= sequence) {
+                return;
+            }
+            if (type == ROBOT) {
+                readPose(buffer);
+            } else {
+                int cellX = buffer.getInt();
+                int cellY = buffer.getInt();
+                int count = buffer.getInt();
+                if (cellX < 0 || cellX >= world.getWidth() || cellY < 0 || cellY >= world.getHeight() || count < 0) {
+                    throw new IOException("Invalid cell update (" + cellX + ", " + cellY + ") = " + count);
+                }
+                world.setBeeperCount(cellX, cellY, count);
+            }
+            sequence = frameSequence;
+        }
+
+        private void readPose(ByteBuffer buffer) throws IOException {
+            int poseX = buffer.getInt();
+            int poseY = buffer.getInt();
+            int ordinal = buffer.get();
+            if (ordinal < 0 || ordinal >= DIRECTIONS.length) {
+                throw new IOException("Invalid direction " + ordinal);
+            }
+            x = poseX;
+            y = poseY;
+            direction = DIRECTIONS[ordinal];
+            beepersInBag = buffer.getInt();
+        }
+
+        /**
+         * @return the world, or null before the first snapshot
+         */
+        public World getWorld() {
+            return world;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public Robot.Direction getDirection() {
+            return direction;
+        }
+
+        public int getBeepersInBag() {
+            return beepersInBag;
+        }
+
+        /**
+         * @return the sequence number of the last frame applied
+         */
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    /**
+     * Connects to a broadcaster and keeps a Mirror up to date until disconnected.
+     * Handy for trying the broadcast from a terminal.
+     *
+     * Usage: java com.karol.WorldBroadcaster port
+     */
+    public static void main(String[] args) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]))) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Mirror mirror = new Mirror();
+            while (mirror.read(in)) {
+                System.out.println("#" + mirror.getSequence() + " robot at " + mirror.getX() + "," + mirror.getY()
+                    + " facing " + mirror.getDirection() + " with " + mirror.getBeepersInBag() + " beepers");
+            }
+        } catch (SocketException e) {
+            System.err.println("Disconnected: " + e.getMessage());
+        }
+    }
+}
@@ -1,31 +1,153 @@
 package com.karol;
 
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.*;
+import javafx.scene.shape.Rectangle;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import javafx.geometry.Insets;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseButton;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import javafx.scene.input.MouseEvent;
 import java.util.function.Consumer;
 
-public class WorldEditor extends VBox {
+/**
+ * Editor for assignment worlds.
+ *
+ * The world being edited is kept in a World (wall bitsets and a beeper count array) and
+ * drawn onto a single canvas, so a world of a million cells costs no more scene graph
+ * nodes than a small one. Clicking toggles one wall, beeper or robot; dragging with a
+ * wall tool draws a line of walls, dragging with the beeper or erase tool fills or
+ * clears a rectangle, and the rectangle tool walls in the dragged area. Every edit,
+ * however many cells it touches, is applied to the model first and redrawn once.
+ */
+public final class WorldEditor extends VBox {
+    public static final int MAX_WORLD_SIZE = 1000;
     private int worldWidth = 7;
     private int worldHeight = 5;
-    private GridPane grid;
-    private ToggleGroup toolGroup;
-    private List<Wall> walls = new ArrayList<>();
-    private List<Beeper> beepers = new ArrayList<>();
+    private World world = new World(worldWidth, worldHeight);
     private Robot robot = null;
-    private static final int CELL_SIZE = 60;
+    private ToggleGroup toolGroup;
+    private Spinner<Integer> beeperCountSpinner;
+    private final EditLog editLog = new EditLog(EDIT_HISTORY_CAPACITY);
+    private Button undoButton;
+    private Button redoButton;
+    // Cells shrink for large worlds so the canvas stays about this size
+    private static final int MAX_CELL_SIZE = 60;
+    private static final int MIN_CELL_SIZE = 2;
+    private static final int TARGET_CANVAS_SIZE = 900;
+    // Enough for a maze on a 300 x 300 world to be undone in one step; larger bulk
+    // edits clear the history (see endGroup())
+    private static final int EDIT_HISTORY_CAPACITY = 1 << 18;
+    private static final KeyCombination UNDO_KEYS = new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN);
+    private static final KeyCombination REDO_KEYS = new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN);
+    private static final Color UNREACHABLE_CELL_COLOR = Color.MISTYROSE;
     private Consumer<WorldEditor> onSave;
+    private Button saveButton;
+    private Canvas canvas;
+    private Rectangle selection;
+    private int cellSize;
+    private ReachabilityAnalyzer reachability;
+    private BitSet reachable = new BitSet();
+    private int dragStartX;
+    private int dragStartY;
+
+    // Changes applied since the last refresh(): the cells they touched, and the walls
+    private int dirtyMinX;
+    private int dirtyMinY;
+    private int dirtyMaxX;
+    private int dirtyMaxY;
+    private int changedWalls;
+    private long lastWallChange;
+    private boolean robotChanged;
+
+    // Edit commands recorded in the edit log
+    private static final int ADD_WALL = 0;
+    private static final int REMOVE_WALL = 1;
+    private static final int ADD_BEEPER = 2;
+    private static final int REMOVE_BEEPER = 3;
+    private static final int MOVE_ROBOT = 4;
+    private static final int REMOVE_ROBOT = 5;
+
+    /**
+     * An immutable copy of the editor contents, safe to hand to a background thread.
+     */
+    public static class Snapshot {
+        private final int width;
+        private final int height;
+        private final Robot robot;
+        private final List<Wall> walls;
+        private final List<Beeper> beepers;
+
+        Snapshot(int width, int height, Robot robot, List<Wall> walls, List<Beeper> beepers) {
+            this.width = width;
+            this.height = height;
+            this.robot = robot;
+            this.walls = List.copyOf(walls);
+            this.beepers = List.copyOf(beepers);
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return the robot, or null if none was placed
+         */
+        public Robot getRobot() {
+            return robot;
+        }
+
+        public List<Wall> getWalls() {
+            return walls;
+        }
+
+        public List<Beeper> getBeepers() {
+            return beepers;
+        }
+
+        public List<WorldValidator.Problem> validate() {
+            return WorldValidator.validate(width, height, robot, walls, beepers);
+        }
+
+        /**
+         * @return an assignment header with the robot but without walls or beepers
+         */
+        public Assignment toAssignment(String name, String description) {
+            Assignment header = new Assignment(name, description, width, height);
+            if (robot != null) {
+                header.addRobot(robot);
+            }
+            return header;
+        }
+
+        public World toWorld() {
+            World world = new World(width, height);
+            for (Wall wall : walls) {
+                world.addWall(wall);
+            }
+            for (Beeper beeper : beepers) {
+                world.addBeeper(beeper);
+            }
+            return world;
+        }
+    }
     
     public WorldEditor(Consumer<WorldEditor> onSave) {
+        this.onSave = onSave;
         setSpacing(10);
         setPadding(new Insets(10));
         
@@ -35,18 +157,14 @@ public class WorldEditor extends VBox {
         
         // Add world size controls
         Label widthLabel = new Label("Width:");
-        Spinner<Integer> widthSpinner = new Spinner<>(1, 20, worldWidth);
-        widthSpinner.valueProperty().addListener((_, _, newValue) -> {
-            worldWidth = newValue;
-            createGrid();
-        });
+        Spinner<Integer> widthSpinner = new Spinner<>(1, MAX_WORLD_SIZE, worldWidth);
+        widthSpinner.setEditable(true);
+        widthSpinner.valueProperty().addListener((_, _, newValue) -> resize(newValue, worldHeight));
         
         Label heightLabel = new Label("Height:");
-        Spinner<Integer> heightSpinner = new Spinner<>(1, 20, worldHeight);
-        heightSpinner.valueProperty().addListener((_, _, newValue) -> {
-            worldHeight = newValue;
-            createGrid();
-        });
+        Spinner<Integer> heightSpinner = new Spinner<>(1, MAX_WORLD_SIZE, worldHeight);
+        heightSpinner.setEditable(true);
+        heightSpinner.valueProperty().addListener((_, _, newValue) -> resize(worldWidth, newValue));
         
         // Tool selection
         toolGroup = new ToggleGroup();
@@ -58,10 +176,16 @@ public class WorldEditor extends VBox {
         ToggleButton verticalWallButton = new ToggleButton("Vertical Wall");
         verticalWallButton.setToggleGroup(toolGroup);
         verticalWallButton.setUserData("VERTICAL_WALL");
+
+        ToggleButton rectangleButton = new ToggleButton("Wall Rectangle");
+        rectangleButton.setToggleGroup(toolGroup);
+        rectangleButton.setUserData("RECTANGLE");
         
         ToggleButton beeperButton = new ToggleButton("Beeper");
         beeperButton.setToggleGroup(toolGroup);
         beeperButton.setUserData("BEEPER");
+        beeperCountSpinner = new Spinner<>(1, 99, 1);
+        beeperCountSpinner.setPrefWidth(70);
         
         ToggleButton robotButton = new ToggleButton("Robot");
         robotButton.setToggleGroup(toolGroup);
@@ -72,21 +196,57 @@ public class WorldEditor extends VBox {
         eraseButton.setUserData("ERASE");
         
         horizontalWallButton.setSelected(true);
+
+        Button mazeButton = new Button("Generate Maze");
+        mazeButton.setOnAction(_ -> generateMaze());
         
+        // Undo and redo buttons, also on Ctrl+Z and Ctrl+Y
+        undoButton = new Button("Undo");
+        undoButton.setOnAction(_ -> undo());
+        redoButton = new Button("Redo");
+        redoButton.setOnAction(_ -> redo());
+        addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if (UNDO_KEYS.match(e)) {
+                undo();
+                e.consume();
+            } else if (REDO_KEYS.match(e)) {
+                redo();
+                e.consume();
+            }
+        });
+        updateUndoButtons();
+
         // Save button
-        Button saveButton = new Button("Save World");
+        saveButton = new Button("Save World");
         saveButton.setOnAction(_ -> saveWorld());
         
         toolbar.getChildren().addAll(
             widthLabel, widthSpinner,
             heightLabel, heightSpinner,
-            horizontalWallButton, verticalWallButton, beeperButton, robotButton, eraseButton,
+            horizontalWallButton, verticalWallButton, rectangleButton,
+            beeperButton, beeperCountSpinner, robotButton, eraseButton,
+            mazeButton, undoButton, redoButton,
             saveButton
         );
         
-        getChildren().add(toolbar);
+        // The canvas with a rubber band for drags on top
+        canvas = new Canvas();
+        selection = new Rectangle();
+        selection.setManaged(false);
+        selection.setMouseTransparent(true);
+        selection.setFill(Color.color(0.2, 0.4, 1.0, 0.15));
+        selection.setStroke(Color.CORNFLOWERBLUE);
+        selection.setVisible(false);
+        Pane canvasPane = new Pane(canvas, selection);
+        canvas.setOnMousePressed(this::startDrag);
+        canvas.setOnMouseDragged(this::updateDrag);
+        canvas.setOnMouseReleased(this::finishDrag);
+        ScrollPane scrollPane = new ScrollPane(canvasPane);
+        VBox.setVgrow(scrollPane, Priority.ALWAYS);
+
+        getChildren().addAll(toolbar, scrollPane);
         
-        createGrid();
+        layoutCanvas();
     }
 
     public int getWorldWidth() {
@@ -97,6 +257,37 @@ public class WorldEditor extends VBox {
         return worldHeight;
     }
 
+    /**
+     * @return the robot placed in the editor, or null if none was placed
+     */
+    public Robot getRobot() {
+        return robot;
+    }
+
+    /**
+     * Builds a World from the walls and beepers placed in the editor.
+     * @return a new world of the editor's size
+     */
+    public World toWorld() {
+        return world.copy();
+    }
+
+    /**
+     * Copies the editor contents so they can be validated and written off the FX thread.
+     * @return a snapshot that later edits do not affect
+     */
+    public Snapshot snapshot() {
+        Robot robotCopy = robot == null ? null : new Robot(robot.getX(), robot.getY(), robot.getDirection());
+        return new Snapshot(worldWidth, worldHeight, robotCopy, world.getWalls(), world.getBeepers());
+    }
+
+    /**
+     * Disables the save button while a save is running in the background.
+     */
+    public void setSaving(boolean saving) {
+        saveButton.setDisable(saving);
+    }
+
     public ArrayNode getRobotsNode() {
         ObjectMapper mapper = new ObjectMapper();
         ArrayNode robotsNode = mapper.createArrayNode();
@@ -112,7 +303,7 @@ public class WorldEditor extends VBox {
     public ArrayNode getWallsNode() {
         ObjectMapper mapper = new ObjectMapper();
         ArrayNode wallsNode = mapper.createArrayNode();
-        for (Wall wall : walls) {
+        for (Wall wall : world.getWalls()) {
             ObjectNode wallNode = wallsNode.addObject();
             wallNode.put("x", wall.getX());
             wallNode.put("y", wall.getY());
@@ -124,7 +315,7 @@ public class WorldEditor extends VBox {
     public ArrayNode getBeepersNode() {
         ObjectMapper mapper = new ObjectMapper();
         ArrayNode beepersNode = mapper.createArrayNode();
-        for (Beeper beeper : beepers) {
+        for (Beeper beeper : world.getBeepers()) {
             ObjectNode beeperNode = beepersNode.addObject();
             beeperNode.put("x", beeper.getX());
             beeperNode.put("y", beeper.getY());
@@ -132,151 +323,539 @@ public class WorldEditor extends VBox {
         }
         return beepersNode;
     }
-    
-    private void createGrid() {
-        if (grid != null) {
-            getChildren().remove(grid);
+
+    /**
+     * Changes the world size. Walls and beepers that no longer fit are dropped; the
+     * robot is kept even if it ends up outside, so the validator can point it out.
+     * Recorded edits refer to cells of the old grid, so the edit history is cleared.
+     */
+    private void resize(int width, int height) {
+        World resized = new World(width, height);
+        BitSet vertical = world.getVerticalWallBits();
+        for (int i = vertical.nextSetBit(0); i >= 0; i = vertical.nextSetBit(i + 1)) {
+            resized.addWall(i % (worldWidth + 1), i / (worldWidth + 1), true);
         }
-        
-        grid = new GridPane();
-        grid.setHgap(1);
-        grid.setVgap(1);
-        grid.setStyle("-fx-background-color: lightgray;");
-        
-        for (int y = 0; y < worldHeight; y++) {
-            for (int x = 0; x < worldWidth; x++) {
-                Pane cell = createCell(x, worldHeight - 1 - y);
-                grid.add(cell, x, y);
+        BitSet horizontal = world.getHorizontalWallBits();
+        for (int i = horizontal.nextSetBit(0); i >= 0; i = horizontal.nextSetBit(i + 1)) {
+            resized.addWall(i % worldWidth, i / worldWidth, false);
+        }
+        int[] counts = world.getBeeperCounts();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                resized.setBeeperCount(i % worldWidth, i / worldWidth, counts[i]);
             }
         }
-        
-        getChildren().add(grid);
+        world = resized;
+        worldWidth = width;
+        worldHeight = height;
+        editLog.clear();
+        updateUndoButtons();
+        layoutCanvas();
     }
-    
-    private Pane createCell(int x, int y) {
-        Pane cell = new Pane();
-        cell.setPrefSize(CELL_SIZE, CELL_SIZE);
-        cell.setStyle("-fx-background-color: white; -fx-border-color: lightgray;");
-        
-        cell.getProperties().put("logicalX", x);
-        cell.getProperties().put("logicalY", y);
-        
-        cell.setOnMouseClicked(e -> {
-            String tool = (String) toolGroup.getSelectedToggle().getUserData();
-            if (e.getButton() == MouseButton.PRIMARY) {
-                int logicalX = (int) cell.getProperties().get("logicalX");
-                int logicalY = (int) cell.getProperties().get("logicalY");
-                handleCellClick(cell, logicalX, logicalY, tool, e);
-            }
-        });
-        
-        return cell;
+
+    /**
+     * Sizes the canvas for the current world and redraws everything.
+     */
+    private void layoutCanvas() {
+        int largest = Math.max(worldWidth, worldHeight);
+        cellSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, TARGET_CANVAS_SIZE / largest));
+        canvas.setWidth(worldWidth * cellSize + 1);
+        canvas.setHeight(worldHeight * cellSize + 1);
+        reachability = new ReachabilityAnalyzer(world);
+        reachable = robotOnGrid() ? reachability.reachableFrom(robot.getX(), robot.getY()) : new BitSet();
+        clearChanges();
+        draw(0, 0, worldWidth - 1, worldHeight - 1);
     }
-    
-    private void handleCellClick(Pane cell, int x, int y, String tool, MouseEvent e) {
+
+    /**
+     * @return true if there is a robot and it is inside the current grid
+     */
+    private boolean robotOnGrid() {
+        return robot != null && isInside(robot.getX(), robot.getY());
+    }
+
+    private boolean isInside(int x, int y) {
+        return x >= 0 && x < worldWidth && y >= 0 && y < worldHeight;
+    }
+
+    private int cellX(MouseEvent e) {
+        return Math.max(0, Math.min(worldWidth - 1, (int) (e.getX() / cellSize)));
+    }
+
+    private int cellY(MouseEvent e) {
+        return Math.max(0, Math.min(worldHeight - 1, worldHeight - 1 - (int) (e.getY() / cellSize)));
+    }
+
+    private void startDrag(MouseEvent e) {
+        if (e.getButton() != MouseButton.PRIMARY) {
+            return;
+        }
+        dragStartX = cellX(e);
+        dragStartY = cellY(e);
+        updateDrag(e);
+        selection.setVisible(true);
+    }
+
+    private void updateDrag(MouseEvent e) {
+        int minX = Math.min(dragStartX, cellX(e));
+        int maxX = Math.max(dragStartX, cellX(e));
+        int minY = Math.min(dragStartY, cellY(e));
+        int maxY = Math.max(dragStartY, cellY(e));
+        selection.setX(minX * cellSize);
+        selection.setY((worldHeight - 1 - maxY) * cellSize);
+        selection.setWidth((maxX - minX + 1) * cellSize);
+        selection.setHeight((maxY - minY + 1) * cellSize);
+    }
+
+    private void finishDrag(MouseEvent e) {
+        if (e.getButton() != MouseButton.PRIMARY || !selection.isVisible()) {
+            return;
+        }
+        selection.setVisible(false);
+        String tool = (String) toolGroup.getSelectedToggle().getUserData();
+        handleDrag(tool, dragStartX, dragStartY, cellX(e), cellY(e));
+    }
+
+    /**
+     * Applies a tool to the cells between where the mouse was pressed and released.
+     * A click is a drag that starts and ends in the same cell.
+     */
+    private void handleDrag(String tool, int startX, int startY, int endX, int endY) {
+        boolean click = startX == endX && startY == endY;
+        int minX = Math.min(startX, endX);
+        int maxX = Math.max(startX, endX);
+        int minY = Math.min(startY, endY);
+        int maxY = Math.max(startY, endY);
         switch (tool) {
             case "HORIZONTAL_WALL":
-                toggleWall(cell, x, y, false);
+                if (click) {
+                    toggleWall(startX, startY, false);
+                } else {
+                    paintWalls(minX, startY, maxX, startY, false);
+                }
                 break;
             case "VERTICAL_WALL":
-                toggleWall(cell, x, y, true);
+                if (click) {
+                    toggleWall(startX, startY, true);
+                } else {
+                    paintWalls(startX, minY, startX, maxY, true);
+                }
+                break;
+            case "RECTANGLE":
+                paintRectangle(minX, minY, maxX, maxY);
                 break;
             case "BEEPER":
-                toggleBeeper(cell, x, y);
+                if (click) {
+                    toggleBeeper(startX, startY);
+                } else {
+                    fillBeepers(minX, minY, maxX, maxY, beeperCountSpinner.getValue());
+                }
                 break;
             case "ROBOT":
-                placeRobot(cell, x, y);
+                placeRobot(endX, endY);
                 break;
             case "ERASE":
-                eraseCell(cell, x, y);
+                erase(minX, minY, maxX, maxY);
                 break;
         }
     }
     
-    private void toggleWall(Pane cell, int x, int y, boolean isVertical) {
-        Wall wall = new Wall(x, y, isVertical);
-        Wall existingWall = walls.stream()
-            .filter(w -> w.getX() == x && w.getY() == y && w.isVertical() == isVertical)
-            .findFirst()
-            .orElse(null);
-            
-        if (existingWall != null) {
-            walls.remove(existingWall);
-            removeWallFromCell(cell);
+    private void toggleWall(int x, int y, boolean isVertical) {
+        boolean present = !world.hasWall(x, y, isVertical);
+        record(EditLog.encode(present ? ADD_WALL : REMOVE_WALL, x, y, isVertical ? 1 : 0));
+        refresh();
+    }
+
+    private void toggleBeeper(int x, int y) {
+        int count = world.getBeeperCount(x, y);
+        if (count > 0) {
+            record(EditLog.encode(REMOVE_BEEPER, x, y, count));
         } else {
-            walls.add(wall);
-            addWallToCell(cell, isVertical);
+            record(EditLog.encode(ADD_BEEPER, x, y, beeperCountSpinner.getValue()));
         }
+        refresh();
     }
-    
-    private void addWallToCell(Pane cell, boolean isVertical) {
-        Rectangle wall = new Rectangle();
-        if (isVertical) {
-            wall.setWidth(4);
-            wall.setHeight(CELL_SIZE);
-            wall.setX(0);
-            wall.setY(0);
-        } else {
-            wall.setWidth(CELL_SIZE);
-            wall.setHeight(4);
-            wall.setX(0);
-            wall.setY(CELL_SIZE - 2);
+
+    private void placeRobot(int x, int y) {
+        record(EditLog.encode(MOVE_ROBOT, x, y, robotArgument(robot, Robot.Direction.EAST)));
+        refresh();
+    }
+
+    /**
+     * Adds walls of one orientation to every cell in a range, as one undo step.
+     */
+    private void paintWalls(int minX, int minY, int maxX, int maxY, boolean isVertical) {
+        editLog.beginGroup();
+        try {
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    addWall(x, y, isVertical);
+                }
+            }
+        } finally {
+            endGroup();
         }
-        wall.setFill(Color.BLACK);
-        cell.getChildren().add(wall);
+        refresh();
     }
-    
-    private void removeWallFromCell(Pane cell) {
-        cell.getChildren().removeIf(node -> node instanceof Rectangle);
+
+    /**
+     * Walls in a rectangle of cells, as one undo step.
+     */
+    private void paintRectangle(int minX, int minY, int maxX, int maxY) {
+        editLog.beginGroup();
+        try {
+            for (int x = minX; x <= maxX; x++) {
+                addWall(x, minY, false);
+                addWall(x, maxY + 1, false);
+            }
+            for (int y = minY; y <= maxY; y++) {
+                addWall(minX, y, true);
+                addWall(maxX + 1, y, true);
+            }
+        } finally {
+            endGroup();
+        }
+        refresh();
     }
-    
-    private void toggleBeeper(Pane cell, int x, int y) {
-        Beeper beeper = new Beeper(x, y, 1);
-        Beeper existingBeeper = beepers.stream()
-            .filter(b -> b.getX() == x && b.getY() == y)
-            .findFirst()
-            .orElse(null);
-            
-        if (existingBeeper != null) {
-            beepers.remove(existingBeeper);
-            cell.getChildren().removeIf(node -> node instanceof Circle);
+
+    private void addWall(int x, int y, boolean isVertical) {
+        if (!world.hasWall(x, y, isVertical)) {
+            record(EditLog.encode(ADD_WALL, x, y, isVertical ? 1 : 0));
+        }
+    }
+
+    /**
+     * Sets every cell in a rectangle to the given number of beepers, as one undo step.
+     */
+    private void fillBeepers(int minX, int minY, int maxX, int maxY, int count) {
+        editLog.beginGroup();
+        try {
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int previous = world.getBeeperCount(x, y);
+                    if (previous == count) {
+                        continue;
+                    }
+                    if (previous > 0) {
+                        record(EditLog.encode(REMOVE_BEEPER, x, y, previous));
+                    }
+                    record(EditLog.encode(ADD_BEEPER, x, y, count));
+                }
+            }
+        } finally {
+            endGroup();
+        }
+        refresh();
+    }
+
+    /**
+     * Clears a rectangle of cells: the walls on their south and west edges, their
+     * beepers, and the robot if it stands there. Recorded as one undo step.
+     */
+    private void erase(int minX, int minY, int maxX, int maxY) {
+        editLog.beginGroup();
+        try {
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    for (boolean isVertical : new boolean[] {false, true}) {
+                        if (world.hasWall(x, y, isVertical)) {
+                            record(EditLog.encode(REMOVE_WALL, x, y, isVertical ? 1 : 0));
+                        }
+                    }
+                    int count = world.getBeeperCount(x, y);
+                    if (count > 0) {
+                        record(EditLog.encode(REMOVE_BEEPER, x, y, count));
+                    }
+                }
+            }
+            if (robot != null && robot.getX() >= minX && robot.getX() <= maxX
+                    && robot.getY() >= minY && robot.getY() <= maxY) {
+                record(EditLog.encode(REMOVE_ROBOT, robot.getX(), robot.getY(), robot.getDirection().ordinal()));
+            }
+        } finally {
+            endGroup();
+        }
+        refresh();
+    }
+
+    /**
+     * Replaces every wall with a new maze covering the whole world, as one undo step.
+     */
+    private void generateMaze() {
+        World maze = new MazeGenerator().generate(worldWidth, worldHeight);
+        editLog.beginGroup();
+        try {
+            for (int y = 0; y <= worldHeight; y++) {
+                for (int x = 0; x <= worldWidth; x++) {
+                    for (boolean isVertical : new boolean[] {false, true}) {
+                        boolean wanted = maze.hasWall(x, y, isVertical);
+                        if (wanted != world.hasWall(x, y, isVertical)) {
+                            record(EditLog.encode(wanted ? ADD_WALL : REMOVE_WALL, x, y, isVertical ? 1 : 0));
+                        }
+                    }
+                }
+            }
+        } finally {
+            endGroup();
+        }
+        refresh();
+    }
+
+    /**
+     * Ends a bulk edit. One too large for the history cleared it, which the user is told,
+     * since undo would otherwise stop without taking back the whole edit.
+     */
+    private void endGroup() {
+        if (!editLog.endGroup()) {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Undo History Cleared");
+            alert.setHeaderText(null);
+            alert.setContentText("This edit changed too many cells to be undone, so the undo history has been cleared.");
+            alert.show();
+        }
+    }
+
+    /**
+     * Applies a new edit and adds it to the undo history. The canvas is updated by
+     * the next refresh().
+     */
+    private void record(long command) {
+        apply(command, true);
+        editLog.record(command);
+    }
+
+    public void undo() {
+        editLog.undo(command -> apply(command, false));
+        refresh();
+    }
+
+    public void redo() {
+        editLog.redo(command -> apply(command, true));
+        refresh();
+    }
+
+    private void updateUndoButtons() {
+        undoButton.setDisable(!editLog.canUndo());
+        redoButton.setDisable(!editLog.canRedo());
+    }
+
+    /**
+     * Packs the robot being replaced, and the direction of the new one, into a
+     * MOVE_ROBOT argument: new direction (2 bits), old direction (2), old x (13),
+     * old y (13), and a flag for whether there was an old robot.
+     */
+    private static long robotArgument(Robot previous, Robot.Direction direction) {
+        long argument = direction.ordinal();
+        if (previous != null) {
+            argument |= (long) previous.getDirection().ordinal() << 2;
+            argument |= (long) previous.getX() << 4;
+            argument |= (long) previous.getY() << 17;
+            argument |= 1L << 30;
+        }
+        return argument;
+    }
+
+    /**
+     * Performs a recorded command, or its reverse, on the model only.
+     * @param command The command from the edit log
+     * @param forward True to perform it, false to undo it
+     */
+    private void apply(long command, boolean forward) {
+        int x = EditLog.x(command);
+        int y = EditLog.y(command);
+        long argument = EditLog.argument(command);
+        Robot.Direction[] directions = Robot.Direction.values();
+        switch (EditLog.op(command)) {
+            case ADD_WALL -> setWall(x, y, argument == 1, forward);
+            case REMOVE_WALL -> setWall(x, y, argument == 1, !forward);
+            case ADD_BEEPER -> setBeeper(x, y, forward ? (int) argument : 0);
+            case REMOVE_BEEPER -> setBeeper(x, y, forward ? 0 : (int) argument);
+            case MOVE_ROBOT -> {
+                if (forward) {
+                    setRobot(new Robot(x, y, directions[(int) (argument & 3)]));
+                } else if ((argument & (1L << 30)) != 0) {
+                    setRobot(new Robot((int) (argument >>> 4) & EditLog.MAX_COORDINATE,
+                        (int) (argument >>> 17) & EditLog.MAX_COORDINATE, directions[(int) (argument >>> 2) & 3]));
+                } else {
+                    setRobot(null);
+                }
+            }
+            case REMOVE_ROBOT -> setRobot(forward ? null : new Robot(x, y, directions[(int) argument]));
+            default -> throw new IllegalStateException("Unknown edit command " + EditLog.op(command));
+        }
+    }
+
+    private void setWall(int x, int y, boolean isVertical, boolean present) {
+        if (present) {
+            world.addWall(x, y, isVertical);
         } else {
-            beepers.add(beeper);
-            Circle beeperShape = new Circle(CELL_SIZE/2, CELL_SIZE/2, CELL_SIZE/4, Color.GREEN);
-            cell.getChildren().add(beeperShape);
+            world.removeWall(x, y, isVertical);
         }
+        reachability.setWall(x, y, isVertical, present);
+        changedWalls++;
+        lastWallChange = EditLog.encode(present ? ADD_WALL : REMOVE_WALL, x, y, isVertical ? 1 : 0);
+        // A wall is drawn on the edge it shares with the cell to the west or south
+        markDirty(isVertical ? x - 1 : x, isVertical ? y : y - 1);
+        markDirty(x, y);
     }
-    
-    private void placeRobot(Pane cell, int x, int y) {
+
+    /**
+     * Sets the beepers on a cell; a count of 0 removes them.
+     */
+    private void setBeeper(int x, int y, int count) {
+        world.setBeeperCount(x, y, count);
+        markDirty(x, y);
+    }
+
+    private void setRobot(Robot newRobot) {
         if (robot != null) {
-            grid.getChildren().stream()
-                .filter(node -> node instanceof Pane)
-                .map(node -> (Pane) node)
-                .filter(pane -> pane.getChildren().stream().anyMatch(child -> child instanceof Polygon))
-                .findFirst()
-                .ifPresent(oldCell -> oldCell.getChildren().removeIf(node -> node instanceof Polygon));
+            markDirty(robot.getX(), robot.getY());
         }
-        
-        robot = new Robot(x, y, Robot.Direction.EAST);
-        
-        Polygon robotShape = new Polygon();
-        robotShape.getPoints().addAll(
-            CELL_SIZE * 0.2, CELL_SIZE * 0.2,
-            CELL_SIZE * 0.8, CELL_SIZE * 0.5,
-            CELL_SIZE * 0.2, CELL_SIZE * 0.8
-        );
-        robotShape.setFill(Color.BLUE);
-        
-        cell.getChildren().add(robotShape);
+        robot = newRobot;
+        if (robot != null) {
+            markDirty(robot.getX(), robot.getY());
+        }
+        robotChanged = true;
     }
-    
-    private void eraseCell(Pane cell, int x, int y) {
-        walls.removeIf(w -> w.getX() == x && w.getY() == y);
-        beepers.removeIf(b -> b.getX() == x && b.getY() == y);
-        if (robot != null && robot.getX() == x && robot.getY() == y) {
-            robot = null;
+
+    private void markDirty(int x, int y) {
+        dirtyMinX = Math.min(dirtyMinX, x);
+        dirtyMinY = Math.min(dirtyMinY, y);
+        dirtyMaxX = Math.max(dirtyMaxX, x);
+        dirtyMaxY = Math.max(dirtyMaxY, y);
+    }
+
+    private void clearChanges() {
+        dirtyMinX = Integer.MAX_VALUE;
+        dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = Integer.MIN_VALUE;
+        dirtyMaxY = Integer.MIN_VALUE;
+        changedWalls = 0;
+        robotChanged = false;
+    }
+
+    /**
+     * Brings reachability and the canvas up to date after one or more applied edits.
+     * A single wall change updates reachability incrementally; anything else refills
+     * from the robot once. Only the changed cells are redrawn unless the shading moved.
+     */
+    private void refresh() {
+        BitSet updated;
+        if (!robotOnGrid()) {
+            updated = new BitSet();
+        } else if (changedWalls == 1 && !robotChanged) {
+            updated = reachability.updateWall(reachable, robot.getX(), robot.getY(), EditLog.x(lastWallChange),
+                EditLog.y(lastWallChange), EditLog.argument(lastWallChange) == 1, EditLog.op(lastWallChange) == ADD_WALL);
+        } else if (changedWalls > 0 || robotChanged) {
+            updated = reachability.reachableFrom(robot.getX(), robot.getY());
+        } else {
+            updated = reachable;
+        }
+
+        boolean shadingChanged = robotChanged || !updated.equals(reachable);
+        reachable = updated;
+        if (shadingChanged) {
+            draw(0, 0, worldWidth - 1, worldHeight - 1);
+        } else if (dirtyMinX <= dirtyMaxX) {
+            draw(dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY);
+        }
+        clearChanges();
+        updateUndoButtons();
+    }
+
+    /**
+     * Redraws a rectangle of cells, plus a one cell border so walls and shapes that
+     * overlap the edge are not cut off.
+     */
+    private void draw(int minX, int minY, int maxX, int maxY) {
+        minX = Math.max(0, minX - 1);
+        minY = Math.max(0, minY - 1);
+        maxX = Math.min(worldWidth - 1, maxX + 1);
+        maxY = Math.min(worldHeight - 1, maxY + 1);
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+        double left = minX * cellSize;
+        double top = (worldHeight - 1 - maxY) * cellSize;
+        double width = (maxX - minX + 1) * cellSize + 1;
+        double height = (maxY - minY + 1) * cellSize + 1;
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.save();
+        gc.beginPath();
+        gc.rect(left, top, width, height);
+        gc.clip();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(left, top, width, height);
+
+        // Shade the cells the robot cannot reach; without a robot nothing is shaded
+        if (robotOnGrid()) {
+            gc.setFill(UNREACHABLE_CELL_COLOR);
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (!reachable.get(y * worldWidth + x)) {
+                        gc.fillRect(x * cellSize, (worldHeight - 1 - y) * cellSize, cellSize, cellSize);
+                    }
+                }
+            }
+        }
+
+        // Grid lines are left out once cells get too small to tell apart
+        if (cellSize >= 6) {
+            gc.setStroke(Color.LIGHTGRAY);
+            gc.setLineWidth(1);
+            for (int x = minX; x <= maxX + 1; x++) {
+                gc.strokeLine(x * cellSize + 0.5, top, x * cellSize + 0.5, top + height);
+            }
+            for (int y = minY; y <= maxY + 1; y++) {
+                double lineY = (worldHeight - y) * cellSize + 0.5;
+                gc.strokeLine(left, lineY, left + width, lineY);
+            }
+        }
+
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(Math.max(1, cellSize / 15.0));
+        for (int y = minY; y <= maxY + 1; y++) {
+            for (int x = minX; x <= maxX + 1; x++) {
+                double cellLeft = x * cellSize;
+                double cellBottom = (worldHeight - y) * cellSize;
+                if (y <= maxY && world.hasWall(x, y, true)) {
+                    gc.strokeLine(cellLeft, cellBottom - cellSize, cellLeft, cellBottom);
+                }
+                if (x <= maxX && world.hasWall(x, y, false)) {
+                    gc.strokeLine(cellLeft, cellBottom, cellLeft + cellSize, cellBottom);
+                }
+            }
+        }
+
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                int count = world.getBeeperCount(x, y);
+                if (count == 0) {
+                    continue;
+                }
+                double cellLeft = x * cellSize;
+                double cellTop = (worldHeight - 1 - y) * cellSize;
+                gc.setFill(Color.GREEN);
+                gc.fillOval(cellLeft + cellSize / 4.0, cellTop + cellSize / 4.0, cellSize / 2.0, cellSize / 2.0);
+                if (count > 1 && cellSize >= 20) {
+                    gc.setFill(Color.BLACK);
+                    gc.fillText(String.valueOf(count), cellLeft + cellSize / 2.0, cellTop + cellSize / 2.0);
+                }
+            }
+        }
+
+        if (robotOnGrid() && robot.getX() >= minX && robot.getX() <= maxX
+                && robot.getY() >= minY && robot.getY() <= maxY) {
+            double cellLeft = robot.getX() * cellSize;
+            double cellTop = (worldHeight - 1 - robot.getY()) * cellSize;
+            gc.setFill(Color.BLUE);
+            gc.fillPolygon(
+                new double[] {cellLeft + cellSize * 0.2, cellLeft + cellSize * 0.8, cellLeft + cellSize * 0.2},
+                new double[] {cellTop + cellSize * 0.2, cellTop + cellSize * 0.5, cellTop + cellSize * 0.8},
+                3);
         }
-        cell.getChildren().clear();
+        gc.restore();
     }
     
     public void setOnSave(Consumer<WorldEditor> callback) {
@@ -288,4 +867,4 @@ public class WorldEditor extends VBox {
             onSave.accept(this);
         }
     }
-} 
\ No newline at end of file
+}
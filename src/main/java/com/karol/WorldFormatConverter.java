@@ -0,0 +1,128 @@
+package com.karol;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+
+/**
+ * Converts assignments between the JSON and binary world formats.
+ * The format of each file is chosen by its extension: BinaryWorldFormat.EXTENSION
+ * for binary, anything else for JSON.
+ *
+ * Usage: java com.karol.WorldFormatConverter &lt;input&gt; &lt;output&gt;
+ */
+public class WorldFormatConverter {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final StreamingWorldLoader JSON_LOADER = new StreamingWorldLoader();
+
+    private WorldFormatConverter() {
+    }
+
+    /**
+     * Reads an assignment in either format.
+     * @param file The file to read
+     * @return the header and the populated world
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public static StreamingWorldLoader.LoadedWorld read(Path file) throws IOException {
+        if (BinaryWorldFormat.isBinaryWorld(file)) {
+            return BinaryWorldFormat.read(file);
+        }
+        return JSON_LOADER.load(file);
+    }
+
+    /**
+     * Writes an assignment in the format matching the file extension.
+     * @param file The file to write
+     * @param header Name, description and robots
+     * @param world Size, walls and beepers
+     * @throws IOException if writing fails
+     */
+    public static void write(Path file, Assignment header, World world) throws IOException {
+        if (BinaryWorldFormat.isBinaryWorld(file)) {
+            BinaryWorldFormat.write(file, header, world);
+        } else {
+            writeJson(file, header, world);
+        }
+    }
+
+    public static void convert(Path input, Path output) throws IOException {
+        StreamingWorldLoader.LoadedWorld loaded = read(input);
+        write(output, loaded.getAssignment(), loaded.getWorld());
+    }
+
+    /**
+     * Writes an assignment as pretty-printed JSON in the same layout as the existing
+     * assignment files, streaming walls and beepers straight from the world.
+     */
+    static void writeJson(Path file, Assignment header, World world) throws IOException {
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(Files.newBufferedWriter(file))) {
+            json.useDefaultPrettyPrinter();
+            json.writeStartObject();
+            if (header.getName() != null) {
+                json.writeStringField("name", header.getName());
+            }
+            if (header.getDescription() != null) {
+                json.writeStringField("description", header.getDescription());
+            }
+            json.writeNumberField("worldWidth", world.getWidth());
+            json.writeNumberField("worldHeight", world.getHeight());
+
+            json.writeArrayFieldStart("initialRobots");
+            for (Robot robot : header.getInitialRobots()) {
+                json.writeStartObject();
+                json.writeNumberField("x", robot.getX());
+                json.writeNumberField("y", robot.getY());
+                json.writeStringField("direction", robot.getDirection().toString());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("walls");
+            writeWalls(json, world.getHorizontalWallBits(), world.getWidth(), false);
+            writeWalls(json, world.getVerticalWallBits(), world.getWidth() + 1, true);
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("beepers");
+            int[] counts = world.getBeeperCounts();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    json.writeStartObject();
+                    json.writeNumberField("x", i % world.getWidth());
+                    json.writeNumberField("y", i / world.getWidth());
+                    json.writeNumberField("count", counts[i]);
+                    json.writeEndObject();
+                }
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    private static void writeWalls(JsonGenerator json, BitSet bits, int rowLength, boolean isVertical) throws IOException {
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            json.writeStartObject();
+            json.writeNumberField("x", i % rowLength);
+            json.writeNumberField("y", i / rowLength);
+            json.writeBooleanField("isVertical", isVertical);
+            json.writeEndObject();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: WorldFormatConverter <input> <output>");
+            System.exit(2);
+        }
+        try {
+            convert(Paths.get(args[0]), Paths.get(args[1]));
+        } catch (IOException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.karol;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+/**
+ * Draws worlds into in-memory images without a display or the JavaFX toolkit.
+ * The picture matches Main.drawWorld(): light gray grid, black walls, green beepers
+ * with their count, and Karol as a blue circle with a white direction arrow.
+ *
+ * A renderer holds no mutable state, so one instance can be shared by many threads.
+ * Run with -Djava.awt.headless=true on machines without a display.
+ */
+public class WorldImageRenderer {
+    public static final int DEFAULT_CELL_SIZE = 50;
+
+    // Same colors as the JavaFX named colors used by Main
+    private static final Color GRID_COLOR = new Color(211, 211, 211);
+    private static final Color WALL_COLOR = Color.BLACK;
+    private static final Color BEEPER_COLOR = new Color(0, 128, 0);
+    private static final Color ROBOT_COLOR = Color.BLUE;
+    private static final Color ARROW_COLOR = Color.WHITE;
+
+    private final int cellSize;
+
+    public WorldImageRenderer() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * @param cellSize Size of one grid cell in pixels; use a small value for thumbnails
+     */
+    public WorldImageRenderer(int cellSize) {
+        if (cellSize < 4) {
+            throw new IllegalArgumentException("Cell size must be at least 4 pixels");
+        }
+        this.cellSize = cellSize;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Renders a world into a new image.
+     * @param world The world to draw
+     * @param karol The robot to draw, or null to draw only the world
+     * @return an RGB image of world.getWidth() x world.getHeight() cells
+     */
+    public BufferedImage render(World world, Karol karol) {
+        int width = world.getWidth() * cellSize;
+        int height = world.getHeight() * cellSize;
+        BufferedImage image = new BufferedImage(Math.max(1, width + 1), Math.max(1, height + 1), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+
+            drawGrid(g, world);
+            drawWalls(g, world);
+            drawBeepers(g, world);
+            if (karol != null) {
+                drawKarol(g, world, karol);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Renders a world and encodes it as PNG.
+     * @param world The world to draw
+     * @param karol The robot to draw, or null to draw only the world
+     * @return the PNG file contents
+     * @throws IOException if encoding fails
+     */
+    public byte[] renderPng(World world, Karol karol) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(render(world, karol), "png", out)) {
+            throw new IOException("No PNG writer available");
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Renders many robots and their worlds to PNG in parallel.
+     * @param robots The robots to draw; each is drawn in its own world
+     * @return PNG contents in the same order as the input
+     * @throws UncheckedIOException if any image fails to encode
+     */
+    public List<byte[]> renderPngs(List<Karol> robots) {
+        return robots.parallelStream()
+            .map(karol -> {
+                try {
+                    return renderPng(karol.getWorld(), karol);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })
+            .toList();
+    }
+
+    private void drawGrid(Graphics2D g, World world) {
+        g.setColor(GRID_COLOR);
+        g.setStroke(new BasicStroke(1));
+        for (int x = 0; x <= world.getWidth(); x++) {
+            g.drawLine(x * cellSize, 0, x * cellSize, world.getHeight() * cellSize);
+        }
+        for (int y = 0; y <= world.getHeight(); y++) {
+            g.drawLine(0, y * cellSize, world.getWidth() * cellSize, y * cellSize);
+        }
+    }
+
+    private void drawWalls(Graphics2D g, World world) {
+        g.setColor(WALL_COLOR);
+        g.setStroke(new BasicStroke(2));
+        for (Wall wall : world.getWalls()) {
+            if (wall.isVertical()) {
+                g.drawLine(wall.getX() * cellSize,
+                           (world.getHeight() - wall.getY() - 1) * cellSize,
+                           wall.getX() * cellSize,
+                           (world.getHeight() - wall.getY()) * cellSize);
+            } else {
+                g.drawLine(wall.getX() * cellSize,
+                           (world.getHeight() - wall.getY()) * cellSize,
+                           (wall.getX() + 1) * cellSize,
+                           (world.getHeight() - wall.getY()) * cellSize);
+            }
+        }
+    }
+
+    private void drawBeepers(Graphics2D g, World world) {
+        for (Beeper beeper : world.getBeepers()) {
+            int left = beeper.getX() * cellSize;
+            int top = (world.getHeight() - beeper.getY() - 1) * cellSize;
+            g.setColor(BEEPER_COLOR);
+            g.fillOval(left + cellSize / 4, top + cellSize / 4, cellSize / 2, cellSize / 2);
+            // Draw beeper count
+            g.setColor(Color.BLACK);
+            g.drawString(String.valueOf(beeper.getCount()), left + cellSize / 2, top + cellSize / 2);
+        }
+    }
+
+    private void drawKarol(Graphics2D g, World world, Karol karol) {
+        int left = karol.getX() * cellSize;
+        int top = (world.getHeight() - karol.getY() - 1) * cellSize;
+        g.setColor(ROBOT_COLOR);
+        g.fillOval(left + cellSize / 4, top + cellSize / 4, cellSize / 2, cellSize / 2);
+
+        // Draw direction indicator
+        int centerX = left + cellSize / 2;
+        int centerY = top + cellSize / 2;
+        int arrowLength = cellSize / 3;
+        int arrowX = centerX;
+        int arrowY = centerY;
+        switch (karol.getDirection()) {
+            case NORTH -> arrowY -= arrowLength;
+            case EAST -> arrowX += arrowLength;
+            case SOUTH -> arrowY += arrowLength;
+            case WEST -> arrowX -= arrowLength;
+        }
+        g.setColor(ARROW_COLOR);
+        g.drawLine(centerX, centerY, arrowX, arrowY);
+    }
+}
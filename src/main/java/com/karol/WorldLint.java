@@ -0,0 +1,94 @@
+package com.karol;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks every assignment in a directory for problems an author would want to know
+ * about before students see them: everything WorldValidator reports, plus parts of the
+ * world the robot can never get to. Files are read in parallel.
+ *
+ * Usage: java com.karol.WorldLint [assignments directory]
+ * The exit code is 1 if any file has an error or warning.
+ */
+public class WorldLint {
+    private WorldLint() {
+    }
+
+    /**
+     * Checks one assignment.
+     * @param loaded The assignment and its world
+     * @return one line per finding; empty if the assignment is fine
+     */
+    public static List<String> lint(StreamingWorldLoader.LoadedWorld loaded) {
+        Assignment assignment = loaded.getAssignment();
+        World world = loaded.getWorld();
+        Robot robot = assignment.getInitialRobots().isEmpty() ? null : assignment.getInitialRobots().get(0);
+
+        List<String> findings = new ArrayList<>();
+        for (WorldValidator.Problem problem : WorldValidator.validate(
+                world.getWidth(), world.getHeight(), robot, world.getWalls(), world.getBeepers())) {
+            findings.add(problem.toString());
+        }
+        if (robot != null && robot.getX() >= 0 && robot.getX() < world.getWidth()
+                && robot.getY() >= 0 && robot.getY() < world.getHeight()) {
+            ReachabilityAnalyzer.Report report = new ReachabilityAnalyzer(world)
+                .analyze(robot.getX(), robot.getY(), world.getBeepers());
+            for (ReachabilityAnalyzer.Region region : report.getRegions()) {
+                findings.add("INFO: " + region.getCellCount() + " cell(s) starting at (" + region.getX() + ", "
+                    + region.getY() + ") cannot be reached by the robot");
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * Checks every assignment file below a directory.
+     * @return the findings per file, in file order; files without findings are left out
+     * @throws IOException if the directory cannot be walked
+     */
+    public static List<String> lintDirectory(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths
+                .filter(Files::isRegularFile)
+                .filter(AssignmentCatalog::isAssignmentFile)
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        List<String> report = new ArrayList<>();
+        List<AssignmentImporter.Result<List<String>>> results = new AssignmentImporter().importFiles(
+            files, file -> lint(WorldFormatConverter.read(file)));
+        for (AssignmentImporter.Result<List<String>> result : results) {
+            String name = directory.relativize(result.getFile()).toString();
+            if (!result.isSuccess()) {
+                report.add(name + ": ERROR: " + result.getError().getMessage());
+                continue;
+            }
+            for (String finding : result.getValue()) {
+                report.add(name + ": " + finding);
+            }
+        }
+        return report;
+    }
+
+    public static void main(String[] args) {
+        Path directory = Paths.get(args.length > 0 ? args[0] : AssignmentRepository.SOURCE_DIRECTORY);
+        try {
+            List<String> report = lintDirectory(directory);
+            report.forEach(System.out::println);
+            boolean failed = report.stream().anyMatch(line -> line.contains(": ERROR: ") || line.contains(": WARNING: "));
+            System.exit(failed ? 1 : 0);
+        } catch (IOException e) {
+            System.err.println("Lint failed: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+}
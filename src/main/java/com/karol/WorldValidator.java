@@ -0,0 +1,122 @@
+package com.karol;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks a world before it is saved.
+ *
+ * Errors make the world unusable: a robot, wall or beeper outside the world, or the
+ * same wall listed twice. Warnings point at worlds that load fine but are probably
+ * not what the author meant, such as a beeper the robot can never reach
+ * (see ReachabilityAnalyzer).
+ */
+public class WorldValidator {
+    /**
+     * One finding of the validator.
+     */
+    public static class Problem {
+        public enum Severity {
+            ERROR, WARNING
+        }
+
+        private final Severity severity;
+        private final String message;
+
+        Problem(Severity severity, String message) {
+            this.severity = severity;
+            this.message = message;
+        }
+
+        public Severity getSeverity() {
+            return severity;
+        }
+
+        public boolean isError() {
+            return severity == Severity.ERROR;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return severity + ": " + message;
+        }
+    }
+
+    private WorldValidator() {
+    }
+
+    /**
+     * Validates a world described by its parts, as they come from the editor or a file.
+     * @param width World width
+     * @param height World height
+     * @param robot The robot's start, or null if there is none
+     * @param walls Walls, possibly containing duplicates
+     * @param beepers Beepers, possibly outside the world
+     * @return all problems found, errors first; empty if the world is fine
+     */
+    public static List<Problem> validate(int width, int height, Robot robot, List<Wall> walls, List<Beeper> beepers) {
+        List<Problem> errors = new ArrayList<>();
+        List<Problem> warnings = new ArrayList<>();
+
+        if (robot == null) {
+            warnings.add(new Problem(Problem.Severity.WARNING, "No robot has been placed"));
+        } else if (!inside(width, height, robot.getX(), robot.getY())) {
+            errors.add(new Problem(Problem.Severity.ERROR,
+                "Robot at " + position(robot.getX(), robot.getY()) + " is outside the world"));
+        }
+
+        Set<Long> seenVerticalWalls = new HashSet<>();
+        Set<Long> seenHorizontalWalls = new HashSet<>();
+        for (Wall wall : walls) {
+            String description = (wall.isVertical() ? "Vertical" : "Horizontal") + " wall at "
+                + position(wall.getX(), wall.getY());
+            boolean inBounds = wall.isVertical()
+                ? wall.getX() >= 0 && wall.getX() <= width && wall.getY() >= 0 && wall.getY() < height
+                : wall.getX() >= 0 && wall.getX() < width && wall.getY() >= 0 && wall.getY() <= height;
+            if (!inBounds) {
+                errors.add(new Problem(Problem.Severity.ERROR, description + " is outside the world"));
+            }
+            // Mask y so a negative coordinate cannot spill into the x half
+            long key = ((long) wall.getX() << 32) | (wall.getY() & 0xffffffffL);
+            if (!(wall.isVertical() ? seenVerticalWalls : seenHorizontalWalls).add(key)) {
+                errors.add(new Problem(Problem.Severity.ERROR, description + " is listed more than once"));
+            }
+        }
+
+        for (Beeper beeper : beepers) {
+            if (!inside(width, height, beeper.getX(), beeper.getY())) {
+                errors.add(new Problem(Problem.Severity.ERROR,
+                    "Beeper at " + position(beeper.getX(), beeper.getY()) + " is outside the world"));
+            }
+        }
+
+        if (robot != null && inside(width, height, robot.getX(), robot.getY())) {
+            World world = new World(width, height);
+            for (Wall wall : walls) {
+                world.addWall(wall);
+            }
+            ReachabilityAnalyzer.Report report = new ReachabilityAnalyzer(world).analyze(robot.getX(), robot.getY(), beepers);
+            for (Beeper beeper : report.getUnreachableBeepers()) {
+                warnings.add(new Problem(Problem.Severity.WARNING,
+                    "Beeper at " + position(beeper.getX(), beeper.getY()) + " cannot be reached by the robot"));
+            }
+        }
+
+        errors.addAll(warnings);
+        return errors;
+    }
+
+    private static boolean inside(int width, int height, int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    private static String position(int x, int y) {
+        return "(" + x + ", " + y + ")";
+    }
+}
@@ -0,0 +1,105 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssignmentCatalogTest {
+    @TempDir
+    Path directory;
+
+    private Path writeAssignment(String fileName, String name, int width, int height) throws Exception {
+        Path file = directory.resolve(fileName);
+        Files.writeString(file, """
+            {
+              "name" : "%s",
+              "description" : "test",
+              "worldWidth" : %d,
+              "worldHeight" : %d,
+              "initialRobots" : [ { "x" : 0, "y" : 0, "direction" : "EAST" } ],
+              "walls" : [ { "x" : 1, "y" : 0, "isVertical" : true } ],
+              "beepers" : [ { "x" : 2, "y" : 0, "count" : 3 } ]
+            }
+            """.formatted(name, width, height));
+        return file;
+    }
+
+    @Test
+    void testCatalogReadsHeaderFields() throws Exception {
+        writeAssignment("b.json", "Second", 4, 3);
+        writeAssignment("a.json", "First", 7, 5);
+        Files.writeString(directory.resolve("broken.json"), "not json");
+
+        AssignmentCatalog catalog = AssignmentCatalog.open(directory);
+
+        assertEquals(2, catalog.getEntries().size(), "Unparseable files should be skipped");
+        assertEquals("First", catalog.getEntries().get(0).getName(), "Entries should be ordered by file");
+        AssignmentCatalog.Entry second = catalog.findByName("Second");
+        assertEquals("b.json", second.getFile());
+        assertEquals(4, second.getWorldWidth());
+        assertEquals(3, second.getWorldHeight());
+        assertEquals(64, second.getContentHash().length(), "Hash should be hex SHA-256");
+        assertTrue(Files.exists(directory.resolve(AssignmentCatalog.INDEX_FILE)), "Index should be persisted");
+    }
+
+    @Test
+    void testReopenOnlyRereadsChangedFiles() throws Exception {
+        writeAssignment("a.json", "First", 7, 5);
+        Path changed = writeAssignment("b.json", "Second", 4, 3);
+        AssignmentCatalog first = AssignmentCatalog.open(directory);
+        String oldHash = first.findByName("Second").getContentHash();
+
+        writeAssignment("b.json", "Renamed", 9, 9);
+        Files.setLastModifiedTime(changed, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        Files.delete(directory.resolve("a.json"));
+
+        AssignmentCatalog reopened = AssignmentCatalog.open(directory);
+        assertNull(reopened.findByName("First"), "Deleted files should drop out of the catalog");
+        assertNull(reopened.findByName("Second"));
+        AssignmentCatalog.Entry renamed = reopened.findByName("Renamed");
+        assertEquals(9, renamed.getWorldWidth());
+        assertNotEquals(oldHash, renamed.getContentHash());
+    }
+
+    @Test
+    void testNamelessWorldUsesFileName() throws Exception {
+        Files.writeString(directory.resolve("maze.json"), "{\"worldWidth\":3,\"worldHeight\":2,\"walls\":[]}");
+
+        AssignmentCatalog catalog = AssignmentCatalog.open(directory);
+        assertEquals(3, catalog.findByName("maze").getWorldWidth());
+    }
+
+    @Test
+    void testConcurrentOpensShareDirectory() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            writeAssignment("world" + i + ".json", "World " + i, 4, 3);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<AssignmentCatalog>> opens = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                opens.add(executor.submit(() -> AssignmentCatalog.open(directory)));
+            }
+            for (Future<AssignmentCatalog> open : opens) {
+                assertEquals(20, open.get().getEntries().size());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")), "Temp files should not be left behind");
+        }
+        assertEquals(20, AssignmentCatalog.open(directory).getEntries().size());
+    }
+}
@@ -0,0 +1,70 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssignmentImporterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testResultsKeepInputOrderAndIsolateErrors() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            files.add(Path.of("file" + i));
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<AssignmentImporter.Result<String>> results = new AssignmentImporter(4).importFiles(files, file -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                // Later files finish first, so ordering has to come from the importer
+                Thread.sleep(100 - Integer.parseInt(file.toString().substring(4)));
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+            if (file.toString().endsWith("7")) {
+                throw new IOException("Broken " + file);
+            }
+            return file.toString().toUpperCase();
+        });
+
+        assertEquals(100, results.size());
+        assertTrue(maxRunning.get() <= 4, "At most 4 files should be read at once, saw " + maxRunning.get());
+        for (int i = 0; i < 100; i++) {
+            AssignmentImporter.Result<String> result = results.get(i);
+            assertEquals(files.get(i), result.getFile());
+            if (i % 10 == 7) {
+                assertFalse(result.isSuccess());
+                assertEquals("Broken file" + i, result.getError().getMessage());
+            } else {
+                assertEquals("FILE" + i, result.getValue());
+            }
+        }
+    }
+
+    @Test
+    void testLoadAllAssignmentsSkipsBrokenFiles() throws Exception {
+        Files.writeString(tempDir.resolve("b.json"), "{ \"name\" : \"B\", \"worldWidth\" : 2, \"worldHeight\" : 2 }");
+        Files.writeString(tempDir.resolve("a.json"), "{ \"name\" : \"A\", \"worldWidth\" : 2, \"worldHeight\" : 2 }");
+        Files.writeString(tempDir.resolve("broken.json"), "{ \"name\" : ");
+
+        AssignmentLoader loader = new AssignmentLoader(AssignmentRepository.forDirectory(tempDir));
+        List<AssignmentImporter.Result<Assignment>> results = loader.importAllAssignments();
+        assertEquals(3, results.size());
+        assertFalse(results.get(2).isSuccess());
+
+        List<Assignment> assignments = loader.loadAllAssignments();
+        assertEquals(List.of("A", "B"), assignments.stream().map(Assignment::getName).toList());
+    }
+}
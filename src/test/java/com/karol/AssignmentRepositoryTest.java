@@ -0,0 +1,105 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssignmentRepositoryTest {
+    private static final String SMALL_WORLD = """
+        { "name" : "Small", "worldWidth" : 3, "worldHeight" : 2,
+          "beepers" : [ { "x" : 1, "y" : 1, "count" : 2 } ] }
+        """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCachedWorldIsReusedUntilFileChanges() throws Exception {
+        AssignmentRepository repository = AssignmentRepository.forDirectory(tempDir);
+        Path file = tempDir.resolve("small.json");
+        Files.writeString(file, SMALL_WORLD);
+
+        StreamingWorldLoader.LoadedWorld first = repository.load(file);
+        assertSame(first, repository.load(file), "Unchanged file should come from the cache");
+
+        Files.writeString(file, SMALL_WORLD.replace("\"count\" : 2", "\"count\" : 5"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        StreamingWorldLoader.LoadedWorld second = repository.load(file);
+
+        assertNotSame(first, second);
+        assertEquals(5, second.getWorld().getBeeperCount(1, 1));
+
+        repository.invalidate(file);
+        assertNotSame(second, repository.load(file), "Invalidated file should be parsed again");
+    }
+
+    @Test
+    void testLoadsAssignmentsFromJar() throws Exception {
+        Path jar = tempDir.resolve("assignments.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("assignments/"));
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("assignments/small.json"));
+            out.write(SMALL_WORLD.getBytes());
+            out.closeEntry();
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toUri().toURL() }, null)) {
+            AssignmentRepository repository = AssignmentRepository.forClasspath(classLoader, "assignments");
+            assertFalse(repository.isWritable());
+            assertFalse(repository.isWatchable());
+
+            AssignmentLoader loader = new AssignmentLoader(repository);
+            List<Assignment> assignments = loader.loadAllAssignments();
+            assertEquals(1, assignments.size());
+            assertEquals("Small", assignments.get(0).getName());
+
+            AssignmentCatalog catalog = loader.loadCatalog();
+            AssignmentCatalog.Entry entry = catalog.findByName("Small");
+            assertNotNull(entry);
+            assertEquals(2, loader.loadWorld(catalog.resolve(entry)).getWorld().getBeeperCount(1, 1));
+            catalog.save();
+        }
+    }
+
+    @Test
+    void testIgnoresIndexPackagedInJar() throws Exception {
+        Path jar = tempDir.resolve("assignments.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("assignments/"));
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("assignments/small.json"));
+            out.write(SMALL_WORLD.getBytes());
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("assignments/catalog.index"));
+            out.write("{ \"version\" : 1, \"entries\" : [ ] }".getBytes());
+            out.closeEntry();
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toUri().toURL() }, null)) {
+            AssignmentLoader loader = new AssignmentLoader(AssignmentRepository.forClasspath(classLoader, "assignments"));
+            AssignmentCatalog catalog = loader.loadCatalog();
+            assertEquals(1, catalog.getEntries().size());
+            assertNotNull(catalog.findByName("Small"));
+            catalog.save();
+        }
+    }
+
+    @Test
+    void testSolutionStoreWritesInBackground() throws Exception {
+        try (SolutionStore store = new SolutionStore(tempDir.resolve("solutions"))) {
+            assertNull(store.load("Problem 1"));
+            store.save("Problem 1", "class A {}").get();
+            assertEquals("class A {}", store.load("Problem 1"));
+            assertEquals("problem_1_solution.java", store.solutionFile("Problem 1").getFileName().toString());
+        }
+    }
+}
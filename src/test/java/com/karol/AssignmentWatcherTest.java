@@ -0,0 +1,52 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssignmentWatcherTest {
+    @TempDir
+    Path directory;
+
+    private static String assignment(String name) {
+        return "{\"name\":\"" + name + "\",\"worldWidth\":3,\"worldHeight\":3}";
+    }
+
+    @Test
+    void testCreateModifyDeleteAreApplied() throws Exception {
+        AssignmentCatalog catalog = AssignmentCatalog.open(directory);
+        BlockingQueue<String> changes = new LinkedBlockingQueue<>();
+
+        try (AssignmentWatcher watcher = new AssignmentWatcher(catalog, new AssignmentWatcher.Listener() {
+            @Override
+            public void assignmentChanged(AssignmentCatalog.Entry oldEntry, AssignmentCatalog.Entry newEntry) {
+                changes.add((oldEntry == null ? "-" : oldEntry.getName()) + ">" + (newEntry == null ? "-" : newEntry.getName()));
+            }
+
+            @Override
+            public void catalogReloaded() {
+                changes.add("reload");
+            }
+        }, 50)) {
+            watcher.start();
+
+            Path file = directory.resolve("one.json");
+            Files.writeString(file, assignment("One"));
+            assertEquals("->One", changes.poll(10, TimeUnit.SECONDS));
+            assertNotNull(catalog.findByName("One"));
+
+            Files.writeString(file, assignment("Renamed"));
+            assertEquals("One>Renamed", changes.poll(10, TimeUnit.SECONDS));
+            assertNull(catalog.findByName("One"));
+
+            Files.delete(file);
+            assertEquals("Renamed>-", changes.poll(10, TimeUnit.SECONDS));
+            assertTrue(catalog.getEntries().isEmpty());
+        }
+    }
+}
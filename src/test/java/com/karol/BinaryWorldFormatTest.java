@@ -0,0 +1,84 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryWorldFormatTest {
+    @TempDir
+    Path directory;
+
+    private static StreamingWorldLoader.LoadedWorld roundTrip(Assignment header, World world) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryWorldFormat.write(Channels.newChannel(out), header, world);
+        return BinaryWorldFormat.read(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void testRoundTripKeepsEverything() throws Exception {
+        World world = new World(30, 20);
+        for (int x = 0; x < 30; x++) {
+            world.addWall(x, 10, false);
+        }
+        world.addWall(30, 19, true);
+        world.addWall(0, 0, true);
+        world.addBeepers(0, 0, 1);
+        world.addBeepers(29, 19, 500);
+        Assignment header = new Assignment("Maze ü", null, 30, 20);
+        header.addRobot(new Robot(3, 4, Robot.Direction.WEST));
+
+        StreamingWorldLoader.LoadedWorld loaded = roundTrip(header, world);
+        World copy = loaded.getWorld();
+
+        assertEquals("Maze ü", loaded.getAssignment().getName());
+        assertNull(loaded.getAssignment().getDescription());
+        assertEquals(Robot.Direction.WEST, loaded.getAssignment().getInitialRobots().get(0).getDirection());
+        assertEquals(world.getWallCount(), copy.getWallCount());
+        assertTrue(copy.hasWall(17, 10, false));
+        assertTrue(copy.hasWall(30, 19, true));
+        assertTrue(copy.hasWall(0, 0, true));
+        assertFalse(copy.hasWall(1, 0, true));
+        assertEquals(1, copy.getBeeperCount(0, 0));
+        assertEquals(500, copy.getBeeperCount(29, 19));
+        assertEquals(2, copy.getBeepers().size());
+    }
+
+    @Test
+    void testConvertJsonToBinaryAndBack() throws Exception {
+        Path json = Path.of("src/main/resources/assignments/problem_1.json");
+        Path binary = directory.resolve("problem_1" + BinaryWorldFormat.EXTENSION);
+        Path back = directory.resolve("problem_1.json");
+
+        WorldFormatConverter.convert(json, binary);
+        WorldFormatConverter.convert(binary, back);
+
+        assertTrue(Files.size(binary) < Files.size(json) / 10, "Binary file should be much smaller than JSON");
+        Assignment original = new AssignmentLoader().loadAssignment(json.toFile());
+        Assignment converted = new AssignmentLoader().loadAssignment(back.toFile());
+        assertEquals(original.getName(), converted.getName());
+        assertEquals(original.getWalls().size(), converted.getWalls().size());
+        assertEquals(original.getBeepers().size(), converted.getBeepers().size());
+        assertEquals(original.getInitialRobots().get(0).getX(), converted.getInitialRobots().get(0).getX());
+    }
+
+    @Test
+    void testRejectsOtherData() {
+        assertThrows(Exception.class, () ->
+            BinaryWorldFormat.read(Channels.newChannel(new ByteArrayInputStream("{\"name\":1}".getBytes()))));
+    }
+
+    @Test
+    void testRejectsHugeWorldBeforeAllocating() {
+        // Magic, version 1, then width and height of 100000 as varints
+        byte[] data = {'K', 'R', 'L', 'W', 1, (byte) 0xA0, (byte) 0x8D, 0x06, (byte) 0xA0, (byte) 0x8D, 0x06, 0, 0, 0};
+        IOException e = assertThrows(IOException.class, () ->
+            BinaryWorldFormat.read(Channels.newChannel(new ByteArrayInputStream(data))));
+        assertEquals("Invalid world size 100000x100000", e.getMessage());
+    }
+}
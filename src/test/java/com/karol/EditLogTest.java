@@ -0,0 +1,94 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EditLogTest {
+
+    @Test
+    public void testEncodeRoundTrip() {
+        long command = EditLog.encode(5, EditLog.MAX_COORDINATE, 17, (1L << 34) - 1);
+        assertEquals(5, EditLog.op(command));
+        assertEquals(EditLog.MAX_COORDINATE, EditLog.x(command));
+        assertEquals(17, EditLog.y(command));
+        assertEquals((1L << 34) - 1, EditLog.argument(command));
+        assertThrows(IllegalArgumentException.class, () -> EditLog.encode(0, EditLog.MAX_COORDINATE + 1, 0, 0));
+    }
+
+    @Test
+    public void testGroupIsUndoneAndRedoneAsOneStep() {
+        EditLog log = new EditLog();
+        log.record(EditLog.encode(0, 1, 1, 0));
+        log.beginGroup();
+        log.record(EditLog.encode(1, 2, 2, 0));
+        log.record(EditLog.encode(1, 3, 3, 0));
+        log.endGroup();
+
+        List<Integer> undone = new ArrayList<>();
+        assertTrue(log.undo(command -> undone.add(EditLog.x(command))));
+        assertEquals(List.of(3, 2), undone);
+        assertEquals(1, log.getUndoCount());
+
+        List<Integer> redone = new ArrayList<>();
+        assertTrue(log.redo(command -> redone.add(EditLog.x(command))));
+        assertEquals(List.of(2, 3), redone);
+        assertFalse(log.canRedo());
+    }
+
+    @Test
+    public void testRecordingDiscardsRedo() {
+        EditLog log = new EditLog();
+        log.record(EditLog.encode(0, 1, 0, 0));
+        log.record(EditLog.encode(0, 2, 0, 0));
+        log.undo(command -> { });
+        assertTrue(log.canRedo());
+
+        log.record(EditLog.encode(0, 3, 0, 0));
+        assertFalse(log.canRedo());
+        List<Integer> undone = new ArrayList<>();
+        while (log.undo(command -> undone.add(EditLog.x(command)))) {
+        }
+        assertEquals(List.of(3, 1), undone);
+    }
+
+    @Test
+    public void testFullLogDropsOldestStep() {
+        EditLog log = new EditLog(4);
+        log.beginGroup();
+        log.record(EditLog.encode(0, 1, 0, 0));
+        log.record(EditLog.encode(0, 2, 0, 0));
+        log.endGroup();
+        log.record(EditLog.encode(0, 3, 0, 0));
+        log.record(EditLog.encode(0, 4, 0, 0));
+        log.record(EditLog.encode(0, 5, 0, 0));
+
+        // The whole group went, not just its first command
+        assertEquals(3, log.getUndoCount());
+        List<Integer> undone = new ArrayList<>();
+        while (log.undo(command -> undone.add(EditLog.x(command)))) {
+        }
+        assertEquals(List.of(5, 4, 3), undone);
+    }
+
+    @Test
+    public void testGroupLargerThanLogClearsHistory() {
+        EditLog log = new EditLog(4);
+        log.record(EditLog.encode(0, 1, 0, 0));
+        log.beginGroup();
+        for (int x = 2; x < 8; x++) {
+            log.record(EditLog.encode(0, x, 0, 0));
+        }
+        assertFalse(log.endGroup(), "A group that outgrew the log cannot be undone whole");
+        assertFalse(log.canUndo());
+        assertFalse(log.canRedo());
+
+        log.beginGroup();
+        log.record(EditLog.encode(0, 1, 0, 0));
+        assertTrue(log.endGroup());
+        assertEquals(1, log.getUndoCount());
+    }
+}
@@ -0,0 +1,93 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import static com.karol.GradingScheduler.Priority.BATCH;
+import static com.karol.GradingScheduler.Priority.INTERACTIVE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FairQueueTest {
+
+    private static List<String> drain(FairQueue<String> queue, int count) throws InterruptedException {
+        List<String> taken = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            taken.add(queue.take());
+        }
+        return taken;
+    }
+
+    @Test
+    void testStudentsTakeTurns() throws Exception {
+        FairQueue<String> queue = new FairQueue<>(100, 100, 8);
+        for (int i = 1; i <= 3; i++) {
+            queue.offer("alice", INTERACTIVE, "a" + i);
+        }
+        queue.offer("bob", INTERACTIVE, "b1");
+        queue.offer("carol", INTERACTIVE, "c1");
+
+        assertEquals(List.of("a1", "b1", "c1", "a2", "a3"), drain(queue, 5));
+    }
+
+    @Test
+    void testInteractiveGoesFirstButBatchIsNotStarved() throws Exception {
+        FairQueue<String> queue = new FairQueue<>(100, 100, 2);
+        queue.offer("alice", BATCH, "regrade");
+        for (int i = 1; i <= 4; i++) {
+            queue.offer("bob", INTERACTIVE, "run" + i);
+        }
+
+        assertEquals(List.of("run1", "run2", "regrade", "run3", "run4"), drain(queue, 5));
+    }
+
+    @Test
+    void testFullQueueShedsBatchForInteractive() {
+        FairQueue<String> queue = new FairQueue<>(3, 10, 8);
+        queue.offer("alice", BATCH, "a1");
+        queue.offer("alice", BATCH, "a2");
+        queue.offer("bob", BATCH, "b1");
+
+        assertThrows(RejectedExecutionException.class, () -> queue.offer("carol", BATCH, "c1"));
+        // The newest job of the student with the most batch work goes
+        assertEquals("a2", queue.offer("carol", INTERACTIVE, "c1"));
+        assertEquals(3, queue.size());
+
+        queue.offer("dave", INTERACTIVE, "d1");
+        queue.offer("erin", INTERACTIVE, "e1");
+        assertEquals(3, queue.size());
+        assertThrows(RejectedExecutionException.class, () -> queue.offer("frank", INTERACTIVE, "f1"),
+            "With only interactive work queued there is nothing left to shed");
+    }
+
+    @Test
+    void testPerStudentLimit() {
+        FairQueue<String> queue = new FairQueue<>(100, 2, 8);
+        queue.offer("alice", INTERACTIVE, "a1");
+        queue.offer("alice", BATCH, "a2");
+        assertThrows(RejectedExecutionException.class, () -> queue.offer("alice", INTERACTIVE, "a3"));
+        assertNull(queue.offer("bob", INTERACTIVE, "b1"));
+    }
+
+    @Test
+    void testCloseWakesWaitersAndReturnsLeftovers() throws Exception {
+        FairQueue<String> queue = new FairQueue<>(1, 1, 8);
+        queue.offer("alice", INTERACTIVE, "a1");
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> blocked = executor.submit(() -> {
+                queue.put("bob", INTERACTIVE, "b1");
+                return null;
+            });
+
+            assertEquals(List.of("a1"), queue.close());
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> blocked.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+        }
+        assertNull(queue.take());
+    }
+}
@@ -0,0 +1,80 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GradingSchedulerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testGradesThroughBothStagesAndRejectsWhenFull() throws Exception {
+        Files.writeString(tempDir.resolve("corridor.json"), GradingServiceTest.CORRIDOR);
+        GradingService service = new GradingService(new AssignmentLoader(AssignmentRepository.forDirectory(tempDir)),
+            1, 1000, Duration.ofSeconds(30));
+        try (service; GradingScheduler scheduler = new GradingScheduler(service, 1, 1, 1, 5)) {
+            List<CompletableFuture<GradingResult>> accepted = new ArrayList<>();
+            int rejected = 0;
+            // One compile worker and room for one waiting job: three quick submissions cannot all fit
+            for (int i = 0; i < 3; i++) {
+                try {
+                    accepted.add(scheduler.submit("student" + i, GradingScheduler.Priority.BATCH, "Corridor",
+                        GradingServiceTest.program("Step" + i, "karol.move();"), null));
+                } catch (RejectedExecutionException e) {
+                    rejected++;
+                }
+            }
+            assertTrue(rejected >= 1);
+            assertEquals(rejected, scheduler.getRejectedCount());
+            for (CompletableFuture<GradingResult> result : accepted) {
+                assertEquals(GradingResult.Outcome.COMPLETED, result.get().getOutcome());
+                assertEquals(1, result.get().getFinalState().getX());
+            }
+
+            GradingResult broken = scheduler.submit("student0", GradingScheduler.Priority.INTERACTIVE, "Corridor",
+                GradingServiceTest.program("Broken", "karol.move()"), null).get();
+            assertEquals(GradingResult.Outcome.COMPILE_ERROR, broken.getOutcome());
+            assertThrows(IllegalArgumentException.class, () -> scheduler.submit("student0",
+                GradingScheduler.Priority.INTERACTIVE, "Missing", "", null));
+        }
+    }
+
+    @Test
+    void testResultOfKilledWorkerIsNotCached() throws Exception {
+        Files.writeString(tempDir.resolve("corridor.json"), GradingServiceTest.CORRIDOR);
+        ResultCache cache = new ResultCache(null, 10);
+        GradingService service = new GradingService(new AssignmentLoader(AssignmentRepository.forDirectory(tempDir)),
+            1, 1000, Duration.ofSeconds(30), cache);
+        String source = GradingServiceTest.program("Sleeper", """
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            karol.move();""");
+        try (service;
+             WorkerPool pool = new WorkerPool(1, tempDir, 64, 4, 1000, Duration.ofSeconds(20));
+             GradingScheduler scheduler = new GradingScheduler(service, pool, 5, 5)) {
+            CompletableFuture<GradingResult> result = scheduler.submit("student", GradingScheduler.Priority.INTERACTIVE,
+                "Corridor", source, null);
+            // Give the worker time to start running the program, then kill it
+            Thread.sleep(1000);
+            ProcessHandle.current().children()
+                .filter(child -> child.info().commandLine().orElse("").contains(GradingWorker.class.getName()))
+                .forEach(ProcessHandle::destroyForcibly);
+
+            assertEquals(GradingResult.Outcome.RUNTIME_ERROR, result.get(30, TimeUnit.SECONDS).getOutcome());
+            assertNull(service.findCached("Corridor", source, null), "A dead worker says nothing about the program");
+            assertEquals(0, cache.getHitCount());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.karol;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GradingServerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testConcurrentSubmissionsOverHttp() throws Exception {
+        Files.writeString(tempDir.resolve("corridor.json"), GradingServiceTest.CORRIDOR);
+        GradingService service = new GradingService(new AssignmentLoader(AssignmentRepository.forDirectory(tempDir)),
+            2, 1000, Duration.ofSeconds(30));
+        ObjectMapper mapper = new ObjectMapper();
+        try (GradingServer server = new GradingServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            server.start();
+            URI base = URI.create("http://localhost:" + server.getPort());
+            HttpClient client = HttpClient.newHttpClient();
+
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                String body = mapper.writeValueAsString(Map.of(
+                    "assignment", "Corridor",
+                    "source", GradingServiceTest.program("Walker" + i, "karol.moveSteps(" + (i % 4) + ");"),
+                    "expected", Map.of("x", i % 4)));
+                responses.add(client.sendAsync(HttpRequest.newBuilder(base.resolve("/grade"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertEquals(200, response.get().statusCode(), response.get().body());
+                JsonNode result = mapper.readTree(response.get().body());
+                assertEquals("COMPLETED", result.get("outcome").asText());
+                assertTrue(result.get("passed").asBoolean());
+            }
+
+            HttpResponse<String> unknown = client.send(HttpRequest.newBuilder(base.resolve("/grade"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"assignment\":\"Nope\",\"source\":\"\"}")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(404, unknown.statusCode());
+
+            HttpResponse<String> names = client.send(HttpRequest.newBuilder(base.resolve("/assignments")).build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals("[\"Corridor\"]", names.body());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.karol;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GradingServiceTest {
+    static final String CORRIDOR = """
+        { "name" : "Corridor", "worldWidth" : 5, "worldHeight" : 1,
+          "initialRobots" : [ { "x" : 0, "y" : 0, "direction" : "EAST" } ],
+          "beepers" : [ { "x" : 2, "y" : 0, "count" : 1 } ] }
+        """;
+
+    @TempDir
+    Path tempDir;
+
+    private GradingService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(tempDir.resolve("corridor.json"), CORRIDOR);
+        service = new GradingService(new AssignmentLoader(AssignmentRepository.forDirectory(tempDir)),
+            2, 1000, Duration.ofSeconds(20));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    static String program(String className, String body) {
+        return """
+            package com.karol.userprograms;
+
+            import com.karol.KarolProgram;
+            import com.karol.Karol;
+
+            public class %s implements KarolProgram {
+                @Override
+                public void run(Karol karol) {
+                    %s
+                }
+            }
+            """.formatted(className, body);
+    }
+
+    @Test
+    void testCompletedRunIsChecked() throws Exception {
+        String source = program("Collector", "karol.moveUntilWall(); karol.turnAround(); karol.moveSteps(2); karol.pickBeeper();");
+        GradingResult result = service.grade("Corridor", source,
+            new GradingService.Expectations(2, 0, Robot.Direction.WEST, 1, 0));
+
+        assertEquals(GradingResult.Outcome.COMPLETED, result.getOutcome());
+        assertEquals(5, result.getChecks().size());
+        assertTrue(result.isPassed());
+        // moveUntilWall() alone is five sensor reads and four moves
+        assertTrue(result.getSteps() >= 9);
+        assertEquals(result.getSteps(), result.getActions() + result.getSensorReads());
+        assertEquals(5, result.getSensorReads());
+
+        GradingResult wrong = service.grade("Corridor", source, new GradingService.Expectations(3, null, null, null, null));
+        assertEquals(GradingResult.Outcome.COMPLETED, wrong.getOutcome());
+        assertFalse(wrong.isPassed());
+        assertEquals("2", wrong.getChecks().get(0).getActual());
+    }
+
+    @Test
+    void testCompileErrorsHavePositions() throws Exception {
+        GradingResult result = service.grade("Corridor", program("Broken", "karol.move()"), null);
+        assertEquals(GradingResult.Outcome.COMPILE_ERROR, result.getOutcome());
+        assertFalse(result.getDiagnostics().isEmpty());
+        assertEquals(9, result.getDiagnostics().get(0).getLine());
+        assertNull(result.getFinalState());
+        assertFalse(result.isPassed());
+    }
+
+    @Test
+    void testCrashAndEndlessLoopAreReported() throws Exception {
+        GradingResult crash = service.grade("Corridor", program("Crash", "karol.turnLeft(); karol.move();"), null);
+        assertEquals(GradingResult.Outcome.RUNTIME_ERROR, crash.getOutcome());
+        assertEquals(Robot.Direction.NORTH, crash.getFinalState().getDirection());
+
+        // Catching exceptions does not stop the step limit
+        GradingResult loop = service.grade("Corridor",
+            program("Spinner", "while (true) { try { karol.turnLeft(); } catch (Exception e) { } }"), null);
+        assertEquals(GradingResult.Outcome.STEP_LIMIT_EXCEEDED, loop.getOutcome());
+        assertEquals(1001, loop.getSteps());
+    }
+
+    @Test
+    void testUnknownAssignmentIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.grade("Missing", program("P", ""), null));
+    }
+
+    @Test
+    void testProgramsRunOnPlatformThreads() throws Exception {
+        GradingResult result = service.grade("Corridor",
+            program("Probe", "throw new IllegalStateException(\"virtual=\" + Thread.currentThread().isVirtual());"), null);
+        assertEquals(GradingResult.Outcome.RUNTIME_ERROR, result.getOutcome());
+        assertTrue(result.getMessage().contains("virtual=false"), result.getMessage());
+    }
+
+    @Test
+    void testRunawayProgramsDoNotHangGrading() throws Exception {
+        try (GradingService quick = new GradingService(new AssignmentLoader(AssignmentRepository.forDirectory(tempDir)),
+                1, 1000, Duration.ofMillis(200))) {
+            // Spins for a few seconds without calling Karol, so it cannot be stopped and keeps the only runner
+            GradingResult spin = quick.grade("Corridor", program("Spin",
+                "long end = System.nanoTime() + 3_000_000_000L; while (System.nanoTime() < end) { }"), null);
+            assertEquals(GradingResult.Outcome.TIMED_OUT, spin.getOutcome());
+
+            // Virtual threads are unaffected
+            Thread probe = Thread.ofVirtual().start(() -> { });
+            assertTrue(probe.join(Duration.ofSeconds(5)));
+
+            // The next run is refused instead of waiting forever for the runner
+            assertThrows(IllegalStateException.class,
+                () -> quick.grade("Corridor", program("Mover", "karol.move();"), null));
+        }
+    }
+
+    @Test
+    void testUnreadableAssignmentsAreReported() throws Exception {
+        assertTrue(service.getSkippedAssignments().isEmpty());
+        // The header is fine, so the catalog lists it, but the walls cannot be read
+        Files.writeString(tempDir.resolve("broken.json"), """
+            { "name" : "Broken", "worldWidth" : 3, "worldHeight" : 1,
+              "initialRobots" : [ { "x" : 0, "y" : 0, "direction" : "EAST" } ],
+              "walls" : [ { "x" : "left" } ] }
+            """);
+        service.reload();
+
+        assertEquals(List.of("Corridor"), service.getAssignmentNames());
+        assertEquals(1, service.getSkippedAssignments().size());
+        assertTrue(service.getSkippedAssignments().get(0).contains("broken.json"));
+    }
+}
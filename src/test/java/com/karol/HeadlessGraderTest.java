@@ -0,0 +1,97 @@
+package com.karol;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeadlessGraderTest {
+    private static final String REFLECT_CONFIG = "/META-INF/native-image/com.karol/karol-the-robot/reflect-config.json";
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeAssignment(String name, World world) throws Exception {
+        Assignment header = new Assignment("Collect", "Pick up the beeper", world.getWidth(), world.getHeight());
+        header.getInitialRobots().add(new Robot(0, 0, Robot.Direction.EAST));
+        Path file = tempDir.resolve(name + ".json");
+        WorldFormatConverter.write(file, header, world);
+        return file;
+    }
+
+    /**
+     * Runs a program that fetches the beeper at (3, 0) and drops it at (1, 0), recording a trace.
+     */
+    private Path recordRun(World world) throws Exception {
+        Karol karol = new Karol(0, 0, Robot.Direction.EAST, world);
+        Path trace = tempDir.resolve("run" + TraceWriter.EXTENSION);
+        try (TraceWriter writer = new TraceWriter(trace, karol)) {
+            karol.addListener(writer);
+            karol.moveSteps(3);
+            if (karol.beeperPresent()) {
+                karol.pickBeeper();
+            }
+            karol.turnAround();
+            karol.moveSteps(2);
+            karol.putBeeper();
+        }
+        return trace;
+    }
+
+    @Test
+    void testReplayReproducesRun() throws Exception {
+        World world = new World(5, 2);
+        world.addBeepers(3, 0, 1);
+        Path assignment = writeAssignment("collect", world);
+        Path trace = recordRun(world.copy());
+
+        GradingService.Expectations expected = new GradingService.Expectations(1, 0, Robot.Direction.WEST, 0, 1);
+        GradingResult result = HeadlessGrader.replay(assignment, trace, expected);
+
+        assertEquals(GradingResult.Outcome.COMPLETED, result.getOutcome(), result.getMessage());
+        assertTrue(result.isPassed(), "Replay should end where the run ended");
+        assertEquals("Collect", result.getAssignment());
+        assertEquals(9, result.getActions());
+        assertEquals(1, result.getSensorReads());
+        assertEquals(result.getActions() + result.getSensorReads(), result.getSteps());
+    }
+
+    @Test
+    void testReplayInDifferentWorldFails() throws Exception {
+        World recorded = new World(5, 2);
+        recorded.addBeepers(3, 0, 1);
+        Path trace = recordRun(recorded);
+        Path empty = writeAssignment("empty", new World(5, 2));
+
+        GradingResult result = HeadlessGrader.replay(empty, trace, null);
+
+        assertEquals(GradingResult.Outcome.RUNTIME_ERROR, result.getOutcome());
+        assertTrue(result.getMessage().contains("PICK_BEEPER"), result.getMessage());
+        assertFalse(result.isPassed());
+    }
+
+    @Test
+    void testReflectionConfigCoversJacksonMappedClasses() throws Exception {
+        JsonNode config;
+        try (InputStream in = HeadlessGraderTest.class.getResourceAsStream(REFLECT_CONFIG)) {
+            assertNotNull(in, "Reflection configuration is missing");
+            config = new ObjectMapper().readTree(in);
+        }
+        List<String> names = new ArrayList<>();
+        for (JsonNode entry : config) {
+            String name = entry.get("name").asText();
+            // A renamed class would silently drop out of the native image
+            assertDoesNotThrow(() -> Class.forName(name), name);
+            names.add(name);
+        }
+        for (Class<?> mapped : List.of(Assignment.class, Robot.class, Wall.class, Beeper.class,
+                GradingResult.class, GradingService.Expectations.class)) {
+            assertTrue(names.contains(mapped.getName()), mapped.getName() + " needs reflection configuration");
+        }
+    }
+}
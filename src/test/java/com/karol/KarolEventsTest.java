@@ -0,0 +1,84 @@
+package com.karol;
+
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KarolEventsTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSubmissionHash() {
+        String hash = KarolEvents.submissionHash("class A {}");
+        assertEquals(16, hash.length());
+        assertEquals(hash, KarolEvents.submissionHash("class A {}"));
+        assertNotEquals(hash, KarolEvents.submissionHash("class B {}"));
+        assertNull(KarolEvents.submissionHash(null));
+    }
+
+    @Test
+    public void testStagesAreRecordedWithTheirSubmission() throws Exception {
+        String source = GradingServiceTest.program("Recorded", "karol.move();");
+        String submission = KarolEvents.submissionHash(source);
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("karol.Validate");
+            recording.enable("karol.Compile");
+            recording.enable("karol.ClassLoad");
+            recording.start();
+            ProgramExecutor.compileAndLoad(source, "Recorded", "Corridor", submission);
+            recording.stop();
+            events = dump(recording);
+        }
+
+        assertEquals(List.of("karol.Validate", "karol.Compile", "karol.ClassLoad"),
+            events.stream().map(event -> event.getEventType().getName()).toList());
+        for (RecordedEvent event : events) {
+            assertEquals("Corridor", event.getString("assignment"));
+            assertEquals(submission, event.getString("submission"));
+            assertNull(event.getStackTrace());
+        }
+        assertTrue(events.get(0).getBoolean("valid"));
+        assertTrue(events.get(1).getBoolean("success"));
+        assertEquals(0, events.get(1).getInt("errors"));
+        assertEquals("com.karol.userprograms.Recorded", events.get(2).getString("className"));
+    }
+
+    @Test
+    public void testEventsAreOffInTheDefaultSettings() throws Exception {
+        try (Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+            recording.start();
+            ProgramExecutor.compileAndLoad(GradingServiceTest.program("Unrecorded", "karol.move();"), "Unrecorded");
+            recording.stop();
+            assertTrue(dump(recording).stream().noneMatch(event -> event.getEventType().getName().startsWith("karol.")));
+        }
+    }
+
+    @Test
+    public void testWarmUpIsNotRecorded() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable("karol.Validate");
+            recording.enable("karol.Compile");
+            recording.enable("karol.ClassLoad");
+            recording.start();
+            ProgramExecutor.warmUp();
+            recording.stop();
+            assertEquals(List.of(), dump(recording));
+        }
+    }
+
+    private List<RecordedEvent> dump(Recording recording) throws Exception {
+        Path file = tempDir.resolve("recording-" + recording.getId() + ".jfr");
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file).stream()
+            .filter(event -> event.getEventType().getName().startsWith("karol."))
+            .toList();
+    }
+}
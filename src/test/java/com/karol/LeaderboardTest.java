@@ -0,0 +1,50 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaderboardTest {
+    private static GradingResult result(GradingResult.Outcome outcome, long actions, long sensorReads, long runMillis) {
+        return new GradingResult("Corridor", outcome, null, List.of(), actions + sensorReads, actions, sensorReads,
+            null, List.of(), 0, runMillis, false);
+    }
+
+    @Test
+    public void testRankingsKeepEachStudentsBest() {
+        Leaderboard leaderboard = new Leaderboard(2);
+        leaderboard.record("ada", result(GradingResult.Outcome.COMPLETED, 30, 5, 4));
+        leaderboard.record("bob", result(GradingResult.Outcome.COMPLETED, 20, 9, 2));
+        leaderboard.record("ada", result(GradingResult.Outcome.COMPLETED, 10, 8, 3));
+        leaderboard.record("cyd", result(GradingResult.Outcome.COMPLETED, 40, 1, 1));
+        leaderboard.record("dan", result(GradingResult.Outcome.RUNTIME_ERROR, 1, 1, 1));
+
+        Leaderboard.Summary summary = leaderboard.getSummary("Corridor");
+        assertEquals(5, summary.getSubmissions());
+        assertEquals(4, summary.getPassed());
+        List<Leaderboard.Entry> byActions = summary.getRankings().get(Leaderboard.Measure.ACTIONS);
+        assertEquals(List.of("ada", "bob"), byActions.stream().map(Leaderboard.Entry::getStudent).toList());
+        assertEquals(10, byActions.get(0).getActions());
+        assertEquals(List.of("cyd", "ada"), summary.getRankings().get(Leaderboard.Measure.SENSOR_READS).stream()
+            .map(Leaderboard.Entry::getStudent).toList());
+        assertEquals(List.of("cyd", "bob"), summary.getRankings().get(Leaderboard.Measure.RUN_MILLIS).stream()
+            .map(Leaderboard.Entry::getStudent).toList());
+        assertNull(leaderboard.getSummary("Missing"));
+    }
+
+    @Test
+    public void testPercentilesOfManyResults() {
+        Leaderboard leaderboard = new Leaderboard();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            leaderboard.record("student" + i, result(GradingResult.Outcome.COMPLETED, 1 + random.nextInt(1000), 0, 0));
+        }
+        Leaderboard.Summary summary = leaderboard.getSummary("Corridor");
+        assertEquals(100_000, summary.getPassed());
+        assertEquals(10, summary.getRankings().get(Leaderboard.Measure.ACTIONS).size());
+        assertEquals(1, summary.getRankings().get(Leaderboard.Measure.ACTIONS).get(0).getActions());
+        assertEquals(500, summary.getPercentiles().get(Leaderboard.Measure.ACTIONS).get("p50"), 500 / 16.0 + 5);
+        assertEquals(990, summary.getPercentiles().get(Leaderboard.Measure.ACTIONS).get("p99"), 990 / 16.0 + 5);
+    }
+}
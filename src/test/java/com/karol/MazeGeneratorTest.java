@@ -0,0 +1,39 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MazeGeneratorTest {
+
+    @Test
+    public void testMazeIsPerfect() {
+        int width = 40;
+        int height = 25;
+        World maze = new MazeGenerator(new Random(42)).generate(width, height);
+
+        // Every cell is reachable...
+        ReachabilityAnalyzer.Report report = new ReachabilityAnalyzer(maze).analyze(0, 0, List.of());
+        assertEquals(width * height, report.getReachableCellCount());
+
+        // ...and a spanning tree removes exactly cells - 1 of the inner walls
+        int innerWalls = (width - 1) * height + width * (height - 1);
+        assertEquals(innerWalls - (width * height - 1), maze.getWallCount());
+    }
+
+    @Test
+    public void testSameSeedGivesSameMaze() {
+        World first = new MazeGenerator(new Random(7)).generate(15, 15);
+        World second = new MazeGenerator(new Random(7)).generate(15, 15);
+        assertEquals(first.getVerticalWallBits(), second.getVerticalWallBits());
+        assertEquals(first.getHorizontalWallBits(), second.getHorizontalWallBits());
+    }
+
+    @Test
+    public void testSingleRowHasNoWalls() {
+        assertEquals(0, new MazeGenerator().generate(10, 1).getWallCount());
+    }
+}
@@ -0,0 +1,62 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+    @Test
+    public void testBucketsCoverEveryValue() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = MetricsRegistry.Histogram.bucketIndex(value);
+            long upper = MetricsRegistry.Histogram.bucketUpperBound(index);
+            assertTrue(upper >= value, "upper bound of " + value);
+            assertTrue(upper - value <= value / 16, "precision of " + value);
+        }
+    }
+
+    @Test
+    public void testPercentilesAreWithinPrecision() {
+        MetricsRegistry.Histogram histogram = new MetricsRegistry.Histogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(5_000_000, histogram.getPercentile(0.5), 5_000_000 / 16.0);
+        assertEquals(9_900_000, histogram.getPercentile(0.99), 9_900_000 / 16.0);
+        assertEquals(10_000_000, histogram.getPercentile(1.0));
+        assertEquals(0, new MetricsRegistry.Histogram().getPercentile(0.5));
+    }
+
+    @Test
+    public void testInstrumentsAreSharedByNameAndLabels() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("moves_total", "Moves", "robot", "a").increment();
+        registry.counter("moves_total", "Moves", "robot", "a").add(2);
+        registry.counter("moves_total", "Moves", "robot", "b").increment();
+        assertEquals(3, registry.counter("moves_total", "Moves", "robot", "a").get());
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("moves_total", "Moves"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("odd_total", "Odd", "label"));
+    }
+
+    @Test
+    public void testPrometheusFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("moves_total", "Moves made", "action", "MOVE").add(7);
+        registry.gauge("queued", "Waiting", () -> 3);
+        registry.histogram("compile_seconds", "Compile time").record(2_000_000_000L);
+
+        String text = registry.toPrometheus();
+        assertTrue(text.contains("# HELP moves_total Moves made\n# TYPE moves_total counter\n"));
+        assertTrue(text.contains("moves_total{action=\"MOVE\"} 7\n"));
+        assertTrue(text.contains("# TYPE queued gauge\nqueued 3\n"));
+        assertTrue(text.contains("# TYPE compile_seconds summary\n"));
+        assertTrue(text.contains("compile_seconds{quantile=\"0.99\"} 2.0\n"));
+        assertTrue(text.contains("compile_seconds_sum 2.0\ncompile_seconds_count 1\n"));
+
+        String line = registry.toSummaryLine();
+        assertTrue(line.contains("moves_total{action=\"MOVE\"}=7"));
+        assertTrue(line.contains("compile_seconds n=1"));
+    }
+}
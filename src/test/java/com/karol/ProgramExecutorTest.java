@@ -145,4 +145,15 @@ public class ProgramExecutorTest {
         assertEquals(3, karol.getY(), "Karol should move one step up");
         assertEquals(1, karol.getX(), "Karol should move one step left");
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testWarmUpProgramCompiles() throws Exception {
+        // warmUp() swallows failures, so make sure its program actually compiles and runs
+        String className = ProgramExecutor.findClassName(ProgramExecutor.WARM_UP_SOURCE);
+        Class<?> programClass = ProgramExecutor.compileAndLoad(ProgramExecutor.WARM_UP_SOURCE, className);
+        Direction before = karol.getDirection();
+        ProgramExecutor.executeProgram(programClass, karol);
+        assertNotEquals(before, karol.getDirection(), "The warm-up program should turn Karol");
+        ProgramExecutor.warmUp();
+    }
+}
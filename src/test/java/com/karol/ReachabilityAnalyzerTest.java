@@ -0,0 +1,158 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReachabilityAnalyzerTest {
+    @TempDir
+    Path tempDir;
+
+    private static World randomWorld(int width, int height, double wallDensity, long seed) {
+        Random random = new Random(seed);
+        World world = new World(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (random.nextDouble() < wallDensity) {
+                    world.addWall(x, y, true);
+                }
+                if (random.nextDouble() < wallDensity) {
+                    world.addWall(x, y, false);
+                }
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Straightforward breadth-first search to compare against.
+     */
+    private static BitSet bfs(World world, int startX, int startY) {
+        int width = world.getWidth();
+        BitSet seen = new BitSet();
+        Deque<int[]> queue = new ArrayDeque<>();
+        seen.set(startY * width + startX);
+        queue.add(new int[] {startX, startY});
+        int[][] steps = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            for (int[] step : steps) {
+                int nx = cell[0] + step[0];
+                int ny = cell[1] + step[1];
+                if (world.isValidMove(cell[0], cell[1], nx, ny) && !seen.get(ny * width + nx)) {
+                    seen.set(ny * width + nx);
+                    queue.add(new int[] {nx, ny});
+                }
+            }
+        }
+        return seen;
+    }
+
+    @Test
+    void testMatchesBreadthFirstSearch() {
+        int[][] sizes = {{1, 1}, {7, 5}, {63, 3}, {64, 9}, {130, 40}, {300, 200}};
+        for (int[] size : sizes) {
+            for (long seed = 0; seed < 4; seed++) {
+                World world = randomWorld(size[0], size[1], 0.35, seed);
+                ReachabilityAnalyzer analyzer = new ReachabilityAnalyzer(world);
+                int startX = (int) (seed % size[0]);
+                int startY = size[1] / 2;
+                assertEquals(bfs(world, startX, startY), analyzer.reachableFrom(startX, startY),
+                    "World " + size[0] + "x" + size[1] + " seed " + seed);
+            }
+        }
+    }
+
+    @Test
+    void testIncrementalWallUpdatesMatchFullFill() {
+        World world = randomWorld(70, 30, 0.3, 42);
+        ReachabilityAnalyzer analyzer = new ReachabilityAnalyzer(world);
+        BitSet reachable = analyzer.reachableFrom(10, 10);
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            int x = random.nextInt(71);
+            int y = random.nextInt(31);
+            boolean isVertical = random.nextBoolean();
+            boolean present = !world.hasWall(x, y, isVertical);
+            if (present) {
+                world.addWall(x, y, isVertical);
+            } else {
+                world.removeWall(x, y, isVertical);
+            }
+            reachable = analyzer.updateWall(reachable, 10, 10, x, y, isVertical, present);
+            assertEquals(bfs(world, 10, 10), reachable, "After change " + i);
+        }
+    }
+
+    @Test
+    void testWallUpdatesOutsideWorldChangeNothing() {
+        ReachabilityAnalyzer analyzer = new ReachabilityAnalyzer(new World(4, 3));
+        BitSet reachable = analyzer.reachableFrom(0, 0);
+        int[][] outside = {{-1, 1}, {1, -1}, {-1, -1}, {4, 1}, {1, 3}, {5, 5}};
+        for (int[] cell : outside) {
+            for (boolean isVertical : new boolean[] {true, false}) {
+                assertSame(reachable, analyzer.updateWall(reachable, 0, 0, cell[0], cell[1], isVertical, true));
+                assertSame(reachable, analyzer.updateWall(reachable, 0, 0, cell[0], cell[1], isVertical, false));
+            }
+        }
+        assertEquals(12, analyzer.reachableFrom(0, 0).cardinality());
+    }
+
+    @Test
+    void testReportsUnreachableBeepersAndRegions() {
+        // A 5x3 world split by a full vertical wall at x = 3, with one boxed-in cell on the left
+        World world = new World(5, 3);
+        for (int y = 0; y < 3; y++) {
+            world.addWall(3, y, true);
+        }
+        world.addWall(1, 2, true);
+        world.addWall(2, 2, true);
+        world.addWall(1, 2, false);
+
+        List<Beeper> beepers = List.of(new Beeper(0, 0, 1), new Beeper(4, 1, 2), new Beeper(1, 2, 3));
+        ReachabilityAnalyzer.Report report = new ReachabilityAnalyzer(world).analyze(0, 0, beepers);
+
+        assertEquals(8, report.getReachableCellCount());
+        assertTrue(report.isReachable(2, 2));
+        assertFalse(report.isReachable(1, 2));
+        assertEquals(List.of(beepers.get(1), beepers.get(2)), report.getUnreachableBeepers());
+
+        List<ReachabilityAnalyzer.Region> regions = report.getRegions();
+        assertEquals(2, regions.size());
+        assertEquals(3, regions.get(0).getX());
+        assertEquals(6, regions.get(0).getCellCount());
+        assertEquals(2, regions.get(0).getBeeperCount());
+        assertEquals(1, regions.get(1).getX());
+        assertEquals(2, regions.get(1).getY());
+        assertEquals(1, regions.get(1).getCellCount());
+        assertEquals(3, regions.get(1).getBeeperCount());
+    }
+
+    @Test
+    void testLintReportsUnreachableBeepers() throws Exception {
+        Files.writeString(tempDir.resolve("fine.json"), """
+            { "name" : "Fine", "worldWidth" : 3, "worldHeight" : 1,
+              "initialRobots" : [ { "x" : 0, "y" : 0, "direction" : "EAST" } ],
+              "beepers" : [ { "x" : 2, "y" : 0, "count" : 1 } ] }
+            """);
+        Files.writeString(tempDir.resolve("walled.json"), """
+            { "name" : "Walled", "worldWidth" : 3, "worldHeight" : 1,
+              "initialRobots" : [ { "x" : 0, "y" : 0, "direction" : "EAST" } ],
+              "walls" : [ { "x" : 2, "y" : 0, "isVertical" : true } ],
+              "beepers" : [ { "x" : 2, "y" : 0, "count" : 1 } ] }
+            """);
+
+        List<String> report = WorldLint.lintDirectory(tempDir);
+
+        assertEquals(List.of(
+            "walled.json: WARNING: Beeper at (2, 0) cannot be reached by the robot",
+            "walled.json: INFO: 1 cell(s) starting at (2, 0) cannot be reached by the robot"), report);
+    }
+}
@@ -0,0 +1,95 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultCacheTest {
+    @TempDir
+    Path tempDir;
+
+    private GradingService service(ResultCache cache) throws Exception {
+        return new GradingService(new AssignmentLoader(AssignmentRepository.forDirectory(tempDir.resolve("assignments"))),
+            1, 1000, Duration.ofSeconds(20), cache);
+    }
+
+    @Test
+    public void testSourceHashIgnoresLineEndingsAndTrailingSpace() {
+        String source = GradingServiceTest.program("Walker", "karol.move();");
+        assertEquals(ResultCache.sourceHash(source), ResultCache.sourceHash(source.replace("\n", "  \r\n")));
+        assertNotEquals(ResultCache.sourceHash(source), ResultCache.sourceHash(source.replace("move", "turnLeft")));
+    }
+
+    @Test
+    public void testUnchangedSubmissionsAreNotGradedAgain() throws Exception {
+        Files.createDirectories(tempDir.resolve("assignments"));
+        Files.writeString(tempDir.resolve("assignments/corridor.json"), GradingServiceTest.CORRIDOR);
+        Path cacheDir = tempDir.resolve("cache");
+        String source = GradingServiceTest.program("Collector", "karol.moveSteps(2); karol.pickBeeper();");
+
+        try (GradingService service = service(new ResultCache(cacheDir, 10))) {
+            GradingResult first = service.grade("Corridor", source, new GradingService.Expectations(2, null, null, null, null));
+            assertFalse(first.isCached());
+            assertTrue(first.isPassed());
+
+            // A rubric change is checked against the stored final state
+            GradingResult regrade = service.grade("Corridor", source, new GradingService.Expectations(3, null, null, null, null));
+            assertTrue(regrade.isCached());
+            assertFalse(regrade.isPassed());
+            assertEquals("2", regrade.getChecks().get(0).getActual());
+            assertEquals(first.getSteps(), regrade.getSteps());
+
+            GradingResult broken = service.grade("Corridor", GradingServiceTest.program("Broken", "karol.move()"), null);
+            GradingResult brokenAgain = service.grade("Corridor", GradingServiceTest.program("Broken", "karol.move()"), null);
+            assertTrue(brokenAgain.isCached());
+            assertEquals(broken.getDiagnostics().get(0).getLine(), brokenAgain.getDiagnostics().get(0).getLine());
+        }
+
+        // The disk tier survives a restart
+        ResultCache reopened = new ResultCache(cacheDir, 10);
+        try (GradingService service = service(reopened)) {
+            GradingResult result = service.grade("Corridor", source, null);
+            assertTrue(result.isCached());
+            assertEquals(GradingResult.Outcome.COMPLETED, result.getOutcome());
+            assertEquals(2, result.getFinalState().getX());
+            assertEquals(1, reopened.getHitCount());
+
+            // Changing the world changes the key
+            Files.writeString(tempDir.resolve("assignments/corridor.json"), GradingServiceTest.CORRIDOR.replace("\"x\" : 2", "\"x\" : 3"));
+            service.reload();
+            GradingResult changed = service.grade("Corridor", source, null);
+            assertFalse(changed.isCached());
+            assertEquals(GradingResult.Outcome.RUNTIME_ERROR, changed.getOutcome());
+        }
+    }
+
+    @Test
+    public void testValidationFailuresAreNotCached() throws Exception {
+        Files.createDirectories(tempDir.resolve("assignments"));
+        Files.writeString(tempDir.resolve("assignments/corridor.json"), GradingServiceTest.CORRIDOR);
+        String unpackaged = GradingServiceTest.program("Walker", "karol.move();").replace("package com.karol.userprograms;", "");
+
+        try (GradingService service = service(new ResultCache(null, 10))) {
+            assertEquals(GradingResult.Outcome.COMPILE_ERROR, service.grade("Corridor", unpackaged, null).getOutcome());
+            assertFalse(service.grade("Corridor", unpackaged, null).isCached());
+        }
+    }
+
+    @Test
+    public void testUnwritableEntryIsCountedAndKeptInMemory() throws Exception {
+        Path cacheDir = tempDir.resolve("cache");
+        ResultCache cache = new ResultCache(cacheDir, 10);
+        // A file where the entry's directory should be
+        Files.writeString(cacheDir.resolve("ab"), "");
+        String key = "ab" + "0".repeat(62);
+
+        cache.put(key, new GradingResult("Corridor", GradingResult.Outcome.COMPLETED, null, List.of(), 0, null, List.of(), 0, 0));
+
+        assertEquals(1, cache.getWriteFailureCount());
+        assertNotNull(cache.get(key));
+    }
+}
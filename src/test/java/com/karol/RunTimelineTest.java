@@ -0,0 +1,104 @@
+package com.karol;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RunTimelineTest {
+    private World world;
+    private Karol karol;
+
+    @BeforeEach
+    void setUp() {
+        world = new World(5, 5);
+        world.addWall(new Wall(3, 0, true));
+        world.putBeeper(1, 0);
+        karol = new Karol(0, 0, Robot.Direction.EAST, world);
+    }
+
+    /**
+     * Carries the beeper one cell east and back again, ending each lap where it started.
+     */
+    private void shuffleBeeper(int laps) {
+        for (int i = 0; i < laps; i++) {
+            karol.move();
+            karol.pickBeeper();
+            karol.move();
+            karol.putBeeper();
+            karol.pickBeeper();
+            karol.turnAround();
+            karol.move();
+            karol.putBeeper();
+            karol.move();
+            karol.turnAround();
+        }
+    }
+
+    @Test
+    void testSeekMatchesRecordedRun() {
+        RunTimeline timeline = new RunTimeline(karol, 4, 64);
+        karol.addListener(timeline);
+        shuffleBeeper(1);
+
+        assertEquals(12, timeline.getStepCount(), "Every primitive action should be recorded");
+
+        Karol start = timeline.seek(0);
+        assertEquals(0, start.getX());
+        assertEquals(Robot.Direction.EAST, start.getDirection());
+        assertTrue(new Karol(1, 0, Robot.Direction.EAST, start.getWorld()).beeperPresent(),
+            "Beeper should be back at its starting cell");
+
+        Karol afterPick = timeline.seek(2);
+        assertEquals(1, afterPick.getX());
+        assertEquals(1, afterPick.getBeepersInBag(), "Bag should contain the picked beeper");
+        assertTrue(afterPick.getWorld().getBeepers().isEmpty());
+
+        Karol end = timeline.seek(timeline.getStepCount());
+        assertEquals(karol.getX(), end.getX());
+        assertEquals(karol.getY(), end.getY());
+        assertEquals(karol.getDirection(), end.getDirection());
+        assertEquals(karol.getBeepersInBag(), end.getBeepersInBag());
+        assertEquals(world.getBeepers().size(), end.getWorld().getBeepers().size());
+    }
+
+    @Test
+    void testSensorReadsAreCountedButNotRecorded() {
+        RunTimeline timeline = new RunTimeline(karol);
+        karol.addListener(timeline);
+        karol.move();
+        assertTrue(karol.beeperPresent());
+        assertTrue(karol.frontIsClear());
+
+        assertEquals(1, timeline.getStepCount());
+        assertEquals(2, timeline.getSensorReadCount());
+        assertEquals(1, timeline.seek(timeline.getStepCount()).getX());
+    }
+
+    @Test
+    void testKeyframeBudgetIsRespected() {
+        RunTimeline timeline = new RunTimeline(karol, 1, 8);
+        karol.addListener(timeline);
+        shuffleBeeper(50);
+
+        assertTrue(timeline.getKeyframeCount() <= 8, "Keyframes must stay within the budget");
+        assertTrue(timeline.getKeyframeInterval() > 1, "Interval should grow once the budget is full");
+
+        for (int step = 0; step <= timeline.getStepCount(); step += 7) {
+            Karol restored = timeline.seek(step);
+            assertTrue(restored.getX() >= 0 && restored.getX() < 3, "Robot should stay left of the wall");
+        }
+        assertEquals(karol.getX(), timeline.seek(Integer.MAX_VALUE).getX(), "Seeking past the end should clamp");
+    }
+
+    @Test
+    void testSeekDoesNotTouchRecordedWorld() {
+        RunTimeline timeline = new RunTimeline(karol);
+        karol.addListener(timeline);
+        karol.move();
+        karol.pickBeeper();
+
+        timeline.seek(0);
+        assertTrue(world.getBeepers().isEmpty(), "Seeking must not change the original world");
+        assertEquals(1, karol.getBeepersInBag());
+    }
+}
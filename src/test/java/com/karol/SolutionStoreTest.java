@@ -0,0 +1,94 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolutionStoreTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSaveAndLoad() throws Exception {
+        try (SolutionStore store = new SolutionStore(tempDir)) {
+            assertNull(store.load("Problem 1"));
+            store.save("Problem 1", "class A {}").get();
+            assertEquals("class A {}", store.load("Problem 1"));
+            assertEquals("problem_1_solution.java", store.solutionFile("Problem 1").getFileName().toString());
+            assertFalse(Files.exists(tempDir.resolve("problem_1_solution.java.tmp")), "Temp file should be renamed");
+        }
+    }
+
+    @Test
+    void testRapidSavesCoalesce() throws Exception {
+        try (SolutionStore store = new SolutionStore(tempDir)) {
+            store.save("Coalesce", "v0").get();
+            CompletableFuture<Void> last = null;
+            for (int i = 1; i <= 200; i++) {
+                last = store.save("Coalesce", "v" + i);
+            }
+            assertEquals("v200", store.load("Coalesce"), "Queued text should be visible before it is written");
+            last.get();
+            assertEquals("v200", Files.readString(store.solutionFile("Coalesce")));
+
+            List<SolutionStore.Version> history = store.loadHistory("Coalesce");
+            assertFalse(history.isEmpty());
+            assertTrue(history.size() < 200, "Waiting saves should be merged, not written one by one");
+            assertEquals("v0", history.get(history.size() - 1).text());
+        }
+    }
+
+    @Test
+    void testSaveWaitsForPauseAndCloseFlushes() throws Exception {
+        SolutionStore store = new SolutionStore(tempDir, SolutionStore.DEFAULT_HISTORY_LIMIT_BYTES, 60_000);
+        CompletableFuture<Void> saved = store.save("Debounce", "class A {}");
+        Thread.sleep(100);
+        assertFalse(saved.isDone(), "The write should wait for the debounce delay");
+        assertFalse(Files.exists(store.solutionFile("Debounce")));
+
+        store.close();
+        assertTrue(saved.isDone(), "close() should write waiting saves");
+        assertEquals("class A {}", Files.readString(store.solutionFile("Debounce")));
+    }
+
+    @Test
+    void testHistoryRebuildsEveryVersion() throws Exception {
+        String[] versions = {
+            "public class A {\n}\n",
+            "public class A {\n    int x;\n}\n",
+            "public class A {\n    int x = 1;\n}\n",
+            "class B {}",
+        };
+        try (SolutionStore store = new SolutionStore(tempDir)) {
+            for (String version : versions) {
+                store.save("History", version).get();
+            }
+            // Saving the same text again adds nothing
+            store.save("History", versions[3]).get();
+
+            List<SolutionStore.Version> history = store.loadHistory("History");
+            assertEquals(3, history.size());
+            assertEquals(versions[2], history.get(0).text());
+            assertEquals(versions[1], history.get(1).text());
+            assertEquals(versions[0], history.get(2).text());
+            assertTrue(Files.size(store.historyFile("History")) < 120, "Deltas should only store the changed part");
+        }
+    }
+
+    @Test
+    void testHistoryIsTrimmed() throws Exception {
+        try (SolutionStore store = new SolutionStore(tempDir, 2000, 0)) {
+            for (int i = 0; i < 200; i++) {
+                store.save("Trim", "step " + i).get();
+            }
+            assertTrue(Files.size(store.historyFile("Trim")) <= 2000);
+            List<SolutionStore.Version> history = store.loadHistory("Trim");
+            assertEquals("step 198", history.get(0).text());
+            assertTrue(history.size() > 10);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingWorldLoaderTest {
+    private final StreamingWorldLoader loader = new StreamingWorldLoader();
+
+    @Test
+    void testMatchesDatabindLoader() throws Exception {
+        Path file = Path.of("src/main/resources/assignments/problem_1.json");
+        Assignment expected = new AssignmentLoader().loadAssignment(file.toFile());
+
+        StreamingWorldLoader.LoadedWorld loaded = loader.load(file);
+        Assignment header = loaded.getAssignment();
+        World world = loaded.getWorld();
+
+        assertEquals(expected.getName(), header.getName());
+        assertEquals(expected.getDescription(), header.getDescription());
+        assertEquals(expected.getWorldWidth(), world.getWidth());
+        assertEquals(expected.getWorldHeight(), world.getHeight());
+        assertEquals(1, header.getInitialRobots().size());
+        assertEquals(Robot.Direction.EAST, header.getInitialRobots().get(0).getDirection());
+        assertTrue(header.getWalls().isEmpty(), "Walls should only be stored in the world");
+
+        assertEquals(expected.getWalls().size(), world.getWallCount());
+        for (Wall wall : expected.getWalls()) {
+            assertTrue(world.hasWall(wall.getX(), wall.getY(), wall.isVertical()),
+                "Missing wall at " + wall.getX() + "," + wall.getY());
+        }
+        for (Beeper beeper : expected.getBeepers()) {
+            assertEquals(beeper.getCount(), world.getBeeperCount(beeper.getX(), beeper.getY()));
+        }
+    }
+
+    @Test
+    void testElementsBeforeWorldSize() throws Exception {
+        String json = """
+            {
+              "walls" : [ { "isVertical" : true, "y" : 1, "x" : 2 } ],
+              "beepers" : [ { "x" : 0, "y" : 0, "count" : 2 }, { "x" : 0, "y" : 0, "count" : 1 } ],
+              "extra" : { "ignored" : [ 1, 2, 3 ] },
+              "worldHeight" : 3,
+              "worldWidth" : 4
+            }
+            """;
+
+        World world = loader.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))).getWorld();
+
+        assertEquals(4, world.getWidth());
+        assertTrue(world.hasWall(2, 1, true));
+        assertFalse(world.isValidMove(1, 1, 2, 1), "Vertical wall should block movement");
+        assertEquals(3, world.getBeeperCount(0, 0), "Beepers on the same cell should add up");
+    }
+
+    @Test
+    void testMissingSizeIsRejected() {
+        assertThrows(Exception.class, () ->
+            loader.load(new ByteArrayInputStream("{\"walls\":[]}".getBytes(StandardCharsets.UTF_8))),
+            "A world without a size cannot be built");
+    }
+}
@@ -0,0 +1,143 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TraceWriterTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Records events the same way the trace encodes them, to compare against.
+     */
+    private static class EventLog implements KarolListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onAction(Karol karol, Karol.Action action) {
+            events.add(action.name());
+        }
+
+        @Override
+        public void onSensor(Karol karol, Karol.Sensor sensor, boolean result) {
+            events.add(sensor.name() + "=" + result);
+        }
+    }
+
+    private static String describe(TraceReader.Cursor cursor) {
+        return cursor.isAction() ? cursor.getAction().name() : cursor.getSensor().name() + "=" + cursor.getSensorResult();
+    }
+
+    /**
+     * Walks back and forth along the bottom row, picking up and putting down the beeper.
+     */
+    private static void wander(Karol karol, int laps) {
+        for (int i = 0; i < laps; i++) {
+            karol.moveUntilWall();
+            karol.turnAround();
+            if (karol.beeperPresent()) {
+                karol.pickBeeper();
+            } else if (karol.hasBeeper()) {
+                karol.putBeeper();
+            }
+        }
+    }
+
+    @Test
+    void testTraceMatchesRunAcrossBlocks() throws Exception {
+        World world = new World(6, 3);
+        world.putBeeper(5, 0);
+        Karol karol = new Karol(0, 0, Robot.Direction.EAST, world);
+        EventLog log = new EventLog();
+        Path file = tempDir.resolve("run" + TraceWriter.EXTENSION);
+
+        try (TraceWriter trace = new TraceWriter(file, karol, 16, 2)) {
+            karol.addListener(trace);
+            karol.addListener(log);
+            wander(karol, 50);
+        }
+
+        try (TraceReader reader = new TraceReader(file)) {
+            assertEquals(log.events.size(), reader.getEventCount());
+            assertTrue(reader.getBlockCount() > 10, "Trace should span many blocks");
+            assertEquals(0, reader.getStartX());
+            assertEquals(Robot.Direction.EAST, reader.getStartDirection());
+
+            TraceReader.Cursor cursor = reader.cursor();
+            int step = 0;
+            while (cursor.next()) {
+                assertEquals(step, cursor.getStep());
+                assertEquals(log.events.get(step), describe(cursor), "Event " + step);
+                step++;
+            }
+            assertEquals(log.events.size(), step);
+
+            for (int start : new int[] {0, 15, 16, 17, 200, log.events.size() - 1}) {
+                TraceReader.Cursor seek = reader.cursor(start);
+                assertTrue(seek.next());
+                assertEquals(start, seek.getStep());
+                assertEquals(log.events.get(start), describe(seek), "Seek to " + start);
+            }
+            assertFalse(reader.cursor(log.events.size()).next());
+        }
+    }
+
+    @Test
+    void testLongRunsCompressWell() throws Exception {
+        World world = new World(10, 10);
+        Karol karol = new Karol(0, 0, Robot.Direction.EAST, world);
+        Path file = tempDir.resolve("long" + TraceWriter.EXTENSION);
+
+        try (TraceWriter trace = new TraceWriter(file, karol)) {
+            karol.addListener(trace);
+            for (int i = 0; i < 1_000_000; i++) {
+                karol.turnLeft();
+            }
+        }
+
+        assertTrue(Files.size(file) < 20_000, "A million repeated actions should take little space");
+        try (TraceReader reader = new TraceReader(file)) {
+            assertEquals(1_000_000, reader.getEventCount());
+            TraceReader.Cursor cursor = reader.cursor(999_999);
+            assertTrue(cursor.next());
+            assertEquals(Karol.Action.TURN_LEFT, cursor.getAction());
+            assertNull(cursor.getSensor());
+        }
+    }
+
+    @Test
+    void testClosingReaderReleasesAbandonedCursors() throws Exception {
+        World world = new World(10, 10);
+        Karol karol = new Karol(0, 0, Robot.Direction.EAST, world);
+        Path file = tempDir.resolve("abandoned" + TraceWriter.EXTENSION);
+        try (TraceWriter trace = new TraceWriter(file, karol, 16, 2)) {
+            karol.addListener(trace);
+            for (int i = 0; i < 100; i++) {
+                karol.turnLeft();
+            }
+        }
+
+        TraceReader.Cursor abandoned;
+        try (TraceReader reader = new TraceReader(file)) {
+            abandoned = reader.cursor();
+            assertTrue(abandoned.next());
+            try (TraceReader.Cursor closed = reader.cursor(50)) {
+                assertTrue(closed.next());
+            }
+        }
+        assertThrows(IllegalStateException.class, abandoned::next, "Closing the reader should release the cursor");
+    }
+
+    @Test
+    void testUnfinishedTraceIsRejected() throws Exception {
+        Path file = tempDir.resolve("broken" + TraceWriter.EXTENSION);
+        Files.write(file, new byte[] {'K', 'R', 'L', 'T', 1, 0, 0, 0, 16, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        assertThrows(IOException.class, () -> new TraceReader(file));
+    }
+}
@@ -0,0 +1,87 @@
+package com.karol;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkerPoolTest {
+    @TempDir
+    Path tempDir;
+
+    private WorkerPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.writeString(tempDir.resolve("corridor.json"), GradingServiceTest.CORRIDOR);
+        pool = new WorkerPool(1, tempDir, 64, 4, 1000, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void testSubmissionsAreGradedInAWorker() throws Exception {
+        String source = GradingServiceTest.program("Walker", "karol.moveSteps(2); karol.pickBeeper();");
+        GradingResult result = pool.grade("Corridor", source,
+            new GradingService.Expectations(2, 0, Robot.Direction.EAST, 1, 0));
+        assertEquals(GradingResult.Outcome.COMPLETED, result.getOutcome());
+        assertTrue(result.isPassed());
+        assertEquals(2, result.getFinalState().getX());
+
+        GradingResult broken = pool.grade("Corridor", GradingServiceTest.program("Broken", "karol.move()"), null);
+        assertEquals(GradingResult.Outcome.COMPILE_ERROR, broken.getOutcome());
+        assertEquals(9, broken.getDiagnostics().get(0).getLine());
+
+        assertThrows(IllegalArgumentException.class, () -> pool.grade("Missing", source, null));
+        assertEquals(0, pool.getRecycledCount());
+
+        // The fourth job uses up the worker, and its replacement takes the next one
+        pool.grade("Corridor", source, null);
+        assertEquals(1, pool.getRecycledCount());
+        assertEquals(GradingResult.Outcome.COMPLETED, pool.grade("Corridor", source, null).getOutcome());
+    }
+
+    @Test
+    void testProgramCannotForgeResultOnStandardOutput() throws Exception {
+        GradingResult result = pool.grade("Corridor", GradingServiceTest.program("Forger", """
+            byte[] forged = "{'error':'forged'}".replace('\\'', '"').getBytes();
+            java.io.DataOutputStream out = new java.io.DataOutputStream(
+                new java.io.FileOutputStream(java.io.FileDescriptor.out));
+            try {
+                out.writeInt(forged.length);
+                out.write(forged);
+                out.flush();
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            karol.move();"""), null);
+
+        assertEquals(GradingResult.Outcome.COMPLETED, result.getOutcome(), result.getMessage());
+        assertEquals(1, result.getFinalState().getX());
+        assertEquals(0, pool.getRecycledCount());
+    }
+
+    @Test
+    void testExitingProgramOnlyStopsItsWorker() throws Exception {
+        GradingResult exited = pool.grade("Corridor", GradingServiceTest.program("Quitter", "System.exit(7);"), null);
+        assertEquals(GradingResult.Outcome.RUNTIME_ERROR, exited.getOutcome());
+        assertTrue(exited.getMessage().contains("7"), exited.getMessage());
+
+        GradingResult bomb = pool.grade("Corridor", GradingServiceTest.program("Hog", """
+            java.util.List<long[]> hog = new java.util.ArrayList<>();
+            while (true) { hog.add(new long[1 << 20]); }"""), null);
+        assertEquals(GradingResult.Outcome.RUNTIME_ERROR, bomb.getOutcome());
+        assertEquals("Program ran out of memory", bomb.getMessage());
+        assertEquals(2, pool.getRecycledCount());
+
+        GradingResult after = pool.grade("Corridor", GradingServiceTest.program("Mover", "karol.move();"), null);
+        assertEquals(GradingResult.Outcome.COMPLETED, after.getOutcome());
+    }
+}
@@ -0,0 +1,195 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldBroadcasterTest {
+
+    /**
+     * Counts the deltas a run produces: one per action, plus one per beeper picked or put.
+     */
+    private static class DeltaCounter implements KarolListener {
+        long deltas;
+
+        @Override
+        public void onAction(Karol karol, Karol.Action action) {
+            deltas += action == Karol.Action.PICK_BEEPER || action == Karol.Action.PUT_BEEPER ? 2 : 1;
+        }
+    }
+
+    private static Karol newKarol() {
+        World world = new World(6, 3);
+        world.addBeepers(3, 0, 2);
+        return new Karol(0, 0, Robot.Direction.EAST, world);
+    }
+
+    /**
+     * Walks back and forth along the bottom row, moving the beepers around.
+     */
+    private static void wander(Karol karol, int laps) {
+        for (int i = 0; i < laps; i++) {
+            for (int x = 0; x < 5; x++) {
+                karol.move();
+                if (karol.beeperPresent() && karol.getBeepersInBag() < 2) {
+                    karol.pickBeeper();
+                } else if (karol.hasBeeper() && x == i % 5) {
+                    karol.putBeeper();
+                }
+            }
+            karol.turnAround();
+        }
+    }
+
+    private static void assertMirrors(Karol karol, WorldBroadcaster.Mirror mirror) {
+        assertEquals(karol.getX(), mirror.getX());
+        assertEquals(karol.getY(), mirror.getY());
+        assertEquals(karol.getDirection(), mirror.getDirection());
+        assertEquals(karol.getBeepersInBag(), mirror.getBeepersInBag());
+        World world = karol.getWorld();
+        for (int y = 0; y < world.getHeight(); y++) {
+            for (int x = 0; x < world.getWidth(); x++) {
+                assertEquals(world.getBeeperCount(x, y), mirror.getWorld().getBeeperCount(x, y), "cell " + x + "," + y);
+            }
+        }
+    }
+
+    private static void drain(WorldBroadcaster.Subscription subscription, WorldBroadcaster.Mirror mirror)
+            throws IOException, InterruptedException {
+        byte[] frame;
+        while ((frame = subscription.next(0, TimeUnit.MILLISECONDS)) != null) {
+            mirror.apply(frame);
+        }
+    }
+
+    @Test
+    void testViewerMirrorsRunOverSocket() throws Exception {
+        Karol karol = newKarol();
+        DeltaCounter counter = new DeltaCounter();
+        try (WorldBroadcaster broadcaster = new WorldBroadcaster(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), WorldBroadcaster.DEFAULT_BUFFER_FRAMES);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), broadcaster.getPort())) {
+            socket.setSoTimeout(5000);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (broadcaster.getSubscriberCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, broadcaster.getSubscriberCount());
+
+            broadcaster.reset(karol);
+            karol.addListener(broadcaster);
+            karol.addListener(counter);
+            wander(karol, 40);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            WorldBroadcaster.Mirror mirror = new WorldBroadcaster.Mirror();
+            while (mirror.getSequence() < counter.deltas) {
+                assertTrue(mirror.read(in), "stream ended early");
+            }
+            assertEquals(counter.deltas, mirror.getSequence());
+            assertMirrors(karol, mirror);
+        }
+    }
+
+    @Test
+    void testSlowViewerIsResynchronizedFromSnapshot() throws Exception {
+        Karol karol = newKarol();
+        DeltaCounter counter = new DeltaCounter();
+        try (WorldBroadcaster broadcaster = new WorldBroadcaster(8)) {
+            broadcaster.reset(karol);
+            WorldBroadcaster.Subscription slow = broadcaster.subscribe(8);
+            WorldBroadcaster.Mirror mirror = new WorldBroadcaster.Mirror();
+            drain(slow, mirror);
+            karol.addListener(broadcaster);
+            karol.addListener(counter);
+
+            // The viewer stops reading while the program produces far more than its buffer holds
+            wander(karol, 2000);
+            assertTrue(counter.deltas > WorldBroadcaster.SNAPSHOT_INTERVAL);
+
+            drain(slow, mirror);
+            assertEquals(counter.deltas, mirror.getSequence());
+            assertMirrors(karol, mirror);
+            // Caught up from the latest snapshot, not the whole run
+            assertTrue(broadcaster.getResyncCount() >= 1);
+        }
+    }
+
+    @Test
+    void testLateViewerStartsFromSnapshot() throws Exception {
+        Karol karol = newKarol();
+        try (WorldBroadcaster broadcaster = new WorldBroadcaster(WorldBroadcaster.DEFAULT_BUFFER_FRAMES)) {
+            broadcaster.reset(karol);
+            karol.addListener(broadcaster);
+            wander(karol, 500);
+
+            WorldBroadcaster.Subscription late = broadcaster.subscribe(WorldBroadcaster.DEFAULT_BUFFER_FRAMES);
+            byte[] first = late.next(0, TimeUnit.MILLISECONDS);
+            assertEquals(WorldBroadcaster.SNAPSHOT, first[0]);
+
+            WorldBroadcaster.Mirror mirror = new WorldBroadcaster.Mirror();
+            mirror.apply(first);
+            drain(late, mirror);
+            assertMirrors(karol, mirror);
+
+            // Later deltas keep it in step
+            karol.turnLeft();
+            drain(late, mirror);
+            assertMirrors(karol, mirror);
+        }
+    }
+
+    @Test
+    void testResetSendsNewWorld() throws Exception {
+        Karol karol = newKarol();
+        try (WorldBroadcaster broadcaster = new WorldBroadcaster(16)) {
+            broadcaster.reset(karol);
+            WorldBroadcaster.Subscription viewer = broadcaster.subscribe(16);
+            WorldBroadcaster.Mirror mirror = new WorldBroadcaster.Mirror();
+            drain(viewer, mirror);
+            assertEquals(6, mirror.getWorld().getWidth());
+
+            Karol other = new Karol(1, 1, Robot.Direction.NORTH, new World(4, 4));
+            broadcaster.reset(other);
+            drain(viewer, mirror);
+            assertEquals(4, mirror.getWorld().getWidth());
+            assertMirrors(other, mirror);
+        }
+    }
+
+    @Test
+    void testMirrorRejectsMalformedFrames() throws Exception {
+        Karol karol = newKarol();
+        try (WorldBroadcaster broadcaster = new WorldBroadcaster(16)) {
+            broadcaster.reset(karol);
+            WorldBroadcaster.Subscription viewer = broadcaster.subscribe(16);
+            WorldBroadcaster.Mirror mirror = new WorldBroadcaster.Mirror();
+            drain(viewer, mirror);
+            karol.addListener(broadcaster);
+            karol.move();
+            byte[] robot = viewer.next(0, TimeUnit.MILLISECONDS);
+
+            byte[] badDirection = robot.clone();
+            badDirection[1 + 8 + 4 + 4] = 9;
+            byte[] cellOutside = ByteBuffer.allocate(1 + 8 + 4 + 4 + 4).put(WorldBroadcaster.CELL)
+                .putLong(5).putInt(6).putInt(0).putInt(1).array();
+            for (byte[] frame : List.of(new byte[0], new byte[] {WorldBroadcaster.ROBOT}, Arrays.copyOf(robot, 12),
+                    Arrays.copyOf(robot, robot.length + 1), badDirection, new byte[] {42}, cellOutside)) {
+                assertThrows(IOException.class, () -> mirror.apply(frame), Arrays.toString(frame));
+            }
+
+            // Nothing invalid was applied
+            mirror.apply(robot);
+            assertMirrors(karol, mirror);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldImageRendererTest {
+    private static final int CELL = 20;
+
+    @Test
+    void testRenderDrawsRobotBeeperAndWall() {
+        World world = new World(4, 3);
+        world.addWall(new Wall(1, 1, false));
+        world.putBeeper(3, 0);
+        Karol karol = new Karol(0, 2, Robot.Direction.EAST, world);
+
+        BufferedImage image = new WorldImageRenderer(CELL).render(world, karol);
+        assertEquals(4 * CELL + 1, image.getWidth());
+        assertEquals(3 * CELL + 1, image.getHeight());
+
+        // Karol sits in the top left cell; sample left of the arrow
+        assertEquals(0x0000FF, image.getRGB(CELL / 2 - 3, CELL / 2 + 3) & 0xFFFFFF, "Robot should be blue");
+        // Beeper in the bottom right cell
+        assertEquals(0x008000, image.getRGB(3 * CELL + CELL / 2 - 2, 2 * CELL + CELL / 2 + 2) & 0xFFFFFF,
+            "Beeper should be green");
+        // Horizontal wall between rows 0 and 1 at x = 1, which is the line y = 2 * CELL
+        assertEquals(0x000000, image.getRGB(CELL + CELL / 2, 2 * CELL) & 0xFFFFFF, "Wall should be black");
+        // Empty cell interior stays white
+        assertEquals(0xFFFFFF, image.getRGB(2 * CELL + CELL / 2, CELL / 2) & 0xFFFFFF);
+    }
+
+    @Test
+    void testRenderPngsKeepsOrder() throws Exception {
+        WorldImageRenderer renderer = new WorldImageRenderer(8);
+        List<Karol> robots = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            robots.add(new Karol(0, 0, Robot.Direction.NORTH, new World(i, 1)));
+        }
+
+        List<byte[]> pngs = renderer.renderPngs(robots);
+        assertEquals(20, pngs.size());
+        for (int i = 0; i < pngs.size(); i++) {
+            byte[] png = pngs.get(i);
+            assertEquals((byte) 0x89, png[0], "Output should be a PNG");
+            assertEquals('P', png[1]);
+            BufferedImage decoded = javax.imageio.ImageIO.read(new java.io.ByteArrayInputStream(png));
+            assertEquals((i + 1) * 8 + 1, decoded.getWidth(), "Images should come back in input order");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.karol;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldValidatorTest {
+    @Test
+    void testValidWorldHasNoProblems() {
+        List<WorldValidator.Problem> problems = WorldValidator.validate(4, 3,
+            new Robot(0, 0, Robot.Direction.EAST),
+            List.of(new Wall(2, 0, true), new Wall(4, 2, true), new Wall(1, 3, false)),
+            List.of(new Beeper(3, 2, 1)));
+
+        assertTrue(problems.isEmpty(), problems.toString());
+    }
+
+    @Test
+    void testOutOfBoundsAndDuplicatesAreErrors() {
+        List<WorldValidator.Problem> problems = WorldValidator.validate(3, 3,
+            new Robot(3, 0, Robot.Direction.EAST),
+            List.of(new Wall(1, 1, true), new Wall(1, 1, true), new Wall(1, 1, false), new Wall(3, 0, false)),
+            List.of(new Beeper(0, 5, 1)));
+
+        assertEquals(4, problems.size(), problems.toString());
+        assertTrue(problems.stream().allMatch(WorldValidator.Problem::isError));
+        assertTrue(problems.get(0).getMessage().startsWith("Robot at (3, 0)"));
+        assertTrue(problems.get(1).getMessage().contains("more than once"));
+        assertTrue(problems.get(2).getMessage().startsWith("Horizontal wall at (3, 0)"));
+        assertTrue(problems.get(3).getMessage().startsWith("Beeper at (0, 5)"));
+    }
+
+    @Test
+    void testDistantWallsAreNotDuplicates() {
+        List<WorldValidator.Problem> problems = WorldValidator.validate(3, 3,
+            new Robot(0, 0, Robot.Direction.EAST),
+            List.of(new Wall(1, 1, true), new Wall(Integer.MIN_VALUE + 1, 1, true),
+                new Wall(1, -1, false), new Wall(-2, Integer.MAX_VALUE, false)),
+            List.of());
+
+        assertEquals(3, problems.size(), problems.toString());
+        assertTrue(problems.stream().noneMatch(problem -> problem.getMessage().contains("more than once")));
+    }
+
+    @Test
+    void testWalledOffBeeperIsWarning() {
+        // Box in the top right cell of a 3x3 world
+        List<WorldValidator.Problem> problems = WorldValidator.validate(3, 3,
+            new Robot(0, 0, Robot.Direction.EAST),
+            List.of(new Wall(2, 2, true), new Wall(2, 2, false)),
+            List.of(new Beeper(2, 2, 1), new Beeper(1, 1, 1)));
+
+        assertEquals(1, problems.size(), problems.toString());
+        assertFalse(problems.get(0).isError());
+        assertEquals("Beeper at (2, 2) cannot be reached by the robot", problems.get(0).getMessage());
+    }
+}